@@ -7,42 +7,91 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import net.jetblack.feedbus.adapters.config.ConnectionConfig;
+import net.jetblack.feedbus.adapters.config.TransportType;
+import net.jetblack.feedbus.messages.AliasRegistration;
+import net.jetblack.feedbus.messages.AliasedData;
+import net.jetblack.feedbus.messages.EncodedMessage;
+import net.jetblack.feedbus.messages.FeedTopic;
 import net.jetblack.feedbus.messages.ForwardedSubscriptionRequest;
+import net.jetblack.feedbus.messages.Handshake;
 import net.jetblack.feedbus.messages.Message;
 import net.jetblack.feedbus.messages.MonitorRequest;
+import net.jetblack.feedbus.messages.MulticastBatch;
 import net.jetblack.feedbus.messages.MulticastData;
+import net.jetblack.feedbus.messages.MulticastFrame;
 import net.jetblack.feedbus.messages.NotificationRequest;
 import net.jetblack.feedbus.messages.SubscriptionRequest;
 import net.jetblack.feedbus.messages.UnicastData;
+import net.jetblack.feedbus.util.concurrent.CopyOnWriteListeners;
+import net.jetblack.feedbus.util.concurrent.Threads;
 
 /**
  * A client for the feed bus.
+ *
+ * With the stream transport each client has its own read and write threads,
+ * on which the listeners are called. With the selector transport the clients
+ * in a process share a single selector thread, which never calls the
+ * listeners.
+ *
+ * When dispatch threads are configured, and always with the selector
+ * transport, the listeners are called on an executor, partitioned by feed and
+ * topic, so the data for each topic is still delivered in order. The
+ * connection and writability events are dispatched in the same way.
  */
 public class Client implements Closeable {
 	
 	private static final Logger logger = Logger.getLogger(Client.class.getName());
 
+	private static final int NO_ALIAS = -1;
+
 	private final Socket _socket;
     private final DataInputStream _inputStream;
     private final DataOutputStream _outputStream;
     private final ByteSerializable _byteEncoder;
     private final BlockingQueue<Message> _writeQueue;
+    private final boolean _isVirtualThreads;
+    private final TransportType _transport;
+    private final int _writeHighWatermark;
+    private final int _writeLowWatermark;
+    private final int _dispatchThreads;
+    private final Executor _dispatchExecutor;
+    private final int _maxMessageSize;
+    private final Object _writabilityLock = new Object();
+    private volatile boolean _isWritable = true;
+    private boolean _isMulticastFrames;
+    private boolean _isFraming;
+    private boolean _isTopicAliases;
+    private boolean _isMulticastBatches;
+    // Feed->Topic->Alias for the data this client publishes.
+    private final Map<String, Map<String, Integer>> _publishAliases = new HashMap<String, Map<String, Integer>>();
+    private int _nextPublishAlias;
+    // Alias->Feed and topic for the data this client receives. Only used by the read thread.
+    private final Map<Integer, FeedTopic> _receiveAliases = new HashMap<Integer, FeedTopic>();
     
     
-    private final List<DataErrorListener> _dataErrorListeners = new ArrayList<DataErrorListener>();
-    private final List<DataReceivedListener> _dataReceivedListeners = new ArrayList<DataReceivedListener>();
-    private final List<ForwardedSubscriptionListener> _forwardedSubscriptionListeners = new ArrayList<ForwardedSubscriptionListener>();
-    private final List<ConnectionChangedListener> _connectionChangedListener = new ArrayList<ConnectionChangedListener>();
-    private final List<HeartbeatListener> _heartbeatListeners = new ArrayList<HeartbeatListener>();
+    private final CopyOnWriteListeners<DataErrorListener> _dataErrorListeners = new CopyOnWriteListeners<DataErrorListener>(new DataErrorListener[0]);
+    private final CopyOnWriteListeners<DataReceivedListener> _dataReceivedListeners = new CopyOnWriteListeners<DataReceivedListener>(new DataReceivedListener[0]);
+    private final CopyOnWriteListeners<ForwardedSubscriptionListener> _forwardedSubscriptionListeners = new CopyOnWriteListeners<ForwardedSubscriptionListener>(new ForwardedSubscriptionListener[0]);
+    private final CopyOnWriteListeners<ConnectionChangedListener> _connectionChangedListener = new CopyOnWriteListeners<ConnectionChangedListener>(new ConnectionChangedListener[0]);
+    private final CopyOnWriteListeners<HeartbeatListener> _heartbeatListeners = new CopyOnWriteListeners<HeartbeatListener>(new HeartbeatListener[0]);
+    private final CopyOnWriteListeners<WritabilityChangedListener> _writabilityChangedListeners = new CopyOnWriteListeners<WritabilityChangedListener>(new WritabilityChangedListener[0]);
+    // The event reused for the data received on each thread, or null if a new event is created for each.
+    private final ThreadLocal<DataReceivedEvent> _reusableEvent;
+    private final boolean _isLazyData;
 
     /**
      * A convenience method to create and start a client from system properties.
@@ -59,10 +108,7 @@ public class Client implements Closeable {
      */
     public static Client createFromProperties() throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException, IOException, InterruptedException, ClassNotFoundException
     {
-    	ConnectionConfig config = ConnectionConfig.createFromProperties();
-    	Class<? extends ByteSerializable> klass = config.getByteSerializerType();
-    	ByteSerializable byteSerializable = klass.getDeclaredConstructor().newInstance();
-        return create(config.getAddress(), config.getPort(), byteSerializable, config.getWriteQueueCapacity());
+        return create(ConnectionConfig.createFromProperties());
     }
 
     /**
@@ -83,7 +129,7 @@ public class Client implements Closeable {
     {
     	Class<? extends ByteSerializable> klass = config.getByteSerializerType();
     	ByteSerializable byteSerializable = klass.getDeclaredConstructor().newInstance();
-        return create(config.getAddress(), config.getPort(), byteSerializable, config.getWriteQueueCapacity());
+        return create(config, byteSerializable);
     }
 
     /**
@@ -98,11 +144,48 @@ public class Client implements Closeable {
      * @throws InterruptedException
      */
     public static Client create(InetAddress address, int port, ByteSerializable byteSerializer, int writeQueueCapacity) throws IOException, InterruptedException {
-        Socket socket = new Socket(address, port);
+    	ConnectionConfig config = new ConnectionConfig(
+    			address,
+    			port,
+    			byteSerializer.getClass(),
+    			writeQueueCapacity,
+    			ConnectionConfig.DEFAULT_HEARTBEAT_INTERVAL);
+    	return create(config, byteSerializer);
+    }
+
+    /**
+     * Create and start a client from a configuration and a serializer.
+     * 
+     * @param config The configuration. The serializer type is ignored.
+     * @param byteSerializer The instance of a class used to serialize the data.
+     * @return A feed bus client.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static Client create(ConnectionConfig config, ByteSerializable byteSerializer) throws IOException, InterruptedException {
+        Socket socket;
+        if (config.getTransport() == TransportType.Selector) {
+        	// The handshake is made in blocking mode, before the channel is passed to the selector.
+        	socket = SocketChannel.open(new InetSocketAddress(config.getAddress(), config.getPort())).socket();
+        } else {
+        	socket = new Socket(config.getAddress(), config.getPort());
+        }
+
+        Client client = new Client(socket, byteSerializer, config);
+
+        try {
+        	client.handshake(config);
+        } catch (IOException error) {
+        	socket.close();
+        	throw error;
+        }
 
-        Client client = new Client(socket, byteSerializer, writeQueueCapacity);
-        
-        client.start();
+        try {
+        	client.start();
+        } catch (IOException error) {
+        	socket.close();
+        	throw error;
+        }
 
         client.addSubscription("__admin__", "heartbeat");
 
@@ -114,9 +197,7 @@ public class Client implements Closeable {
      * @param listener The listener to add.
      */
     public void addDataReceivedListener(DataReceivedListener listener) {
-    	synchronized (_dataReceivedListeners) {
-			_dataReceivedListeners.add(listener);
-		}
+    	_dataReceivedListeners.add(listener);
     }
 
     /**
@@ -124,9 +205,7 @@ public class Client implements Closeable {
      * @param listener The listener to remove.
      */
     public void removeDataReceivedListener(DataReceivedListener listener) {
-    	synchronized (_dataReceivedListeners) {
-			_dataReceivedListeners.remove(listener);
-		}
+    	_dataReceivedListeners.remove(listener);
     }
     
 
@@ -135,9 +214,7 @@ public class Client implements Closeable {
      * @param listener The listener to add.
      */
     public void addDataErrorListener(DataErrorListener listener) {
-    	synchronized (_dataErrorListeners) {
-			_dataErrorListeners.add(listener);
-		}
+    	_dataErrorListeners.add(listener);
     }
     
     /**
@@ -145,9 +222,7 @@ public class Client implements Closeable {
      * @param listener The listener to remove.
      */
     public void removeDataErrorListener(DataErrorListener listener) {
-    	synchronized (_dataErrorListeners) {
-			_dataErrorListeners.remove(listener);
-		}
+    	_dataErrorListeners.remove(listener);
     }
 
     /**
@@ -155,9 +230,7 @@ public class Client implements Closeable {
      * @param listener The listener to add
      */
     public void addForwardedSubscriptionListener(ForwardedSubscriptionListener listener) {
-    	synchronized (_forwardedSubscriptionListeners) {
-			_forwardedSubscriptionListeners.add(listener);
-		}
+    	_forwardedSubscriptionListeners.add(listener);
     }
     
     /**
@@ -165,9 +238,7 @@ public class Client implements Closeable {
      * @param listener The listener to remove
      */
     public void removeForwardedSubscriptionListener(ForwardedSubscriptionListener listener) {
-    	synchronized (_forwardedSubscriptionListeners) {
-			_forwardedSubscriptionListeners.remove(listener);
-		}
+    	_forwardedSubscriptionListeners.remove(listener);
     }
     
 
@@ -176,9 +247,7 @@ public class Client implements Closeable {
      * @param listener The listener to add.
      */
     public void addConnectionChangedListener(ConnectionChangedListener listener) {
-    	synchronized (_connectionChangedListener) {
-			_connectionChangedListener.add(listener);
-		}
+    	_connectionChangedListener.add(listener);
     }
     
     /**
@@ -186,9 +255,7 @@ public class Client implements Closeable {
      * @param listener The listener to remove.
      */
     public void removeConnectionChangedListener(ConnectionChangedListener listener) {
-    	synchronized (_connectionChangedListener) {
-			_connectionChangedListener.remove(listener);
-		}
+    	_connectionChangedListener.remove(listener);
     }
 
     /**
@@ -196,9 +263,7 @@ public class Client implements Closeable {
      * @param listener The listener to add.
      */
     public void addHeartbeatListener(HeartbeatListener listener) {
-    	synchronized (_heartbeatListeners) {
-			_heartbeatListeners.add(listener);
-		}
+    	_heartbeatListeners.add(listener);
     }
 
     /**
@@ -206,36 +271,110 @@ public class Client implements Closeable {
      * @param listener The listener to remove.
      */
     public void removeHeartbeatListener(HeartbeatListener listener) {
-    	synchronized (_heartbeatListeners) {
-			_heartbeatListeners.remove(listener);
-		}
+    	_heartbeatListeners.remove(listener);
     }
 
-    private Client(Socket socket, ByteSerializable byteSerializer, int writeQueueCapacity) throws IOException {
+    /**
+     * Adds a listener to writability changed events.
+     * @param listener The listener to add.
+     */
+    public void addWritabilityChangedListener(WritabilityChangedListener listener) {
+    	_writabilityChangedListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener to writability changed events.
+     * @param listener The listener to remove.
+     */
+    public void removeWritabilityChangedListener(WritabilityChangedListener listener) {
+    	_writabilityChangedListeners.remove(listener);
+    }
+
+    private Client(Socket socket, ByteSerializable byteSerializer, ConnectionConfig config) throws IOException {
     	_socket = socket;
     	_inputStream = new DataInputStream(socket.getInputStream()); 
     	_outputStream = new DataOutputStream(socket.getOutputStream()); 
         _byteEncoder = byteSerializer;
-        _writeQueue = new ArrayBlockingQueue<Message>(writeQueueCapacity);
+        _writeQueue = new ArrayBlockingQueue<Message>(config.getWriteQueueCapacity());
+        _isVirtualThreads = config.isVirtualThreads();
+        _transport = config.getTransport();
+        _writeHighWatermark = Math.min(config.getWriteHighWatermark(), config.getWriteQueueCapacity());
+        _writeLowWatermark = Math.min(config.getWriteLowWatermark(), _writeHighWatermark - 1);
+        _dispatchThreads = config.getDispatchThreads();
+        _dispatchExecutor = config.getDispatchExecutor();
+        _maxMessageSize = config.getMaxMessageSize();
+        _reusableEvent = config.isReusableEvents() ? new ThreadLocal<DataReceivedEvent>() : null;
+        _isLazyData = config.isLazyData();
+    }
+
+    private void handshake(ConnectionConfig config) throws IOException {
+    	int features = 0;
+    	if (config.isMulticastFrames()) {
+    		features |= Handshake.FEATURE_MULTICAST_FRAMES;
+    	}
+    	if (config.isFraming()) {
+    		features |= Handshake.FEATURE_FRAMING;
+    	}
+    	if (config.isTopicAliases()) {
+    		features |= Handshake.FEATURE_ALIASES;
+    	}
+    	if (config.isMulticastBatches()) {
+    		features |= Handshake.FEATURE_BATCH;
+    	}
+    	if (features == 0) {
+    		// Stay compatible with distributors which do not support the handshake.
+    		return;
+    	}
+
+    	// Nothing else may be sent until the distributor has replied.
+    	EncodedMessage.encode(new Handshake(Handshake.VERSION, features)).writeTo(_outputStream);
+    	_outputStream.flush();
+
+    	Message reply = Message.read(_inputStream, _maxMessageSize);
+    	if (!(reply instanceof Handshake)) {
+    		throw new IOException("Expected a handshake from the distributor, but received " + reply);
+    	}
+
+    	Handshake accepted = (Handshake)reply;
+    	logger.fine("Handshake accepted: " + accepted);
+    	_isMulticastFrames = accepted.supports(Handshake.FEATURE_MULTICAST_FRAMES);
+    	_isFraming = accepted.supports(Handshake.FEATURE_FRAMING);
+    	_isTopicAliases = accepted.supports(Handshake.FEATURE_ALIASES);
+    	_isMulticastBatches = accepted.supports(Handshake.FEATURE_BATCH);
     }
 
     private Thread _readThread, _writeThread;
+    private SelectorConnection _selectorConnection;
+    private PartitionedDispatcher _dispatcher;
     
-    private void start()
+    private void start() throws IOException
     {
-    	_readThread = new Thread(new Runnable() {
+    	if (_transport == TransportType.Selector) {
+    		// The selector thread is shared by every client in the process, so the listeners must not run on it.
+    		_dispatcher = new PartitionedDispatcher(Math.max(_dispatchThreads, 1), _dispatchExecutor, _isVirtualThreads);
+    	} else if (_dispatchThreads > 0) {
+    		_dispatcher = new PartitionedDispatcher(_dispatchThreads, _dispatchExecutor, _isVirtualThreads);
+    	}
+
+    	if (_transport == TransportType.Selector) {
+    		_selectorConnection = new SelectorConnection(this, _socket.getChannel(), SelectorLoop.getShared(), _writeQueue, _isFraming, _maxMessageSize);
+    		_selectorConnection.start();
+    		return;
+    	}
+
+    	_readThread = Threads.create(new Runnable() {
 			@Override
 			public void run() {
 				read();
 			}
-		}, "read");
+		}, "read", _isVirtualThreads);
     	
-    	_writeThread = new Thread(new Runnable() {
+    	_writeThread = Threads.create(new Runnable() {
 			@Override
 			public void run() {
 				write();
 			}
-		}, "write");
+		}, "write", _isVirtualThreads);
 
     	_readThread.start();
     	_writeThread.start();
@@ -244,21 +383,13 @@ public class Client implements Closeable {
     private void read() {
         while (!Thread.currentThread().isInterrupted()) {
             try {
-                Message message = Message.read(_inputStream);
-
-                switch (message.getType()) {
-                    case MulticastData:
-                        raiseOnDataOrHeartbeat((MulticastData)message);
-                        break;
-                    case UnicastData:
-                        raiseOnData((UnicastData)message);
-                        break;
-                    case ForwardedSubscriptionRequest:
-                        raiseOnForwardedSubscriptionRequest((ForwardedSubscriptionRequest)message);
-                        break;
-                    default:
-                        throw new Exception("invalid message type");
+                Message message = _isFraming ? Message.readFrame(_inputStream, _maxMessageSize) : Message.read(_inputStream, _maxMessageSize);
+                if (message == null) {
+                	logger.fine("Skipped a frame of an unknown message type.");
+                	continue;
                 }
+
+                onMessage(message);
             }
             catch (InterruptedException error) {
             	// The client parent thread has interrupted us.
@@ -266,28 +397,113 @@ public class Client implements Closeable {
             	logger.finest("Th read thread has been interrupted.");
                 return;
             }
-            catch (EOFException error) {
-            	// The distributor has closed the connection.
-            	// As the distributor never does this voluntarily there must be a
-            	// bigger problem.
-            	logger.severe("The distrubutor has closed the connection.");
-                raiseConnectionStateChanged(ConnectionState.Closed, error);
-                return;
-            }
             catch (Exception error) {
-            	// There may be a network problem.
-            	logger.log(Level.SEVERE, "Failed to read from distributor.", error);
-                raiseConnectionStateChanged(ConnectionState.Faulted, error);
+            	onConnectionFailed(error);
                 return;
             }
         }
     }
 
+    /**
+     * Handle a message received from the distributor.
+     * 
+     * @param message The message.
+     * @throws Exception Thrown if the message is not valid on this connection.
+     */
+    void onMessage(Message message) throws Exception {
+        switch (message.getType()) {
+            case MulticastData:
+            case MulticastFrame:
+                dispatchOnDataOrHeartbeat((MulticastData)message);
+                break;
+            case AliasRegistration:
+                registerAlias((AliasRegistration)message);
+                break;
+            case AliasedData:
+                // The alias is resolved here, in the order the registrations were received.
+                dispatchOnDataOrHeartbeat(resolveAlias((AliasedData)message));
+                break;
+            case UnicastData:
+                dispatchOnData((UnicastData)message);
+                break;
+            case ForwardedSubscriptionRequest:
+                dispatchOnForwardedSubscriptionRequest((ForwardedSubscriptionRequest)message);
+                break;
+            default:
+                throw new Exception("invalid message type");
+        }
+    }
+
+    private void dispatchOnDataOrHeartbeat(final MulticastData message) {
+    	if (_dispatcher == null) {
+    		raiseOnDataOrHeartbeat(message);
+    		return;
+    	}
+    	_dispatcher.dispatch(message.getFeed(), message.getTopic(), new Runnable() {
+			@Override
+			public void run() {
+				raiseOnDataOrHeartbeat(message);
+			}
+		});
+    }
+
+    private void dispatchOnData(final UnicastData message) {
+    	if (_dispatcher == null) {
+    		raiseOnData(message);
+    		return;
+    	}
+    	_dispatcher.dispatch(message.getFeed(), message.getTopic(), new Runnable() {
+			@Override
+			public void run() {
+				raiseOnData(message);
+			}
+		});
+    }
+
+    private void dispatchOnForwardedSubscriptionRequest(final ForwardedSubscriptionRequest message) {
+    	if (_dispatcher == null) {
+    		raiseOnForwardedSubscriptionRequest(message);
+    		return;
+    	}
+    	_dispatcher.dispatch(message.getFeed(), message.getTopic(), new Runnable() {
+			@Override
+			public void run() {
+				raiseOnForwardedSubscriptionRequest(message);
+			}
+		});
+    }
+
+    /**
+     * Handle the failure of the connection while reading from the distributor.
+     * 
+     * @param error The error.
+     */
+    void onConnectionFailed(Exception error) {
+    	if (error instanceof EOFException) {
+        	// The distributor has closed the connection.
+        	// As the distributor never does this voluntarily there must be a
+        	// bigger problem.
+        	logger.severe("The distrubutor has closed the connection.");
+            raiseConnectionStateChanged(ConnectionState.Closed, error);
+    	} else {
+        	// There may be a network problem.
+        	logger.log(Level.SEVERE, "Failed to read from distributor.", error);
+            raiseConnectionStateChanged(ConnectionState.Faulted, error);
+    	}
+    }
+
     private void write() {
         while (!Thread.currentThread().isInterrupted()) {
+        	Message message = null;
             try {
-                Message message = _writeQueue.take();
-                message.write(_outputStream);
+                message = _writeQueue.take();
+                onMessageDequeued();
+                if (_isFraming) {
+                	message.writeFrame(_outputStream);
+                } else {
+                	message.write(_outputStream);
+                }
+                CompletableMessage.complete(message);
             }
             catch (InterruptedException error) {
             	logger.info("Interrupted wriite thread");
@@ -295,37 +511,149 @@ public class Client implements Closeable {
             }
             catch (EOFException error) {
             	logger.info("EOF write thread");
+            	CompletableMessage.fail(message, error);
+            	failQueuedMessages(error);
                 raiseConnectionStateChanged(ConnectionState.Closed, error);
                 return;
             }
             catch (Exception error) {
             	logger.info("Error write thread");
+            	CompletableMessage.fail(message, error);
+            	failQueuedMessages(error);
                 raiseConnectionStateChanged(ConnectionState.Faulted, error);
                 return;
             }
         }
     }
 
-    private void raiseConnectionStateChanged(ConnectionState state, Exception error) {
-    	raiseConnectionChangedEvent(state, error);
+    /**
+     * Fail the futures of the messages which will now never be written.
+     * @param error The reason the messages were not written.
+     */
+    void failQueuedMessages(Exception error) {
+    	Message message;
+    	while ((message = _writeQueue.poll()) != null) {
+    		CompletableMessage.fail(message, error);
+    	}
+    }
+
+    private void raiseConnectionStateChanged(final ConnectionState state, final Exception error) {
+    	if (_dispatcher == null) {
+    		raiseConnectionChangedEvent(state, error);
+    		return;
+    	}
+    	// The failure may be found on the shared selector thread, which must not run the listeners.
+    	_dispatcher.dispatch(new Runnable() {
+			@Override
+			public void run() {
+				raiseConnectionChangedEvent(state, error);
+			}
+		});
     }
     
     private void raiseConnectionChangedEvent(ConnectionState state, Exception error) {
-    	List<ConnectionChangedListener> listeners = new ArrayList<ConnectionChangedListener>();
-    	synchronized (_connectionChangedListener) {
-			if (_connectionChangedListener.isEmpty()) {
-				return;
-			}
-			for (ConnectionChangedListener listener : _connectionChangedListener) {
-				listeners.add(listener);
-			}
-		}
+    	ConnectionChangedListener[] listeners = _connectionChangedListener.get();
+    	if (listeners.length == 0) {
+    		return;
+    	}
     	ConnectionChangedEvent event = new ConnectionChangedEvent(state, error);
-    	for (ConnectionChangedListener listener : listeners) {
-    		listener.onConnectionChanged(event);
+    	for (int i = 0; i < listeners.length; ++i) {
+    		listeners[i].onConnectionChanged(event);
+    	}
+    }
+
+    private void enqueue(Message message) throws InterruptedException {
+    	_writeQueue.put(message);
+    	onMessageQueued();
+    }
+
+    private boolean tryEnqueue(Message message) {
+    	if (!_writeQueue.offer(message)) {
+    		return false;
+    	}
+    	onMessageQueued();
+    	return true;
+    }
+
+    private void onMessageQueued() {
+    	if (_selectorConnection != null) {
+    		_selectorConnection.onMessageQueued();
+    	}
+    	if (_isWritable && _writeQueue.size() >= _writeHighWatermark) {
+    		updateWritability();
     	}
     }
 
+    /**
+     * Called after a message has been taken from the write queue.
+     */
+    void onMessageDequeued() {
+    	if (!_isWritable && _writeQueue.size() <= _writeLowWatermark) {
+    		updateWritability();
+    	}
+    }
+
+    private void updateWritability() {
+    	WritabilityChangedEvent unwritable = null, writable = null;
+    	synchronized (_writabilityLock) {
+    		if (_isWritable && _writeQueue.size() >= _writeHighWatermark) {
+    			_isWritable = false;
+    			unwritable = new WritabilityChangedEvent(false, _writeQueue.size());
+    		}
+    		// The writer may have drained the queue before it could see the change.
+    		if (!_isWritable && _writeQueue.size() <= _writeLowWatermark) {
+    			_isWritable = true;
+    			writable = new WritabilityChangedEvent(true, _writeQueue.size());
+    		}
+
+    		if (_dispatcher != null) {
+    			// Only the dispatch is done under the lock, so the events keep the order of the changes.
+    			dispatchWritabilityChangedEvent(unwritable);
+    			dispatchWritabilityChangedEvent(writable);
+    			return;
+    		}
+    	}
+
+    	// The listeners never run under the lock, as they may publish.
+    	raiseWritabilityChangedEvent(unwritable);
+    	raiseWritabilityChangedEvent(writable);
+    }
+
+    private void dispatchWritabilityChangedEvent(final WritabilityChangedEvent event) {
+    	if (event == null) {
+    		return;
+    	}
+    	// The change is usually found on the selector thread, which must not run the listeners.
+    	_dispatcher.dispatch(new Runnable() {
+			@Override
+			public void run() {
+				raiseWritabilityChangedEvent(event);
+			}
+		});
+    }
+
+    private void raiseWritabilityChangedEvent(WritabilityChangedEvent event) {
+    	if (event == null) {
+    		return;
+    	}
+    	WritabilityChangedListener[] listeners = _writabilityChangedListeners.get();
+    	for (int i = 0; i < listeners.length; ++i) {
+    		listeners[i].onWritabilityChanged(event);
+    	}
+    }
+
+    /**
+     * Gets whether the write queue is below the high watermark.
+     * 
+     * The client becomes unwritable when the write queue fills to the high
+     * watermark, and writable again when it drains to the low watermark.
+     * 
+     * @return True if data can be published without filling the write queue.
+     */
+    public boolean isWritable() {
+    	return _isWritable;
+    }
+
     /**
      * Add a subscription to a feed and topic.
      * 
@@ -354,7 +682,7 @@ public class Client implements Closeable {
         if (topic == null)
             throw new IllegalArgumentException("topic");
 
-        _writeQueue.put(new SubscriptionRequest(feed, topic, isAdd));
+        enqueue(new SubscriptionRequest(feed, topic, isAdd));
     }
 
     /**
@@ -381,7 +709,7 @@ public class Client implements Closeable {
         if (feed == null)
             throw new IllegalArgumentException("feed");
 
-        _writeQueue.put(new MonitorRequest(feed, isAdd));
+        enqueue(new MonitorRequest(feed, isAdd));
     }
 
     /**
@@ -408,7 +736,7 @@ public class Client implements Closeable {
         if (feed == null)
             throw new IllegalArgumentException("feed");
 
-        _writeQueue.put(new NotificationRequest(feed, isAdd));
+        enqueue(new NotificationRequest(feed, isAdd));
     }
 
     /**
@@ -427,7 +755,7 @@ public class Client implements Closeable {
             throw new IllegalArgumentException("topic");
 
         try {
-            _writeQueue.put(new UnicastData(clientId, feed, topic, isImage, serialize(data)));
+            enqueue(new UnicastData(clientId, feed, topic, isImage, serialize(data)));
         }
         catch (Exception error) {
         	raiseDataErrorEvent(true, feed, topic, isImage, data, error);
@@ -449,26 +777,205 @@ public class Client implements Closeable {
             throw new IllegalArgumentException("topic");
 
         try {
-            _writeQueue.put(new MulticastData(feed, topic, isImage, serialize(data)));
+            enqueue(createMulticastMessage(feed, topic, isImage, serialize(data), true));
         }
         catch (Exception error) {
         	raiseDataErrorEvent(true, feed, topic, isImage, data, error);
         }
     }
+
+    /**
+     * Publish data to all subscribers of a feed and topic if it can be done without blocking.
+     * 
+     * @param feed The name of the feed.
+     * @param topic The name of the topic.
+     * @param isImage If true the data represents an image, otherwise it is a delta.
+     * @param data The data transmitted.
+     * @return True if the data was queued, or false if the write queue was full or the data could not be serialized, which is reported as a data error.
+     */
+    public boolean tryPublish(String feed, String topic, boolean isImage, Object data) {
+        if (feed == null)
+            throw new IllegalArgumentException("feed");
+        if (topic == null)
+            throw new IllegalArgumentException("topic");
+
+        try {
+        	Message message = createMulticastMessage(feed, topic, isImage, serialize(data), false);
+        	return message != null && tryEnqueue(message);
+        }
+        catch (Exception error) {
+        	raiseDataErrorEvent(true, feed, topic, isImage, data, error);
+        	return false;
+        }
+    }
+
+    /**
+     * Publish data to all subscribers of a feed and topic without blocking.
+     * 
+     * The future is completed when the data has been written to the socket. It
+     * is completed exceptionally with an IllegalStateException if the write
+     * queue is full, with the error if the data cannot be serialized, or with
+     * the connection error if the data can no longer be written.
+     * 
+     * @param feed The name of the feed.
+     * @param topic The name of the topic.
+     * @param isImage If true the data represents an image, otherwise it is a delta.
+     * @param data The data transmitted.
+     * @return A future which is completed when the data has been written.
+     */
+    public CompletableFuture<Void> publishAsync(String feed, String topic, boolean isImage, Object data) {
+        if (feed == null)
+            throw new IllegalArgumentException("feed");
+        if (topic == null)
+            throw new IllegalArgumentException("topic");
+
+        CompletableFuture<Void> future = new CompletableFuture<Void>();
+        try {
+        	Message message = createMulticastMessage(feed, topic, isImage, serialize(data), false);
+        	if (message != null) {
+        		CompletableMessage completableMessage = new CompletableMessage(message);
+        		if (tryEnqueue(completableMessage)) {
+        			return completableMessage.getFuture();
+        		}
+        	}
+        	future.completeExceptionally(new IllegalStateException("The write queue is full"));
+        }
+        catch (Exception error) {
+        	future.completeExceptionally(error);
+        }
+        return future;
+    }
+
+    /**
+     * Create the message for multicast data in the negotiated format.
+     * 
+     * @return The message, or null if the message could not be created without blocking.
+     */
+    private MulticastData createMulticastMessage(String feed, String topic, boolean isImage, byte[] bytes, boolean isBlocking) throws IOException, InterruptedException {
+        if (_isTopicAliases) {
+        	int alias = getPublishAlias(feed, topic, isBlocking);
+        	return alias == NO_ALIAS ? null : new AliasedData(alias, feed, topic, isImage, bytes);
+        } else if (_isMulticastFrames) {
+        	return MulticastFrame.create(feed, topic, isImage, bytes);
+        } else {
+        	return new MulticastData(feed, topic, isImage, bytes);
+        }
+    }
+    
+    private int getPublishAlias(String feed, String topic, boolean isBlocking) throws InterruptedException {
+    	synchronized (_publishAliases) {
+    		Map<String, Integer> topicAliases = _publishAliases.get(feed);
+    		if (topicAliases == null) {
+    			_publishAliases.put(feed, topicAliases = new HashMap<String, Integer>());
+    		}
+
+    		Integer alias = topicAliases.get(topic);
+    		if (alias == null) {
+    			// Registering under the lock keeps the registration ahead of any data which uses the alias.
+    			AliasRegistration registration = new AliasRegistration(_nextPublishAlias, feed, topic);
+    			if (isBlocking) {
+    				enqueue(registration);
+    			} else if (!tryEnqueue(registration)) {
+    				return NO_ALIAS;
+    			}
+    			alias = _nextPublishAlias++;
+    			topicAliases.put(topic, alias);
+    		}
+    		return alias;
+    	}
+    }
+
+    private void registerAlias(AliasRegistration registration) {
+    	_receiveAliases.put(registration.getAlias(), new FeedTopic(registration.getFeed(), registration.getTopic()));
+    }
+
+    private MulticastData resolveAlias(AliasedData aliasedData) throws IOException {
+    	FeedTopic feedTopic = _receiveAliases.get(aliasedData.getAlias());
+    	if (feedTopic == null) {
+    		throw new IOException("Received data for the unregistered alias " + aliasedData.getAlias());
+    	}
+    	return aliasedData.resolve(feedTopic.getFeed(), feedTopic.getTopic());
+    }
+
+    /**
+     * Publish a batch of data in a single message.
+     * 
+     * The distributor routes each entry to the subscribers of its feed and
+     * topic, as if it had been published alone. An entry which cannot be
+     * serialized is reported as a data error and left out of the batch. If
+     * the distributor did not accept multicast batches in the handshake, each
+     * entry is published as a separate message.
+     * 
+     * A batch is sent as several messages when it holds more than
+     * MulticastBatch.MAX_SIZE entries, or when its entries could take more
+     * than the maximum message size of the connection. The distributor
+     * disconnects a client which sends a message larger than its own maximum
+     * message size, so the maximum of the connection should be no larger. An
+     * entry which is too large on its own is sent alone.
+     * 
+     * @param batch The batch to publish.
+     */
+    public void publishBatch(PublishBatch batch) {
+    	if (batch == null)
+    		throw new IllegalArgumentException("batch");
+
+    	MulticastData[] entries = new MulticastData[Math.min(batch.size(), MulticastBatch.MAX_SIZE)];
+    	int count = 0;
+    	long length = MulticastBatch.HEADER_LENGTH;
+    	for (int i = 0; i < batch.size(); ++i) {
+    		try {
+    			MulticastData entry = createMulticastMessage(batch.getFeed(i), batch.getTopic(i), batch.isImage(i), serialize(batch.getData(i)), true);
+    			if (!_isMulticastBatches) {
+    				enqueue(entry);
+    				continue;
+    			}
+
+    			// A batch larger than the distributor accepts is sent as several messages.
+    			long entryLength = MulticastBatch.getMaxEntryLength(entry);
+    			if (count == entries.length || (count > 0 && length + entryLength > _maxMessageSize)) {
+    				enqueueBatch(entries, count);
+    				entries = new MulticastData[Math.min(batch.size() - i, MulticastBatch.MAX_SIZE)];
+    				count = 0;
+    				length = MulticastBatch.HEADER_LENGTH;
+    			}
+    			entries[count++] = entry;
+    			length += entryLength;
+    		}
+    		catch (InterruptedException error) {
+    			logger.log(Level.WARNING, "Interrupted while publishing a batch.", error);
+    			Thread.currentThread().interrupt();
+    			return;
+    		}
+    		catch (Exception error) {
+    			raiseDataErrorEvent(true, batch.getFeed(i), batch.getTopic(i), batch.isImage(i), batch.getData(i), error);
+    		}
+    	}
+
+    	if (count == 0) {
+    		return;
+    	}
+
+    	try {
+    		enqueueBatch(entries, count);
+    	}
+    	catch (InterruptedException error) {
+    		logger.log(Level.WARNING, "Interrupted while publishing a batch of " + count + " entries.", error);
+    		Thread.currentThread().interrupt();
+    	}
+    }
+
+    private void enqueueBatch(MulticastData[] entries, int count) throws InterruptedException {
+    	enqueue(new MulticastBatch(count == entries.length ? entries : Arrays.copyOf(entries, count)));
+    }
     
     private void raiseDataErrorEvent(boolean isSending, String feed, String topic, boolean isImage, Object data, Exception error) {
-    	List<DataErrorListener> listeners = new ArrayList<DataErrorListener>();
-    	synchronized (_dataErrorListeners) {
-        	if (_dataErrorListeners.isEmpty()) {
-        		return;
-        	}
-			for (DataErrorListener listener : _dataErrorListeners) {
-				listeners.add(listener);
-			}
-		}
-    	DataErrorEvent event = new DataErrorEvent(true, feed, topic, isImage, data, error);
-    	for (DataErrorListener listener : listeners) {
-    		listener.onDataErrorEvent(event);
+    	DataErrorListener[] listeners = _dataErrorListeners.get();
+    	if (listeners.length == 0) {
+    		return;
+    	}
+    	DataErrorEvent event = new DataErrorEvent(isSending, feed, topic, isImage, data, error);
+    	for (int i = 0; i < listeners.length; ++i) {
+    		listeners[i].onDataErrorEvent(event);
     	}
     }
 
@@ -477,18 +984,13 @@ public class Client implements Closeable {
     }
     
     private void raiseForwardedSubscriptionEvent(String clientId, String feed, String topic, boolean isAdd) {
-    	List<ForwardedSubscriptionListener> listeners = new ArrayList<ForwardedSubscriptionListener>();
-    	synchronized (_forwardedSubscriptionListeners) {
-			if (_forwardedSubscriptionListeners.isEmpty()) {
-				return;
-			}
-			for (ForwardedSubscriptionListener listener : _forwardedSubscriptionListeners) {
-				listeners.add(listener);
-			}
-		}
+    	ForwardedSubscriptionListener[] listeners = _forwardedSubscriptionListeners.get();
+    	if (listeners.length == 0) {
+    		return;
+    	}
     	ForwardedSubscriptionEvent event = new ForwardedSubscriptionEvent(clientId, feed, topic, isAdd);
-    	for (ForwardedSubscriptionListener listener : listeners) {
-    		listener.onForwardedSubscription(event);
+    	for (int i = 0; i < listeners.length; ++i) {
+    		listeners[i].onForwardedSubscription(event);
     	}
     }
 
@@ -501,17 +1003,9 @@ public class Client implements Closeable {
     }
 
     private void raiseHeartbeatEvent() {
-    	List<HeartbeatListener> listeners = new ArrayList<HeartbeatListener>();
-    	synchronized (_heartbeatListeners) {
-			if (_heartbeatListeners.isEmpty()) {
-				return;
-			}
-			for (HeartbeatListener listener : _heartbeatListeners) {
-				listeners.add(listener);
-			}
-		}
-    	for (HeartbeatListener listener : listeners) {
-    		listener.onHeartbeat();
+    	HeartbeatListener[] listeners = _heartbeatListeners.get();
+    	for (int i = 0; i < listeners.length; ++i) {
+    		listeners[i].onHeartbeat();
     	}
     }
 
@@ -528,32 +1022,66 @@ public class Client implements Closeable {
     }
 
     private void raiseOnData(String feed, String topic, byte[] data, boolean isImage) {
+    	DataReceivedListener[] listeners = _dataReceivedListeners.get();
+    	if (listeners.length == 0) {
+    		// Nothing would see the data, so it is not deserialized.
+    		return;
+    	}
+
         try {
-        	raiseDataReceivedEvent(feed, topic, deserialize(data), isImage);
+        	raiseDataReceivedEvent(listeners, createDataReceivedEvent(feed, topic, data, isImage));
         }
         catch (Exception error) {
         	raiseDataErrorEvent(false, feed, topic, isImage, data, error);
         }
     }
+
+    private DataReceivedEvent createDataReceivedEvent(String feed, String topic, byte[] data, boolean isImage) throws Exception {
+    	if (_reusableEvent == null) {
+    		return _isLazyData
+    				? new LazyDataReceivedEvent(feed, topic, data, isImage, _byteEncoder)
+    				: new DataReceivedEvent(feed, topic, deserialize(data), isImage);
+    	}
+
+    	DataReceivedEvent event = _reusableEvent.get();
+    	if (event == null) {
+    		event = _isLazyData ? new LazyDataReceivedEvent(_byteEncoder) : new ReusableDataReceivedEvent();
+    		_reusableEvent.set(event);
+    	}
+    	if (_isLazyData) {
+    		((LazyDataReceivedEvent)event).setBytes(feed, topic, data, isImage);
+    	} else {
+    		((ReusableDataReceivedEvent)event).set(feed, topic, deserialize(data), isImage);
+    	}
+    	return event;
+    }
     
-    private void raiseDataReceivedEvent(String feed, String topic, Object data, boolean isImage) {
-    	List<DataReceivedListener> listeners = new ArrayList<DataReceivedListener>();
-    	synchronized (_dataReceivedListeners) {
-    		if (_dataErrorListeners.isEmpty()) {
-    			return;
+    private void raiseDataReceivedEvent(DataReceivedListener[] listeners, DataReceivedEvent event) {
+    	try {
+    		for (int i = 0; i < listeners.length; ++i) {
+    			listeners[i].onDataReceived(event);
+    		}
+    	} finally {
+    		// Do not keep the data of a reused event alive until the next message.
+    		if (event instanceof ReusableDataReceivedEvent) {
+    			((ReusableDataReceivedEvent)event).clear();
+    		} else if (_reusableEvent != null) {
+    			((LazyDataReceivedEvent)event).clear();
     		}
-			for (DataReceivedListener listener : _dataReceivedListeners) {
-				listeners.add(listener);
-			}
-		}
-    	DataReceivedEvent event = new DataReceivedEvent(feed, topic, data, isImage);
-    	for (DataReceivedListener listener : listeners) {
-    		listener.onDataReceived(event);
     	}
     }
 
 	@Override
 	public void close() throws IOException {
+		IOException closed = new IOException("The client has been closed");
+
+		if (_selectorConnection != null) {
+			_selectorConnection.close();
+			failQueuedMessages(closed);
+			shutdownDispatcher();
+			return;
+		}
+
 		try {
 			_writeThread.interrupt();
 			_writeThread.join();
@@ -561,6 +1089,7 @@ public class Client implements Closeable {
 			// TODO Auto-generated catch block
 			e1.printStackTrace();
 		}
+		failQueuedMessages(closed);
         try {
 			_inputStream.close();
 			_readThread.join();
@@ -571,6 +1100,7 @@ public class Client implements Closeable {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
+        shutdownDispatcher();
 
         try {
 			_outputStream.close();
@@ -586,4 +1116,11 @@ public class Client implements Closeable {
 			e.printStackTrace();
 		}
 	}
+
+	private void shutdownDispatcher() {
+		if (_dispatcher != null) {
+			// The listeners already dispatched are still called.
+			_dispatcher.shutdown();
+		}
+	}
 }
@@ -0,0 +1,80 @@
+package net.jetblack.feedbus.adapters;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+import net.jetblack.feedbus.messages.Message;
+
+/**
+ * A message on the write queue with a future which is completed when it has
+ * been written to the socket.
+ */
+final class CompletableMessage extends Message {
+
+	private final Message _message;
+	private final CompletableFuture<Void> _future = new CompletableFuture<Void>();
+
+	/**
+	 * Construct the message.
+	 * @param message The message to write.
+	 */
+	CompletableMessage(Message message) {
+		super(message.getType());
+		_message = message;
+	}
+
+	/**
+	 * Gets the future which is completed when the message has been written.
+	 * @return The future.
+	 */
+	CompletableFuture<Void> getFuture() {
+		return _future;
+	}
+
+	@Override
+	public void write(DataOutputStream stream) throws IOException {
+		_message.write(stream);
+	}
+
+	@Override
+	public void writeFrame(DataOutputStream stream) throws IOException {
+		_message.writeFrame(stream);
+	}
+
+	/**
+	 * Complete the future of a message if it has one.
+	 * @param message The message which has been written.
+	 */
+	static void complete(Message message) {
+		if (message instanceof CompletableMessage) {
+			((CompletableMessage)message)._future.complete(null);
+		}
+	}
+
+	/**
+	 * Fail the future of a message if it has one.
+	 * @param message The message which could not be written.
+	 * @param error The reason the message was not written.
+	 */
+	static void fail(Message message, Throwable error) {
+		if (message instanceof CompletableMessage) {
+			((CompletableMessage)message)._future.completeExceptionally(error);
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(this);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return this == obj;
+	}
+
+	@Override
+	public String toString() {
+		return "Completable[" + _message + "]";
+	}
+}
@@ -0,0 +1,128 @@
+package net.jetblack.feedbus.adapters;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Represents data received, which is deserialized when it is first read.
+ *
+ * A listener which only looks at the feed and topic, or which passes the raw
+ * bytes on, never pays for deserialization. The deserialized data is kept, so
+ * the listeners of an event deserialize it at most once. The event is not
+ * thread safe, and should not be shared with other threads. When the client
+ * is configured to reuse events the same instance is passed for each data
+ * received on a thread, and it is only valid for the duration of the call to
+ * the listener.
+ */
+public class LazyDataReceivedEvent extends DataReceivedEvent {
+
+	private final ByteSerializable _byteSerializer;
+	private String _feed;
+	private String _topic;
+	private boolean _isImage;
+	private byte[] _bytes;
+	private boolean _isDeserialized;
+	private Object _data;
+	private RuntimeException _error;
+
+    /**
+     * Constructs an empty event, to be reused.
+     */
+	LazyDataReceivedEvent(ByteSerializable byteSerializer) {
+		super(null, null, null, false);
+		_byteSerializer = byteSerializer;
+	}
+
+    /**
+     * Constructs the event.
+     * @param feed The feed name.
+     * @param topic The topic name.
+     * @param bytes The serialized data.
+     * @param isImage If true the data represents an image, otherwise false.
+     * @param byteSerializer The serializer used to deserialize the data.
+     */
+	public LazyDataReceivedEvent(String feed, String topic, byte[] bytes, boolean isImage, ByteSerializable byteSerializer) {
+		this(byteSerializer);
+		setBytes(feed, topic, bytes, isImage);
+	}
+
+    /**
+     * Sets the content of a reused event.
+     */
+	void setBytes(String feed, String topic, byte[] bytes, boolean isImage) {
+		_feed = feed;
+		_topic = topic;
+		_isImage = isImage;
+		_bytes = bytes;
+		_isDeserialized = false;
+		_data = null;
+		_error = null;
+	}
+
+    /**
+     * Clears a reused event, so it does not keep the data alive.
+     */
+	void clear() {
+		setBytes(null, null, null, false);
+	}
+
+	@Override
+	public String getFeed() {
+		return _feed;
+	}
+
+	@Override
+	public String getTopic() {
+		return _topic;
+	}
+
+	@Override
+	public boolean isImage() {
+		return _isImage;
+	}
+
+	/**
+	 * Gets the serialized data. The array must not be modified.
+	 * @return The serialized data.
+	 */
+	public byte[] getBytes() {
+		return _bytes;
+	}
+
+	/**
+	 * Gets a read only view of the serialized data.
+	 * @return The serialized data.
+	 */
+	public ByteBuffer getByteBuffer() {
+		return _bytes == null ? null : ByteBuffer.wrap(_bytes).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Gets whether the data has been deserialized.
+	 * @return true if the data has been deserialized; otherwise false.
+	 */
+	public boolean isDeserialized() {
+		return _isDeserialized;
+	}
+
+    /**
+     * Gets the data, deserializing it on the first call.
+     * @return The data.
+     * @throws IllegalStateException Thrown if the data could not be deserialized.
+     */
+	@Override
+	public Object getData() {
+		if (!_isDeserialized) {
+			_isDeserialized = true;
+			try {
+				_data = _bytes == null ? null : _byteSerializer.deserialize(_bytes);
+			} catch (Exception error) {
+				_error = new IllegalStateException("Failed to deserialize the data", error);
+			}
+		}
+
+		if (_error != null) {
+			throw _error;
+		}
+		return _data;
+	}
+}
@@ -0,0 +1,136 @@
+package net.jetblack.feedbus.adapters;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.jetblack.feedbus.util.concurrent.Threads;
+
+/**
+ * Runs the listeners of a client on an executor, partitioned by feed and topic.
+ *
+ * The tasks for a feed and topic always go to the same partition, and a
+ * partition runs its tasks in order on at most one thread at a time, so the
+ * order of the messages on each topic is preserved while different topics
+ * are handled in parallel.
+ */
+final class PartitionedDispatcher {
+
+	private static final Logger logger = Logger.getLogger(PartitionedDispatcher.class.getName());
+
+	// The number of tasks a partition runs before yielding the thread to the other partitions.
+	private static final int MAX_TASKS_PER_RUN = 256;
+
+	private final Partition[] _partitions;
+	private final ExecutorService _ownedExecutor;
+
+	/**
+	 * Construct the dispatcher.
+	 *
+	 * @param partitionCount The number of partitions.
+	 * @param executor The executor on which to run the partitions, or null to create a pool with a thread for each partition.
+	 * @param isVirtualThreads If true the threads of a created pool are virtual threads, when the runtime supports them.
+	 */
+	PartitionedDispatcher(int partitionCount, Executor executor, final boolean isVirtualThreads) {
+		if (executor == null) {
+			final AtomicInteger threadCount = new AtomicInteger();
+			_ownedExecutor = Executors.newFixedThreadPool(partitionCount, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					return Threads.create(runnable, "dispatch-" + threadCount.getAndIncrement(), isVirtualThreads);
+				}
+			});
+			executor = _ownedExecutor;
+		} else {
+			_ownedExecutor = null;
+		}
+
+		_partitions = new Partition[partitionCount];
+		for (int i = 0; i < partitionCount; ++i) {
+			_partitions[i] = new Partition(executor);
+		}
+	}
+
+	/**
+	 * Run a task in the partition of a feed and topic.
+	 *
+	 * @param feed The name of the feed.
+	 * @param topic The name of the topic.
+	 * @param task The task.
+	 */
+	void dispatch(String feed, String topic, Runnable task) {
+		int hash = 31 * feed.hashCode() + topic.hashCode();
+		hash ^= hash >>> 16;
+		_partitions[(hash & Integer.MAX_VALUE) % _partitions.length].add(task);
+	}
+
+	/**
+	 * Run a task which does not belong to a feed and topic, such as a change in the connection state.
+	 *
+	 * @param task The task.
+	 */
+	void dispatch(Runnable task) {
+		_partitions[0].add(task);
+	}
+
+	/**
+	 * Stop the threads of a created pool once the dispatched tasks have run.
+	 */
+	void shutdown() {
+		if (_ownedExecutor != null) {
+			_ownedExecutor.shutdown();
+		}
+	}
+
+	private static class Partition implements Runnable {
+
+		private final Executor _executor;
+		private final Queue<Runnable> _tasks = new ConcurrentLinkedQueue<Runnable>();
+		private final AtomicBoolean _isScheduled = new AtomicBoolean();
+
+		Partition(Executor executor) {
+			_executor = executor;
+		}
+
+		void add(Runnable task) {
+			_tasks.add(task);
+			schedule();
+		}
+
+		private void schedule() {
+			if (_isScheduled.compareAndSet(false, true)) {
+				try {
+					_executor.execute(this);
+				} catch (RuntimeException error) {
+					_isScheduled.set(false);
+					logger.log(Level.SEVERE, "Failed to schedule the listeners", error);
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			Runnable task;
+			for (int i = 0; i < MAX_TASKS_PER_RUN && (task = _tasks.poll()) != null; ++i) {
+				try {
+					task.run();
+				} catch (RuntimeException error) {
+					// A failing listener must not stop the others on the partition.
+					logger.log(Level.SEVERE, "A listener failed", error);
+				}
+			}
+
+			_isScheduled.set(false);
+			if (!_tasks.isEmpty()) {
+				schedule();
+			}
+		}
+	}
+}
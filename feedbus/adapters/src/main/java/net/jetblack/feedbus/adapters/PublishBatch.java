@@ -0,0 +1,102 @@
+package net.jetblack.feedbus.adapters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A batch of data to publish in a single message.
+ *
+ * The entries are published in the order they were added. A batch may be
+ * reused after it has been published by calling clear.
+ */
+public class PublishBatch {
+
+    private final List<String> _feeds = new ArrayList<String>();
+    private final List<String> _topics = new ArrayList<String>();
+    private final List<Boolean> _isImages = new ArrayList<Boolean>();
+    private final List<Object> _data = new ArrayList<Object>();
+
+    /**
+     * Add data to the batch.
+     *
+     * @param feed The name of the feed.
+     * @param topic The name of the topic.
+     * @param isImage If true the data represents an image, otherwise it is a delta.
+     * @param data The data transmitted.
+     * @return This batch.
+     */
+    public PublishBatch add(String feed, String topic, boolean isImage, Object data) {
+        if (feed == null)
+            throw new IllegalArgumentException("feed");
+        if (topic == null)
+            throw new IllegalArgumentException("topic");
+
+        _feeds.add(feed);
+        _topics.add(topic);
+        _isImages.add(isImage);
+        _data.add(data);
+        return this;
+    }
+
+    /**
+     * Gets the number of entries in the batch.
+     * @return The size of the batch.
+     */
+    public int size() {
+    	return _feeds.size();
+    }
+
+    /**
+     * Gets whether the batch is empty.
+     * @return true if there are no entries.
+     */
+    public boolean isEmpty() {
+    	return _feeds.isEmpty();
+    }
+
+    /**
+     * Remove all the entries.
+     */
+    public void clear() {
+    	_feeds.clear();
+    	_topics.clear();
+    	_isImages.clear();
+    	_data.clear();
+    }
+
+    /**
+     * Gets the feed name of an entry.
+     * @param index The index of the entry.
+     * @return The feed name.
+     */
+    public String getFeed(int index) {
+    	return _feeds.get(index);
+    }
+
+    /**
+     * Gets the topic name of an entry.
+     * @param index The index of the entry.
+     * @return The topic name.
+     */
+    public String getTopic(int index) {
+    	return _topics.get(index);
+    }
+
+    /**
+     * Gets whether the data of an entry is an image or a delta.
+     * @param index The index of the entry.
+     * @return true if the data represents an image; otherwise false.
+     */
+    public boolean isImage(int index) {
+    	return _isImages.get(index);
+    }
+
+    /**
+     * Gets the data of an entry.
+     * @param index The index of the entry.
+     * @return The data.
+     */
+    public Object getData(int index) {
+    	return _data.get(index);
+    }
+}
@@ -0,0 +1,60 @@
+package net.jetblack.feedbus.adapters;
+
+/**
+ * Represents data received, in an event which is reused for each data
+ * received on a thread.
+ *
+ * The event is only created when the client is configured to reuse events,
+ * and it is only valid for the duration of the call to the listener.
+ */
+final class ReusableDataReceivedEvent extends DataReceivedEvent {
+
+    private String _feed;
+    private String _topic;
+    private boolean _isImage;
+    private Object _data;
+
+    /**
+     * Constructs an empty event.
+     */
+    ReusableDataReceivedEvent() {
+    	super(null, null, null, false);
+    }
+
+    /**
+     * Sets the content of the event.
+     */
+    void set(String feed, String topic, Object data, boolean isImage) {
+        _feed = feed;
+        _topic = topic;
+        _isImage = isImage;
+        _data = data;
+    }
+
+    /**
+     * Clears the event, so it does not keep the data alive.
+     */
+    void clear() {
+        set(null, null, null, false);
+    }
+
+    @Override
+    public String getFeed() {
+    	return _feed;
+    }
+
+    @Override
+    public String getTopic() {
+    	return _topic;
+    }
+
+    @Override
+    public boolean isImage() {
+    	return _isImage;
+    }
+
+    @Override
+    public Object getData() {
+    	return _data;
+    }
+}
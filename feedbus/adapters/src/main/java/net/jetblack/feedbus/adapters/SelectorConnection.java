@@ -0,0 +1,330 @@
+package net.jetblack.feedbus.adapters;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import net.jetblack.feedbus.messages.Message;
+import net.jetblack.feedbus.messages.PartialInputStream;
+import net.jetblack.feedbus.util.io.ReusableByteArrayOutputStream;
+
+/**
+ * The non-blocking connection of a client, serviced by the shared selector loop.
+ *
+ * The connection reads messages as they arrive and passes them to the client
+ * on the loop thread, which dispatches them to the listeners on other threads.
+ * Messages placed on the write queue are encoded and written in batches when
+ * the channel is writable. The futures of the messages in a batch are
+ * completed once the whole batch has been written.
+ */
+final class SelectorConnection {
+
+	private static final Logger logger = Logger.getLogger(SelectorConnection.class.getName());
+
+	private static final int INITIAL_READ_BUFFER_SIZE = 64 * 1024;
+	private static final int WRITE_BATCH_BYTES = 64 * 1024;
+
+	private final Client _client;
+	private final SocketChannel _channel;
+	private final SelectorLoop _loop;
+	private final BlockingQueue<Message> _writeQueue;
+	private final boolean _isFraming;
+	private final int _maxMessageSize;
+	private final AtomicBoolean _isFlushScheduled = new AtomicBoolean();
+	private final ReusableByteArrayOutputStream _encodeBuffer = new ReusableByteArrayOutputStream(WRITE_BATCH_BYTES);
+	private final DataOutputStream _encodeStream = new DataOutputStream(_encodeBuffer);
+	// The messages encoded in the pending write.
+	private final List<Message> _pendingMessages = new ArrayList<Message>();
+	private final Runnable _flushTask = new Runnable() {
+		@Override
+		public void run() {
+			flush();
+		}
+	};
+
+	private ByteBuffer _readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+	// The length the incomplete unframed message at the start of the read buffer needs before it is parsed again.
+	private int _requiredLength;
+	private ByteBuffer _pendingWrite;
+	private SelectionKey _key;
+	private volatile boolean _isClosed;
+
+	/**
+	 * Construct the connection.
+	 *
+	 * @param client The client to which received messages are passed.
+	 * @param channel The channel connected to the distributor, which has completed the handshake.
+	 * @param loop The selector loop which will service the channel.
+	 * @param writeQueue The queue of messages to write.
+	 * @param isFraming If true messages are read and written as frames.
+	 * @param maxMessageSize The largest message which may be read.
+	 */
+	SelectorConnection(Client client, SocketChannel channel, SelectorLoop loop, BlockingQueue<Message> writeQueue, boolean isFraming, int maxMessageSize) {
+		_client = client;
+		_channel = channel;
+		_loop = loop;
+		_writeQueue = writeQueue;
+		_isFraming = isFraming;
+		_maxMessageSize = maxMessageSize;
+	}
+
+	/**
+	 * Start reading and writing.
+	 *
+	 * @throws IOException
+	 */
+	void start() throws IOException {
+		_channel.configureBlocking(false);
+		_loop.execute(new Runnable() {
+			@Override
+			public void run() {
+				register();
+			}
+		});
+	}
+
+	private void register() {
+		try {
+			_key = _loop.register(_channel, SelectionKey.OP_READ, this);
+			// Anything queued before registration can now be written.
+			flush();
+		} catch (IOException error) {
+			fail(error);
+		}
+	}
+
+	/**
+	 * Called after a message has been placed on the write queue.
+	 */
+	void onMessageQueued() {
+		if (_isFlushScheduled.compareAndSet(false, true)) {
+			_loop.execute(_flushTask);
+		}
+	}
+
+	/**
+	 * Called by the selector loop when the channel is ready.
+	 *
+	 * @param key The selection key.
+	 */
+	void onSelected(SelectionKey key) {
+		try {
+			if (key.isReadable()) {
+				read();
+			}
+			if (key.isValid() && key.isWritable()) {
+				flush();
+			}
+		} catch (CancelledKeyException error) {
+			fail(error);
+		}
+	}
+
+	private void read() {
+		try {
+			int count = _channel.read(_readBuffer);
+			if (count < 0) {
+				fail(new EOFException());
+				return;
+			}
+
+			readMessages();
+		} catch (Exception error) {
+			fail(error);
+		}
+	}
+
+	private void readMessages() throws Exception {
+		_readBuffer.flip();
+
+		while (_readBuffer.hasRemaining() && !_isClosed) {
+			if (!(_isFraming ? readFrame() : readUnframed())) {
+				// The message is incomplete; wait for more data.
+				break;
+			}
+		}
+
+		_readBuffer.compact();
+
+		if (!_readBuffer.hasRemaining()) {
+			// A single message is larger than the buffer.
+			int maxBufferSize = _maxMessageSize + Message.FRAME_PREFIX_LENGTH;
+			if (_readBuffer.capacity() >= maxBufferSize) {
+				throw new IOException("A message is larger than the maximum of " + _maxMessageSize + " bytes");
+			}
+			ByteBuffer readBuffer = ByteBuffer.allocate((int)Math.min(_readBuffer.capacity() * 2L, maxBufferSize));
+			_readBuffer.flip();
+			readBuffer.put(_readBuffer);
+			_readBuffer = readBuffer;
+		}
+	}
+
+	private boolean readUnframed() throws Exception {
+		if (_readBuffer.remaining() < _requiredLength) {
+			return false;
+		}
+
+		PartialInputStream input = new PartialInputStream(
+				_readBuffer.array(),
+				_readBuffer.arrayOffset() + _readBuffer.position(),
+				_readBuffer.remaining());
+
+		Message message;
+		try {
+			message = Message.read(new DataInputStream(input), _maxMessageSize);
+		} catch (EOFException error) {
+			// Wait for the bytes the message needs rather than parsing it again after every read.
+			_requiredLength = input.getRequiredLength();
+			if (_requiredLength > _maxMessageSize) {
+				throw new IOException("A message is larger than the maximum of " + _maxMessageSize + " bytes");
+			}
+			return false;
+		}
+
+		_requiredLength = 0;
+		_readBuffer.position(_readBuffer.position() + input.getPosition());
+		_client.onMessage(message);
+		return true;
+	}
+
+	private boolean readFrame() throws Exception {
+		if (_readBuffer.remaining() < Message.FRAME_PREFIX_LENGTH) {
+			return false;
+		}
+
+		int position = _readBuffer.position();
+		int length = _readBuffer.getInt(position);
+		if (length < 0 || length > _maxMessageSize) {
+			throw new IOException("invalid frame length " + length);
+		}
+		if (_readBuffer.remaining() < Message.FRAME_PREFIX_LENGTH + length) {
+			return false;
+		}
+
+		_readBuffer.position(position + Message.FRAME_PREFIX_LENGTH + length);
+		Message message = Message.decode(_readBuffer.array(), _readBuffer.arrayOffset() + position + Message.FRAME_PREFIX_LENGTH, length);
+		if (message == null) {
+			logger.fine("Skipped a frame of an unknown message type.");
+		} else {
+			_client.onMessage(message);
+		}
+		return true;
+	}
+
+	private void flush() {
+		_isFlushScheduled.set(false);
+
+		if (_key == null || !_key.isValid()) {
+			return;
+		}
+
+		try {
+			if (_pendingWrite == null) {
+				_pendingWrite = encodeQueuedMessages();
+			}
+
+			while (_pendingWrite != null) {
+				_channel.write(_pendingWrite);
+				if (_pendingWrite.hasRemaining()) {
+					// The socket buffer is full; wait until the channel is writable.
+					_key.interestOps(_key.interestOps() | SelectionKey.OP_WRITE);
+					return;
+				}
+				completePendingMessages();
+				_pendingWrite = encodeQueuedMessages();
+			}
+
+			_key.interestOps(_key.interestOps() & ~SelectionKey.OP_WRITE);
+		} catch (Exception error) {
+			fail(error);
+		}
+	}
+
+	private ByteBuffer encodeQueuedMessages() throws IOException {
+		_encodeBuffer.reset();
+
+		Message message;
+		while (_encodeBuffer.size() < WRITE_BATCH_BYTES && (message = _writeQueue.poll()) != null) {
+			_client.onMessageDequeued();
+			_pendingMessages.add(message);
+			if (_isFraming) {
+				message.writeFrame(_encodeStream);
+			} else {
+				message.write(_encodeStream);
+			}
+		}
+
+		return _encodeBuffer.size() == 0 ? null : _encodeBuffer.toByteBuffer();
+	}
+
+	private void completePendingMessages() {
+		for (int i = 0; i < _pendingMessages.size(); ++i) {
+			CompletableMessage.complete(_pendingMessages.get(i));
+		}
+		_pendingMessages.clear();
+	}
+
+	private void failPendingMessages(Exception error) {
+		for (int i = 0; i < _pendingMessages.size(); ++i) {
+			CompletableMessage.fail(_pendingMessages.get(i), error);
+		}
+		_pendingMessages.clear();
+	}
+
+	/**
+	 * Called by the selector loop when servicing the channel failed unexpectedly.
+	 *
+	 * @param error The failure.
+	 */
+	void onFault(Throwable error) {
+		fail(error instanceof Exception ? (Exception)error : new IOException("Failed to service the connection", error));
+	}
+
+	private void fail(Exception error) {
+		if (_isClosed) {
+			return;
+		}
+
+		closeChannel();
+
+		failPendingMessages(error);
+		_client.failQueuedMessages(error);
+
+		_client.onConnectionFailed(error);
+	}
+
+	private void closeChannel() {
+		_isClosed = true;
+
+		try {
+			_channel.close();
+		} catch (IOException e) {
+			// Nothing to do
+		}
+	}
+
+	/**
+	 * Close the channel without reporting a change in the connection state.
+	 */
+	void close() {
+		closeChannel();
+
+		// The pending messages belong to the loop thread, which may be writing them.
+		_loop.execute(new Runnable() {
+			@Override
+			public void run() {
+				failPendingMessages(new IOException("The client has been closed"));
+			}
+		});
+	}
+}
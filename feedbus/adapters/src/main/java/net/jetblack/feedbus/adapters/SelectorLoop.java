@@ -0,0 +1,120 @@
+package net.jetblack.feedbus.adapters;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A thread which multiplexes the I/O of the selector connections over a single selector.
+ *
+ * One loop is shared by all the clients in the process which use the selector
+ * transport. The loop runs on a daemon thread which is started by the first
+ * client to use it.
+ */
+final class SelectorLoop implements Runnable {
+
+	private static final Logger logger = Logger.getLogger(SelectorLoop.class.getName());
+
+	private static SelectorLoop _shared;
+
+	private final Selector _selector;
+	private final Queue<Runnable> _tasks = new ConcurrentLinkedQueue<Runnable>();
+	private final String _name;
+
+	private SelectorLoop(String name) throws IOException {
+		_selector = Selector.open();
+		_name = name;
+	}
+
+	/**
+	 * Gets the loop shared by the clients in the process, starting it if necessary.
+	 *
+	 * @return The shared loop.
+	 * @throws IOException
+	 */
+	static synchronized SelectorLoop getShared() throws IOException {
+		if (_shared == null) {
+			SelectorLoop loop = new SelectorLoop("feedbus-selector");
+			Thread thread = new Thread(loop, loop._name);
+			thread.setDaemon(true);
+			thread.start();
+			_shared = loop;
+		}
+		return _shared;
+	}
+
+	/**
+	 * Run a task on the loop thread.
+	 *
+	 * @param task The task to run.
+	 */
+	void execute(Runnable task) {
+		_tasks.add(task);
+		_selector.wakeup();
+	}
+
+	/**
+	 * Register a channel with the selector. This must be called on the loop thread.
+	 *
+	 * @param channel The channel to register.
+	 * @param ops The initial interest set.
+	 * @param connection The connection to notify when the channel is ready.
+	 * @return The selection key.
+	 * @throws IOException
+	 */
+	SelectionKey register(SelectableChannel channel, int ops, SelectorConnection connection) throws IOException {
+		return channel.register(_selector, ops, connection);
+	}
+
+	@Override
+	public void run() {
+		while (!Thread.currentThread().isInterrupted()) {
+			try {
+				_selector.select();
+
+				runTasks();
+
+				Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+
+					SelectorConnection connection = (SelectorConnection)key.attachment();
+					try {
+						connection.onSelected(key);
+					} catch (Throwable error) {
+						// Only the connection which failed is closed; the loop is shared by every client.
+						logger.log(Level.WARNING, "Failed to service a connection", error);
+						connection.onFault(error);
+					}
+				}
+			} catch (ClosedSelectorException error) {
+				break;
+			} catch (IOException error) {
+				logger.log(Level.SEVERE, "The selector loop has faulted", error);
+				break;
+			}
+		}
+
+		logger.fine("Exited selector loop " + _name);
+	}
+
+	private void runTasks() {
+		Runnable task;
+		while ((task = _tasks.poll()) != null) {
+			try {
+				task.run();
+			} catch (Throwable error) {
+				// A task for one client must not stop the loop for the others.
+				logger.log(Level.SEVERE, "A selector task failed", error);
+			}
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package net.jetblack.feedbus.adapters;
+
+/**
+ * Represents the writability changed event.
+ */
+public class WritabilityChangedEvent {
+
+    private final boolean _isWritable;
+    private final int _queueSize;
+
+    /**
+     * Construct the event.
+     * @param isWritable True if the write queue has drained to the low watermark, false if it has filled to the high watermark.
+     * @param queueSize The number of messages on the write queue when the writability changed.
+     */
+    public WritabilityChangedEvent(boolean isWritable, int queueSize) {
+        _isWritable = isWritable;
+        _queueSize = queueSize;
+    }
+
+    /**
+     * Gets whether the client is writable.
+     * @return True if data can be published without filling the write queue.
+     */
+    public boolean isWritable() {
+    	return _isWritable;
+    }
+
+    /**
+     * Gets the number of messages on the write queue.
+     * @return The size of the write queue when the writability changed.
+     */
+    public int getQueueSize() {
+    	return _queueSize;
+    }
+    
+    @Override
+    public String toString() {
+    	return "IsWritable=" + _isWritable + ", QueueSize=" + _queueSize;
+    }
+}
@@ -0,0 +1,14 @@
+package net.jetblack.feedbus.adapters;
+
+/**
+ * A listener to writability changed events.
+ */
+public interface WritabilityChangedListener {
+
+	/**
+	 * Called when the write queue fills to the high watermark, or drains to the low watermark.
+	 * @param event The content of the event.
+	 */
+	void onWritabilityChanged(WritabilityChangedEvent event);
+	
+}
@@ -2,6 +2,7 @@ package net.jetblack.feedbus.adapters.config;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.concurrent.Executor;
 
 import net.jetblack.feedbus.adapters.ByteSerializable;
 import net.jetblack.feedbus.adapters.StringSerializer;
@@ -32,12 +33,73 @@ public class ConnectionConfig {
 	 * The default server heartbeat interval.
 	 */
 	public static final long DEFAULT_HEARTBEAT_INTERVAL = 1000;
+	/**
+	 * By default the client uses platform threads.
+	 */
+	public static final boolean DEFAULT_VIRTUAL_THREADS = false;
+	/**
+	 * By default the client uses the unframed wire format for multicast data.
+	 */
+	public static final boolean DEFAULT_MULTICAST_FRAMES = false;
+	/**
+	 * By default the client uses unframed messages.
+	 */
+	public static final boolean DEFAULT_FRAMING = false;
+	/**
+	 * By default multicast data carries the feed and topic names.
+	 */
+	public static final boolean DEFAULT_TOPIC_ALIASES = false;
+	/**
+	 * By default the client uses a blocking socket with its own threads.
+	 */
+	public static final TransportType DEFAULT_TRANSPORT = TransportType.Stream;
+	/**
+	 * The default size of the write queue at which the client becomes unwritable.
+	 */
+	public static final int DEFAULT_WRITE_HIGH_WATERMARK = 4096;
+	/**
+	 * The default size of the write queue at which the client becomes writable again.
+	 */
+	public static final int DEFAULT_WRITE_LOW_WATERMARK = 1024;
+	/**
+	 * By default the listeners are called on the thread which reads the messages.
+	 */
+	public static final int DEFAULT_DISPATCH_THREADS = 0;
+	/**
+	 * By default a new event is created for each data received.
+	 */
+	public static final boolean DEFAULT_REUSABLE_EVENTS = false;
+	/**
+	 * By default the data is deserialized before the listeners are called.
+	 */
+	public static final boolean DEFAULT_LAZY_DATA = false;
+	/**
+	 * By default a batch is published as one message for each entry.
+	 */
+	public static final boolean DEFAULT_MULTICAST_BATCHES = false;
+	/**
+	 * The default largest message the selector transport reads from the server.
+	 */
+	public static final int DEFAULT_MAX_MESSAGE_SIZE = 16 * 1024 * 1024;
 
     private InetAddress _address;
     private int _port;
     private Class<? extends ByteSerializable> _byteSerializerType;
     private int _writeQueueCapacity;
     private long _heartbeatInterval;
+    private boolean _isVirtualThreads = DEFAULT_VIRTUAL_THREADS;
+    private boolean _isMulticastFrames = DEFAULT_MULTICAST_FRAMES;
+    private boolean _isFraming = DEFAULT_FRAMING;
+    private boolean _isTopicAliases = DEFAULT_TOPIC_ALIASES;
+    private TransportType _transport = DEFAULT_TRANSPORT;
+    private int _writeHighWatermark = DEFAULT_WRITE_HIGH_WATERMARK;
+    private int _writeLowWatermark = DEFAULT_WRITE_LOW_WATERMARK;
+    private int _dispatchThreads = DEFAULT_DISPATCH_THREADS;
+    private Executor _dispatchExecutor;
+    private boolean _isReusableEvents = DEFAULT_REUSABLE_EVENTS;
+    private boolean _isLazyData = DEFAULT_LAZY_DATA;
+    private boolean _isMulticastBatches = DEFAULT_MULTICAST_BATCHES;
+    private int _maxMessageSize = DEFAULT_MAX_MESSAGE_SIZE;
 
     /**
      * Create the configuration from properties.
@@ -67,7 +129,56 @@ public class ConnectionConfig {
 		String heartbeatIntervalText = System.getProperty(packageName + ".HEARTBEAT_INTERVAL");
 		long heartbeatInterval = heartbeatIntervalText== null ? DEFAULT_HEARTBEAT_INTERVAL : Long.parseLong(heartbeatIntervalText);
 
-		return new ConnectionConfig(address, port, (Class<? extends ByteSerializable>)cls, writeQueueCapacity, heartbeatInterval);
+		String virtualThreadsText = System.getProperty(packageName + ".VIRTUAL_THREADS");
+		boolean isVirtualThreads = virtualThreadsText == null ? DEFAULT_VIRTUAL_THREADS : Boolean.parseBoolean(virtualThreadsText);
+
+		String multicastFramesText = System.getProperty(packageName + ".MULTICAST_FRAMES");
+		boolean isMulticastFrames = multicastFramesText == null ? DEFAULT_MULTICAST_FRAMES : Boolean.parseBoolean(multicastFramesText);
+
+		String framingText = System.getProperty(packageName + ".FRAMING");
+		boolean isFraming = framingText == null ? DEFAULT_FRAMING : Boolean.parseBoolean(framingText);
+
+		String topicAliasesText = System.getProperty(packageName + ".TOPIC_ALIASES");
+		boolean isTopicAliases = topicAliasesText == null ? DEFAULT_TOPIC_ALIASES : Boolean.parseBoolean(topicAliasesText);
+
+		String transportText = System.getProperty(packageName + ".TRANSPORT");
+		TransportType transport = transportText == null ? DEFAULT_TRANSPORT : TransportType.valueOf(transportText);
+
+		String writeHighWatermarkText = System.getProperty(packageName + ".WRITE_HIGH_WATERMARK");
+		int writeHighWatermark = writeHighWatermarkText == null ? DEFAULT_WRITE_HIGH_WATERMARK : Integer.parseInt(writeHighWatermarkText);
+
+		String writeLowWatermarkText = System.getProperty(packageName + ".WRITE_LOW_WATERMARK");
+		int writeLowWatermark = writeLowWatermarkText == null ? DEFAULT_WRITE_LOW_WATERMARK : Integer.parseInt(writeLowWatermarkText);
+
+		String dispatchThreadsText = System.getProperty(packageName + ".DISPATCH_THREADS");
+		int dispatchThreads = dispatchThreadsText == null ? DEFAULT_DISPATCH_THREADS : Integer.parseInt(dispatchThreadsText);
+
+		String reusableEventsText = System.getProperty(packageName + ".REUSABLE_EVENTS");
+		boolean isReusableEvents = reusableEventsText == null ? DEFAULT_REUSABLE_EVENTS : Boolean.parseBoolean(reusableEventsText);
+
+		String lazyDataText = System.getProperty(packageName + ".LAZY_DATA");
+		boolean isLazyData = lazyDataText == null ? DEFAULT_LAZY_DATA : Boolean.parseBoolean(lazyDataText);
+
+		String multicastBatchesText = System.getProperty(packageName + ".MULTICAST_BATCHES");
+		boolean isMulticastBatches = multicastBatchesText == null ? DEFAULT_MULTICAST_BATCHES : Boolean.parseBoolean(multicastBatchesText);
+
+		String maxMessageSizeText = System.getProperty(packageName + ".MAX_MESSAGE_SIZE");
+		int maxMessageSize = maxMessageSizeText == null ? DEFAULT_MAX_MESSAGE_SIZE : Integer.parseInt(maxMessageSizeText);
+
+		ConnectionConfig config = new ConnectionConfig(address, port, (Class<? extends ByteSerializable>)cls, writeQueueCapacity, heartbeatInterval);
+		config.setVirtualThreads(isVirtualThreads);
+		config.setMulticastFrames(isMulticastFrames);
+		config.setFraming(isFraming);
+		config.setTopicAliases(isTopicAliases);
+		config.setTransport(transport);
+		config.setWriteHighWatermark(writeHighWatermark);
+		config.setWriteLowWatermark(writeLowWatermark);
+		config.setDispatchThreads(dispatchThreads);
+		config.setReusableEvents(isReusableEvents);
+		config.setLazyData(isLazyData);
+		config.setMulticastBatches(isMulticastBatches);
+		config.setMaxMessageSize(maxMessageSize);
+		return config;
 	}
 	
 	/**
@@ -171,16 +282,257 @@ public class ConnectionConfig {
     public void setHeartbeatInterval(long value) {
     	_heartbeatInterval = value;
     }
+
+    /**
+     * Gets whether the read and write loops run on virtual threads.
+     * @return true if virtual threads should be used.
+     */
+    public boolean isVirtualThreads() {
+    	return _isVirtualThreads;
+    }
+    
+    /**
+     * Sets whether the read and write loops run on virtual threads.
+     * Platform threads are used when the runtime does not support virtual threads.
+     * @param value If true use virtual threads.
+     */
+    public void setVirtualThreads(boolean value) {
+    	_isVirtualThreads = value;
+    }
+    
+    /**
+     * Gets whether multicast data is sent and received as frames.
+     * @return true if multicast frames should be used.
+     */
+    public boolean isMulticastFrames() {
+    	return _isMulticastFrames;
+    }
+    
+    /**
+     * Sets whether multicast data is sent and received as frames.
+     * A frame can be forwarded by the distributor without decoding the data.
+     * The distributor must support the handshake.
+     * @param value If true use multicast frames.
+     */
+    public void setMulticastFrames(boolean value) {
+    	_isMulticastFrames = value;
+    }
+    
+    /**
+     * Gets whether every message is sent and received as a length prefixed frame.
+     * @return true if framing should be used.
+     */
+    public boolean isFraming() {
+    	return _isFraming;
+    }
+    
+    /**
+     * Sets whether every message is sent and received as a length prefixed frame.
+     * The distributor must support the handshake.
+     * @param value If true use framing.
+     */
+    public void setFraming(boolean value) {
+    	_isFraming = value;
+    }
+    
+    /**
+     * Gets whether multicast data carries an alias in place of the feed and topic names.
+     * @return true if topic aliases should be used.
+     */
+    public boolean isTopicAliases() {
+    	return _isTopicAliases;
+    }
+    
+    /**
+     * Sets whether multicast data carries an alias in place of the feed and topic names.
+     * The distributor must support the handshake.
+     * @param value If true use topic aliases.
+     */
+    public void setTopicAliases(boolean value) {
+    	_isTopicAliases = value;
+    }
+    
+    /**
+     * Gets the transport used to communicate with the server.
+     * @return The transport type.
+     */
+    public TransportType getTransport() {
+    	return _transport;
+    }
+    
+    /**
+     * Sets the transport used to communicate with the server.
+     * The selector thread is shared by all the clients in the process, so with the selector transport the listeners
+     * are always called on a dispatch partition, even when no dispatch threads are configured.
+     * @param value The transport type.
+     */
+    public void setTransport(TransportType value) {
+    	_transport = value;
+    }
+    
+    /**
+     * Gets the size of the write queue at which the client becomes unwritable.
+     * @return The high watermark.
+     */
+    public int getWriteHighWatermark() {
+    	return _writeHighWatermark;
+    }
+    
+    /**
+     * Sets the size of the write queue at which the client becomes unwritable.
+     * The high watermark is limited to the write queue capacity.
+     * @param value The high watermark.
+     */
+    public void setWriteHighWatermark(int value) {
+    	_writeHighWatermark = value;
+    }
+    
+    /**
+     * Gets the size of the write queue at which an unwritable client becomes writable again.
+     * @return The low watermark.
+     */
+    public int getWriteLowWatermark() {
+    	return _writeLowWatermark;
+    }
+    
+    /**
+     * Sets the size of the write queue at which an unwritable client becomes writable again.
+     * The low watermark is limited to one less than the high watermark.
+     * @param value The low watermark.
+     */
+    public void setWriteLowWatermark(int value) {
+    	_writeLowWatermark = value;
+    }
+    
+    /**
+     * Gets the number of partitions on which the listeners are called, or 0 to call them on the read thread.
+     * @return The number of dispatch threads.
+     */
+    public int getDispatchThreads() {
+    	return _dispatchThreads;
+    }
+    
+    /**
+     * Sets the number of partitions on which the listeners are called, or 0 to call them on the read thread.
+     * The selector transport uses at least one partition, as its read thread is shared by all the clients in the process.
+     * The messages for a feed and topic are always handled by the same partition, in the order they were received.
+     * Each partition runs on at most one thread at a time. The messages are queued without limit while the listeners fall behind.
+     * @param value The number of dispatch threads.
+     */
+    public void setDispatchThreads(int value) {
+    	_dispatchThreads = value;
+    }
+    
+    /**
+     * Gets the executor on which the dispatch partitions run.
+     * @return The executor, or null if the client creates a thread for each partition.
+     */
+    public Executor getDispatchExecutor() {
+    	return _dispatchExecutor;
+    }
+    
+    /**
+     * Sets the executor on which the dispatch partitions run.
+     * The executor is shared with the caller, and is not shut down when the client is closed.
+     * @param value The executor, or null to create a thread for each partition.
+     */
+    public void setDispatchExecutor(Executor value) {
+    	_dispatchExecutor = value;
+    }
+    
+    /**
+     * Gets whether the data received events are reused.
+     * @return true if the events are reused.
+     */
+    public boolean isReusableEvents() {
+    	return _isReusableEvents;
+    }
+    
+    /**
+     * Sets whether the data received events are reused.
+     * A reused event is only valid for the duration of the call to the listener, which must copy anything it keeps.
+     * @param value If true reuse the events.
+     */
+    public void setReusableEvents(boolean value) {
+    	_isReusableEvents = value;
+    }
+    
+    /**
+     * Gets whether the data is deserialized when a listener first reads it.
+     * @return true if the data is deserialized lazily.
+     */
+    public boolean isLazyData() {
+    	return _isLazyData;
+    }
+    
+    /**
+     * Sets whether the data is deserialized when a listener first reads it.
+     * The listeners then receive a LazyDataReceivedEvent, which also gives the serialized bytes.
+     * An error in deserialization is thrown from getData, and reported as a data error.
+     * @param value If true deserialize the data lazily.
+     */
+    public void setLazyData(boolean value) {
+    	_isLazyData = value;
+    }
+    
+    /**
+     * Gets whether the client asks to publish a batch in a single message.
+     * @return true if the client asks for multicast batches.
+     */
+    public boolean isMulticastBatches() {
+    	return _isMulticastBatches;
+    }
+    
+    /**
+     * Sets whether the client asks to publish a batch in a single message.
+     * If the distributor does not accept the feature each entry of a batch is published as a separate message.
+     * @param value If true ask for multicast batches.
+     */
+    public void setMulticastBatches(boolean value) {
+    	_isMulticastBatches = value;
+    }
+    
+    /**
+     * Gets the largest message in bytes the client reads from the server.
+     * Published batches are split so that no message exceeds it.
+     * @return The maximum message size in bytes.
+     */
+    public int getMaxMessageSize() {
+    	return _maxMessageSize;
+    }
+    
+    /**
+     * Sets the largest message in bytes the client reads from the server.
+     * The connection fails if the server sends a larger message. Published
+     * batches are split so that no message exceeds it, so it should be no
+     * larger than the maximum message size of the distributor.
+     * @param value The maximum message size in bytes.
+     */
+    public void setMaxMessageSize(int value) {
+    	_maxMessageSize = value;
+    }
     
     @Override
     public String toString() {
         return String.format(
-        		"Address=%1$s, Port=%2$d, ByteEncoderType=%3$s, WriteQueueCapacity=%4$d, HeartbeatInterval=%5$d", 
+        		"Address=%1$s, Port=%2$d, ByteEncoderType=%3$s, WriteQueueCapacity=%4$d, HeartbeatInterval=%5$d, VirtualThreads=%6$b, MulticastFrames=%7$b, Framing=%8$b, TopicAliases=%9$b, Transport=%10$s, WriteHighWatermark=%11$d, WriteLowWatermark=%12$d, DispatchThreads=%13$d, ReusableEvents=%14$b, LazyData=%15$b, MulticastBatches=%16$b, MaxMessageSize=%17$d", 
         		_address, 
         		_port, 
         		_byteSerializerType.getName(),
         		_writeQueueCapacity,
-        		_heartbeatInterval);
+        		_heartbeatInterval,
+        		_isVirtualThreads,
+        		_isMulticastFrames,
+        		_isFraming,
+        		_isTopicAliases,
+        		_transport,
+        		_writeHighWatermark,
+        		_writeLowWatermark,
+        		_dispatchThreads,
+        		_isReusableEvents,
+        		_isLazyData,
+        		_isMulticastBatches,
+        		_maxMessageSize);
     }
 
 }
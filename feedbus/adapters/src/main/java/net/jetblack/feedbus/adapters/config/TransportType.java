@@ -0,0 +1,16 @@
+package net.jetblack.feedbus.adapters.config;
+
+/**
+ * The transport used by the client.
+ */
+public enum TransportType {
+	/**
+	 * A blocking socket with a read and a write thread per client.
+	 */
+	Stream,
+	/**
+	 * A non-blocking channel serviced by a selector thread shared by all the clients in the process.
+	 * The listeners are called on a dispatch partition rather than the selector thread.
+	 */
+	Selector
+}
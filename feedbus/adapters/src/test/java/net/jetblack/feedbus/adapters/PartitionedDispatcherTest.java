@@ -0,0 +1,100 @@
+package net.jetblack.feedbus.adapters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class PartitionedDispatcherTest {
+
+	private static final int TOPICS = 20;
+	private static final int TASKS_PER_TOPIC = 2000;
+
+	@Test
+	public void ownedPoolKeepsTheOrderOfEachTopic() throws Exception {
+		PartitionedDispatcher dispatcher = new PartitionedDispatcher(4, null, false);
+		try {
+			assertTopicOrder(dispatcher);
+		} finally {
+			dispatcher.shutdown();
+		}
+	}
+
+	@Test
+	public void sharedExecutorKeepsTheOrderOfEachTopic() throws Exception {
+		// More threads than partitions, so a partition could run on several threads at once if it were not serialized.
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			assertTopicOrder(new PartitionedDispatcher(3, executor, false));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void failingTaskDoesNotStopThePartition() throws Exception {
+		PartitionedDispatcher dispatcher = new PartitionedDispatcher(1, null, false);
+		try {
+			final CountDownLatch done = new CountDownLatch(1);
+			dispatcher.dispatch("FEED", "TOPIC", new Runnable() {
+				@Override
+				public void run() {
+					throw new IllegalStateException("Expected by the test");
+				}
+			});
+			dispatcher.dispatch("FEED", "TOPIC", new Runnable() {
+				@Override
+				public void run() {
+					done.countDown();
+				}
+			});
+
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+		} finally {
+			dispatcher.shutdown();
+		}
+	}
+
+	private static void assertTopicOrder(PartitionedDispatcher dispatcher) throws InterruptedException {
+		final int[] next = new int[TOPICS];
+		final AtomicInteger[] running = new AtomicInteger[TOPICS];
+		final AtomicInteger errors = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch(TOPICS * TASKS_PER_TOPIC);
+		for (int topic = 0; topic < TOPICS; ++topic) {
+			running[topic] = new AtomicInteger();
+		}
+
+		for (int sequence = 0; sequence < TASKS_PER_TOPIC; ++sequence) {
+			for (int t = 0; t < TOPICS; ++t) {
+				final int topic = t;
+				final int expected = sequence;
+				dispatcher.dispatch("FEED", "TOPIC-" + topic, new Runnable() {
+					@Override
+					public void run() {
+						if (running[topic].incrementAndGet() != 1) {
+							errors.incrementAndGet();
+						}
+						if (next[topic] != expected) {
+							errors.incrementAndGet();
+						}
+						next[topic] = expected + 1;
+						running[topic].decrementAndGet();
+						done.countDown();
+					}
+				});
+			}
+		}
+
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		assertEquals(0, errors.get());
+		for (int topic = 0; topic < TOPICS; ++topic) {
+			assertEquals(TASKS_PER_TOPIC, next[topic]);
+		}
+	}
+}
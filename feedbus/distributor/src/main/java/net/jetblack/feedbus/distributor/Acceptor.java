@@ -2,8 +2,8 @@ package net.jetblack.feedbus.distributor;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.net.InetAddress;
 import java.net.SocketException;
+import java.nio.channels.ClosedChannelException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -12,11 +12,17 @@ import javax.management.MBeanRegistrationException;
 import javax.management.MalformedObjectNameException;
 import javax.management.NotCompliantMBeanException;
 
+import net.jetblack.feedbus.distributor.config.DistributorConfig;
 import net.jetblack.feedbus.distributor.interactors.Interactor;
 import net.jetblack.feedbus.distributor.interactors.InteractorConnectedEventArgs;
 import net.jetblack.feedbus.distributor.interactors.InteractorEventArgs;
 import net.jetblack.feedbus.distributor.interactors.InteractorListener;
-import net.jetblack.feedbus.util.concurrent.EventQueue;
+import net.jetblack.feedbus.distributor.interactors.SelectorInteractorListener;
+import net.jetblack.feedbus.distributor.interactors.StreamInteractorListener;
+import net.jetblack.feedbus.messages.BufferPool;
+import net.jetblack.feedbus.util.SymbolTable;
+import net.jetblack.feedbus.util.concurrent.AbstractEventQueue;
+import net.jetblack.feedbus.util.concurrent.Threads;
 
 /**
  * Accept incoming connections.
@@ -25,30 +31,26 @@ public class Acceptor implements Runnable, Closeable {
 
 	private static final Logger logger = Logger.getLogger(Acceptor.class.getName());
 
-	private final EventQueue<InteractorEventArgs> _eventQueue;
-	private final int _writeQueueCapacity;
-	private final InetAddress _address;
-	private final int _port;
+	private final AbstractEventQueue<InteractorEventArgs> _eventQueue;
+	private final SymbolTable _symbols;
+	private final BufferPool _bufferPool;
+	private final DistributorConfig _config;
 
 	private InteractorListener _listener;
 
 	/**
 	 * Constructs the acceptor.
 	 * 
-	 * @param address The address to bind to.
-	 * @param port The port to bind to.
+	 * @param config The distributor configuration.
 	 * @param eventQueue A queue with which the service will communicate with the client.
-	 * @param writeQueueCapacity The capacity of the interactor write queue.
+	 * @param symbols The symbol table in which the interactors intern feeds and topics.
+	 * @param bufferPool The pool into which the interactors decode data messages, or null.
 	 */
-	public Acceptor(
-			InetAddress address, 
-			int port, 
-			EventQueue<InteractorEventArgs> eventQueue, 
-			int writeQueueCapacity) {
+	public Acceptor(DistributorConfig config, AbstractEventQueue<InteractorEventArgs> eventQueue, SymbolTable symbols, BufferPool bufferPool) {
+		_config = config;
 		_eventQueue = eventQueue;
-		_address = address;
-		_port = port;
-		_writeQueueCapacity = writeQueueCapacity;
+		_symbols = symbols;
+		_bufferPool = bufferPool;
 	}
 
 	/**
@@ -61,16 +63,14 @@ public class Acceptor implements Runnable, Closeable {
 	 * @throws MalformedObjectNameException 
 	 */
 	public Thread start() throws MalformedObjectNameException, InstanceAlreadyExistsException, MBeanRegistrationException, NotCompliantMBeanException {
-		Thread thread = new Thread(this);
-		thread.start();
-		return thread;
+		return Threads.start(this, "Acceptor", _config.isVirtualThreads());
 	}
 
 	@Override
 	public void run() {
 		try {
-			logger.log(Level.INFO, "Listening on " + _address + ":" + _port + ".");
-			_listener = new InteractorListener(_address, _port, _eventQueue, _writeQueueCapacity);
+			logger.log(Level.INFO, "Listening on " + _config.getAddress() + ":" + _config.getPort() + " using the " + _config.getTransport() + " transport.");
+			_listener = createListener();
 		} catch (IOException error) {
 			logger.log(Level.SEVERE, "Failed to create server socket", error);
 			return;
@@ -86,17 +86,34 @@ public class Acceptor implements Runnable, Closeable {
 			} catch (SocketException error) {
 				logger.info("Socket error - exiting");
 				break;
+			} catch (ClosedChannelException error) {
+				logger.info("Channel closed - exiting");
+				break;
 			} catch (IOException error) {
 				logger.log(Level.SEVERE, "Failed to accept interactor", error);
 				break;
 			}
 		}
 	}
-	
+
+
+	private InteractorListener createListener() throws IOException {
+		switch (_config.getTransport()) {
+		case Selector:
+			return new SelectorInteractorListener(_config, _eventQueue, _symbols, _bufferPool);
+		default:
+			return new StreamInteractorListener(_config, _eventQueue, _symbols, _bufferPool);
+		}
+	}
 	
 	@Override
 	public String toString() {
-		return String.format("Address=%1$s, Port=%2$d, WriteQueueCapacity=%3$d", _address, _port, _writeQueueCapacity);
+		return String.format(
+				"Address=%1$s, Port=%2$d, WriteQueueCapacity=%3$d, Transport=%4$s",
+				_config.getAddress(),
+				_config.getPort(),
+				_config.getWriteQueueCapacity(),
+				_config.getTransport());
 	}
 
 	@Override
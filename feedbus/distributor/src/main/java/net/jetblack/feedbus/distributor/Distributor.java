@@ -17,6 +17,18 @@ public class Distributor {
 	 *   <li>--event-queue-capacity 8096</li>
 	 *   <li>--write-queue-capacity 0896</li>
 	 *   <li>--heartbeat-interval 1000</li>
+	 *   <li>--transport Stream</li>
+	 *   <li>--selector-threads 4</li>
+	 *   <li>--virtual-threads</li>
+	 *   <li>--write-batch-bytes 65536</li>
+	 *   <li>--write-linger-time 0</li>
+	 *   <li>--slow-consumer-policy Block</li>
+	 *   <li>--slow-consumer-threshold 1000</li>
+	 *   <li>--routing-shards 1</li>
+	 *   <li>--event-queue-type Blocking</li>
+	 *   <li>--wait-strategy Blocking</li>
+	 *   <li>--pooled-decode</li>
+	 *   <li>--max-message-size 16777216</li>
 	 * </ul>
 	 * 
 	 * @param args Command line arguments.
@@ -25,11 +37,7 @@ public class Distributor {
 		try {
 			ProgramArgs programArgs = ProgramArgs.parse(args);
 
-			Server server = new Server(
-					programArgs.getConfig().getAddress(), 
-					programArgs.getConfig().getPort(), 
-					programArgs.getConfig().getEventQueueCapacity(), 
-					programArgs.getConfig().getWriteQueueCapacity());
+			Server server = new Server(programArgs.getConfig());
 	        server.start(programArgs.getConfig().getHeartbeatInterval());
 
 	        
@@ -12,6 +12,10 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
 import net.jetblack.feedbus.distributor.config.DistributorConfig;
+import net.jetblack.feedbus.distributor.config.EventQueueType;
+import net.jetblack.feedbus.distributor.config.SlowConsumerPolicy;
+import net.jetblack.feedbus.distributor.config.TransportType;
+import net.jetblack.feedbus.util.concurrent.WaitStrategy;
 
 /**
  * Represents the command line arguments.
@@ -26,6 +30,18 @@ public class ProgramArgs {
 	private final static String EVENT_QUEUE_CAPACITY_LONG_OPT = "event-queue-capacity";
 	private final static String WRITE_QUEUE_CAPACITY_LONG_OPT = "write-queue-capacity";
 	private final static String HEARTBEAT_INTERVAL_LONG_OPT = "heartbeat-interval";
+	private final static String TRANSPORT_LONG_OPT = "transport";
+	private final static String SELECTOR_THREADS_LONG_OPT = "selector-threads";
+	private final static String VIRTUAL_THREADS_LONG_OPT = "virtual-threads";
+	private final static String WRITE_BATCH_BYTES_LONG_OPT = "write-batch-bytes";
+	private final static String WRITE_LINGER_TIME_LONG_OPT = "write-linger-time";
+	private final static String SLOW_CONSUMER_POLICY_LONG_OPT = "slow-consumer-policy";
+	private final static String SLOW_CONSUMER_THRESHOLD_LONG_OPT = "slow-consumer-threshold";
+	private final static String ROUTING_SHARDS_LONG_OPT = "routing-shards";
+	private final static String EVENT_QUEUE_TYPE_LONG_OPT = "event-queue-type";
+	private final static String WAIT_STRATEGY_LONG_OPT = "wait-strategy";
+	private final static String POOLED_DECODE_LONG_OPT = "pooled-decode";
+	private final static String MAX_MESSAGE_SIZE_LONG_OPT = "max-message-size";
 
 	private final DistributorConfig _config;
 	private final String[] _remaining;
@@ -88,6 +104,64 @@ public class ProgramArgs {
 						.longOpt(HEARTBEAT_INTERVAL_LONG_OPT)
 						.hasArg()
 						.desc("The interval in milliseconds of the heartbeat or 0 to disable.")
+						.build())
+				.addOption(Option.builder()
+						.longOpt(TRANSPORT_LONG_OPT)
+						.hasArg()
+						.desc("The interactor transport: Stream or Selector.")
+						.build())
+				.addOption(Option.builder()
+						.longOpt(SELECTOR_THREADS_LONG_OPT)
+						.hasArg()
+						.desc("The number of selector threads used by the Selector transport.")
+						.build())
+				.addOption(Option.builder()
+						.longOpt(VIRTUAL_THREADS_LONG_OPT)
+						.desc("Run the acceptor and stream interactors on virtual threads (Java 21 or later).")
+						.build())
+				.addOption(Option.builder()
+						.longOpt(WRITE_BATCH_BYTES_LONG_OPT)
+						.hasArg()
+						.desc("The maximum number of bytes written to a client in one batch.")
+						.build())
+				.addOption(Option.builder()
+						.longOpt(WRITE_LINGER_TIME_LONG_OPT)
+						.hasArg()
+						.desc("The time in milliseconds to wait for more messages before writing a batch, or 0 to disable.")
+						.build())
+				.addOption(Option.builder()
+						.longOpt(SLOW_CONSUMER_POLICY_LONG_OPT)
+						.hasArg()
+						.desc("The action when a client write queue is full: Block, DropNewest, DropOldest, ConflateByTopic or Disconnect.")
+						.build())
+				.addOption(Option.builder()
+						.longOpt(SLOW_CONSUMER_THRESHOLD_LONG_OPT)
+						.hasArg()
+						.desc("The number of consecutive messages discarded before a slow client is disconnected.")
+						.build())
+				.addOption(Option.builder()
+						.longOpt(ROUTING_SHARDS_LONG_OPT)
+						.hasArg()
+						.desc("The number of threads routing messages, each owning a partition of the feeds.")
+						.build())
+				.addOption(Option.builder()
+						.longOpt(EVENT_QUEUE_TYPE_LONG_OPT)
+						.hasArg()
+						.desc("The event queue implementation: Blocking or RingBuffer.")
+						.build())
+				.addOption(Option.builder()
+						.longOpt(WAIT_STRATEGY_LONG_OPT)
+						.hasArg()
+						.desc("How threads wait on a ring buffer event queue: Blocking, Yielding or BusySpin.")
+						.build())
+				.addOption(Option.builder()
+						.longOpt(POOLED_DECODE_LONG_OPT)
+						.desc("Decode multicast and unicast data into pooled buffers.")
+						.build())
+				.addOption(Option.builder()
+						.longOpt(MAX_MESSAGE_SIZE_LONG_OPT)
+						.hasArg()
+						.desc("The largest message in bytes read by the Selector transport.")
 						.build());
 		
 		CommandLineParser parser = new DefaultParser();
@@ -112,6 +186,12 @@ public class ProgramArgs {
 		    long heartbeatInterval = commandLine.hasOption(HEARTBEAT_INTERVAL_LONG_OPT)
 		    		? Long.parseLong(commandLine.getOptionValue(HEARTBEAT_INTERVAL_LONG_OPT))
 		    				: DistributorConfig.DEFAULT_HEARTBEAT_INTERVAL;
+		    TransportType transport = commandLine.hasOption(TRANSPORT_LONG_OPT)
+		    		? TransportType.valueOf(commandLine.getOptionValue(TRANSPORT_LONG_OPT))
+		    				: DistributorConfig.DEFAULT_TRANSPORT;
+		    int selectorThreads = commandLine.hasOption(SELECTOR_THREADS_LONG_OPT)
+		    		? Integer.parseInt(commandLine.getOptionValue(SELECTOR_THREADS_LONG_OPT))
+		    				: DistributorConfig.DEFAULT_SELECTOR_THREADS;
 
 			DistributorConfig config = new DistributorConfig(
 					InetAddress.getByName(host),
@@ -119,6 +199,34 @@ public class ProgramArgs {
 					eventQueueCapacity,
 					writeQueueCapacity,
 					heartbeatInterval);
+			config.setTransport(transport);
+			config.setSelectorThreads(selectorThreads);
+			config.setVirtualThreads(commandLine.hasOption(VIRTUAL_THREADS_LONG_OPT));
+			if (commandLine.hasOption(WRITE_BATCH_BYTES_LONG_OPT)) {
+				config.setWriteBatchBytes(Integer.parseInt(commandLine.getOptionValue(WRITE_BATCH_BYTES_LONG_OPT)));
+			}
+			if (commandLine.hasOption(WRITE_LINGER_TIME_LONG_OPT)) {
+				config.setWriteLingerTime(Long.parseLong(commandLine.getOptionValue(WRITE_LINGER_TIME_LONG_OPT)));
+			}
+			if (commandLine.hasOption(SLOW_CONSUMER_POLICY_LONG_OPT)) {
+				config.setSlowConsumerPolicy(SlowConsumerPolicy.valueOf(commandLine.getOptionValue(SLOW_CONSUMER_POLICY_LONG_OPT)));
+			}
+			if (commandLine.hasOption(SLOW_CONSUMER_THRESHOLD_LONG_OPT)) {
+				config.setSlowConsumerThreshold(Integer.parseInt(commandLine.getOptionValue(SLOW_CONSUMER_THRESHOLD_LONG_OPT)));
+			}
+			if (commandLine.hasOption(ROUTING_SHARDS_LONG_OPT)) {
+				config.setRoutingShards(Integer.parseInt(commandLine.getOptionValue(ROUTING_SHARDS_LONG_OPT)));
+			}
+			if (commandLine.hasOption(EVENT_QUEUE_TYPE_LONG_OPT)) {
+				config.setEventQueueType(EventQueueType.valueOf(commandLine.getOptionValue(EVENT_QUEUE_TYPE_LONG_OPT)));
+			}
+			if (commandLine.hasOption(WAIT_STRATEGY_LONG_OPT)) {
+				config.setWaitStrategy(WaitStrategy.valueOf(commandLine.getOptionValue(WAIT_STRATEGY_LONG_OPT)));
+			}
+			config.setPooledDecode(commandLine.hasOption(POOLED_DECODE_LONG_OPT));
+			if (commandLine.hasOption(MAX_MESSAGE_SIZE_LONG_OPT)) {
+				config.setMaxMessageSize(Integer.parseInt(commandLine.getOptionValue(MAX_MESSAGE_SIZE_LONG_OPT)));
+			}
 
 			return new ProgramArgs(config, commandLine.getArgs());
 			
@@ -1,11 +1,13 @@
 package net.jetblack.feedbus.distributor;
 
 import java.io.Closeable;
-import java.io.EOFException;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.management.InstanceAlreadyExistsException;
@@ -13,21 +15,26 @@ import javax.management.MBeanRegistrationException;
 import javax.management.MalformedObjectNameException;
 import javax.management.NotCompliantMBeanException;
 
+import net.jetblack.feedbus.distributor.config.DistributorConfig;
+import net.jetblack.feedbus.distributor.interactors.Interactor;
 import net.jetblack.feedbus.distributor.interactors.InteractorConnectedEventArgs;
 import net.jetblack.feedbus.distributor.interactors.InteractorErrorEventArgs;
 import net.jetblack.feedbus.distributor.interactors.InteractorEventArgs;
-import net.jetblack.feedbus.distributor.interactors.InteractorManager;
 import net.jetblack.feedbus.distributor.interactors.InteractorMessageEventArgs;
+import net.jetblack.feedbus.distributor.interactors.InteractorRepository;
 import net.jetblack.feedbus.distributor.interactors.InteractorShutdownEventArgs;
-import net.jetblack.feedbus.distributor.notifiers.NotificationManager;
-import net.jetblack.feedbus.distributor.subscriptions.SubscriptionManager;
-import net.jetblack.feedbus.messages.MonitorRequest;
+import net.jetblack.feedbus.distributor.interactors.WriteQueueStatistics;
+import net.jetblack.feedbus.distributor.publishers.TopicAliases;
+import net.jetblack.feedbus.messages.BufferPool;
+import net.jetblack.feedbus.messages.MessageType;
+import net.jetblack.feedbus.messages.MulticastBatch;
 import net.jetblack.feedbus.messages.MulticastData;
-import net.jetblack.feedbus.messages.NotificationRequest;
-import net.jetblack.feedbus.messages.SubscriptionRequest;
-import net.jetblack.feedbus.messages.UnicastData;
 import net.jetblack.feedbus.util.EventListener;
+import net.jetblack.feedbus.util.SymbolTable;
+import net.jetblack.feedbus.util.concurrent.AbstractEventQueue;
 import net.jetblack.feedbus.util.concurrent.EventQueue;
+import net.jetblack.feedbus.util.concurrent.RingBufferEventQueue;
+import net.jetblack.feedbus.util.concurrent.Threads;
 
 /**
  * The server class routes messages through the distributor.
@@ -36,12 +43,16 @@ public class Server implements Closeable {
 
 	private static final Logger logger = Logger.getLogger(Server.class.getName());
 
-    private final EventQueue<InteractorEventArgs> _eventQueue;
+    private final DistributorConfig _config;
+    private final AbstractEventQueue<InteractorEventArgs> _eventQueue;
     private final Acceptor _acceptor;
+    private final SymbolTable _symbols = new SymbolTable();
+    private final TopicAliases _aliases = new TopicAliases();
 
-    private final InteractorManager _interactorManager;
-    private final SubscriptionManager _subscriptionManager;
-    private final NotificationManager _notificationManager;
+    private final InteractorRepository _interactors;
+    private final Shard[] _shards;
+    private final List<List<InteractorEventArgs>> _shardEvents;
+    private final List<Interactor> _connectedInteractors = new ArrayList<Interactor>();
     
     private Timer _heartbeatTimer;
     private Thread _eventQueueThread;
@@ -64,24 +75,58 @@ public class Server implements Closeable {
     		int port, 
     		int eventQueueCapacity, 
     		int writeQueueCapacity) throws MalformedObjectNameException, InstanceAlreadyExistsException, MBeanRegistrationException, NotCompliantMBeanException {
-        _eventQueue = new EventQueue<InteractorEventArgs>(eventQueueCapacity, new InteractorShutdownEventArgs());
+    	this(new DistributorConfig(address, port, eventQueueCapacity, writeQueueCapacity, DistributorConfig.DEFAULT_HEARTBEAT_INTERVAL));
+    }
+
+    /**
+     * Construct a server from a configuration.
+     * 
+     * @param config The distributor configuration.
+     * @throws NotCompliantMBeanException 
+     * @throws MBeanRegistrationException 
+     * @throws InstanceAlreadyExistsException 
+     * @throws MalformedObjectNameException 
+     */
+    public Server(DistributorConfig config) throws MalformedObjectNameException, InstanceAlreadyExistsException, MBeanRegistrationException, NotCompliantMBeanException {
+    	_config = config;
+        _eventQueue = createEventQueue(config);
         
 
-    	_eventQueue.Listener.add(new EventListener<InteractorEventArgs>() {
+    	_eventQueue.BatchListener.add(new EventListener<List<InteractorEventArgs>>() {
 			@Override
-			public void onEvent(InteractorEventArgs event) {
-				onInteractorEvent(event);
+			public void onEvent(List<InteractorEventArgs> events) {
+				onInteractorEvents(events);
 			}
 		});
 
 
-        _acceptor = new Acceptor(address, port, _eventQueue, writeQueueCapacity);
+        // The buffers are shared by all the interactors, as they are released by the writers of the subscribers.
+        _acceptor = new Acceptor(config, _eventQueue, _symbols, config.isPooledDecode() ? new BufferPool() : null);
 
-        _interactorManager = new InteractorManager();
+        _interactors = new InteractorRepository();
 
-        _notificationManager = new NotificationManager(_interactorManager);
+        // A single shard runs on the event queue thread; otherwise each shard has its own thread.
+        _shards = new Shard[Math.max(1, config.getRoutingShards())];
+        _shardEvents = new ArrayList<List<InteractorEventArgs>>(_shards.length);
+        for (int i = 0; i < _shards.length; ++i) {
+        	_shards[i] = new Shard("Shard-" + i, _shards.length == 1 ? null : createEventQueue(config), _symbols, _aliases);
+        	_shardEvents.add(new ArrayList<InteractorEventArgs>());
+        }
+    }
 
-        _subscriptionManager = new SubscriptionManager(_interactorManager, _notificationManager);
+    /**
+     * Create an event queue of the configured type.
+     * 
+     * @param config The distributor configuration.
+     * @return A new event queue.
+     */
+    static AbstractEventQueue<InteractorEventArgs> createEventQueue(DistributorConfig config) {
+    	switch (config.getEventQueueType()) {
+    	case RingBuffer:
+    		return new RingBufferEventQueue<InteractorEventArgs>(config.getEventQueueCapacity(), new InteractorShutdownEventArgs(), config.getWaitStrategy());
+    	default:
+    		return new EventQueue<InteractorEventArgs>(config.getEventQueueCapacity(), new InteractorShutdownEventArgs());
+    	}
     }
 
     /**
@@ -96,6 +141,9 @@ public class Server implements Closeable {
     public void start(long heartbeatInterval) throws MalformedObjectNameException, InstanceAlreadyExistsException, MBeanRegistrationException, NotCompliantMBeanException {
         logger.info("Starting server");
 
+        for (Shard shard : _shards) {
+        	shard.start();
+        }
         _eventQueueThread = _eventQueue.start();
         _acceptThread = _acceptor.start();
 
@@ -112,72 +160,149 @@ public class Server implements Closeable {
 			}, heartbeatInterval, heartbeatInterval);
         }
 
+        if (_config.isVirtualThreads() && !Threads.isVirtualSupported()) {
+        	logger.warning("Virtual threads are not supported by this runtime; using platform threads");
+        }
+
         logger.info("Server started");
     }
 
-    private void onInteractorEvent(InteractorEventArgs args) {
-    	if (args instanceof InteractorShutdownEventArgs) {
+    /**
+     * Route a batch of events. The events for each shard are collected and passed
+     * to the shard in one call at the end of the batch.
+     * 
+     * @param events The events taken from the event queue.
+     */
+    private void onInteractorEvents(List<InteractorEventArgs> events) {
+    	try {
+    		for (int i = 0; i < events.size(); ++i) {
+    			InteractorEventArgs args = events.get(i);
+		    	if (args instanceof InteractorShutdownEventArgs) {
+		    		dispatchShardEvents();
+		    		onShutdown();
+		    	} else  if (args instanceof InteractorConnectedEventArgs) {
+		            onInteractorConnected((InteractorConnectedEventArgs)args);
+		        } else if (args instanceof InteractorMessageEventArgs) {
+		            onMessage((InteractorMessageEventArgs)args);
+		        } else if (args instanceof InteractorErrorEventArgs) {
+		            onInteractorError((InteractorErrorEventArgs)args);
+		        }
+    		}
+
+    		dispatchShardEvents();
+    	} catch (InterruptedException error) {
+    		logger.log(Level.WARNING, "Interrupted while routing events", error);
+    		Thread.currentThread().interrupt();
+    	}
+    }
+
+    private void dispatchShardEvents() throws InterruptedException {
+    	for (int i = 0; i < _shards.length; ++i) {
+    		List<InteractorEventArgs> shardEvents = _shardEvents.get(i);
+    		if (!shardEvents.isEmpty()) {
+    			_shards[i].dispatchAll(shardEvents);
+    			shardEvents.clear();
+    		}
+    	}
+
+    	// Every shard now knows of the new interactors, so they can start sending messages.
+    	for (Interactor interactor : _connectedInteractors) {
+    		interactor.start();
+    	}
+    	_connectedInteractors.clear();
+    }
+
+    private void onShutdown() {
+    	for (Shard shard : _shards) {
     		try {
-				_interactorManager.close();
+				shard.close();
 			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				// Nothing to do.
 			}
-    	} else  if (args instanceof InteractorConnectedEventArgs) {
-            onInteractorConnected((InteractorConnectedEventArgs)args);
-        } else if (args instanceof InteractorMessageEventArgs) {
-            onMessage((InteractorMessageEventArgs)args);
-        } else if (args instanceof InteractorErrorEventArgs) {
-            onInteractorError((InteractorErrorEventArgs)args);
-        }
+    	}
+
+    	try {
+			_interactors.close();
+		} catch (IOException error) {
+			logger.log(Level.WARNING, "Failed to close the interactors", error);
+		}
     }
 
     private void onInteractorConnected(InteractorConnectedEventArgs event) {
-        _interactorManager.addInteractor(event.getInteractor());
-        event.getInteractor().start();
+    	_interactors.add(event.getInteractor());
+    	broadcast(event);
+    	_connectedInteractors.add(event.getInteractor());
     }
 
     private void onInteractorError(InteractorErrorEventArgs event) {
-        if (event.getError() instanceof EOFException)
-            _interactorManager.closeInteractor(event.getInteractor());
-        else
-            _interactorManager.faultInteractor(event.getInteractor(), event.getError());
+    	_interactors.remove(event.getInteractor());
+    	WriteQueueStatistics statistics = event.getInteractor().getWriteQueueStatistics();
+    	if (!statistics.isEmpty()) {
+    		logger.info("Write queue statistics for " + event.getInteractor() + ": " + statistics);
+    	}
+    	broadcast(event);
     }
 
     private void onMessage(InteractorMessageEventArgs event) {
-        logger.fine(String.format("OnMessage(sender=%s, message=%s", event.getInteractor(), event.getMessage()));
-
-        switch (event.getMessage().getType()) {
-            case MonitorRequest:
-                _subscriptionManager.requestMonitor(event.getInteractor(), (MonitorRequest)event.getMessage());
-                break;
-
-            case SubscriptionRequest:
-                _subscriptionManager.requestSubscription(event.getInteractor(), (SubscriptionRequest)event.getMessage());
-                break;
-
-            case MulticastData:
-                _subscriptionManager.sendMulticastData(event.getInteractor(), (MulticastData)event.getMessage());
-                break;
-
-            case UnicastData:
-                _subscriptionManager.sendUnicastData(event.getInteractor(), (UnicastData)event.getMessage());
-                break;
+    	// All the state for a feed is held by a single shard, which preserves the order of messages for each topic.
+    	int feedId = event.getFeedId();
+    	if (feedId == SymbolTable.NONE && _shards.length > 1 && event.getMessage().getType() == MessageType.MulticastBatch) {
+    		routeBatch(event);
+    		return;
+    	}
+
+    	int shard = feedId == SymbolTable.NONE ? 0 : feedId % _shards.length;
+    	_shardEvents.get(shard).add(event);
+    }
 
-            case NotificationRequest:
-                _notificationManager.requestNotification(event.getInteractor(), (NotificationRequest)event.getMessage());
-                break;
+    /**
+     * Route a batch with entries on more than one feed, by splitting it
+     * into a batch for each shard holding one or more of the feeds.
+     * 
+     * @param event The batch event.
+     */
+    private void routeBatch(InteractorMessageEventArgs event) {
+    	MulticastBatch batch = (MulticastBatch)event.getMessage();
+    	int[] feedIds = event.getEntryFeedIds(), topicIds = event.getEntryTopicIds();
+
+    	// An entry on a feed without an identifier has no subscribers, so it is dropped.
+    	int[] counts = new int[_shards.length];
+    	for (int i = 0; i < feedIds.length; ++i) {
+    		if (feedIds[i] != SymbolTable.NONE) {
+    			++counts[feedIds[i] % _shards.length];
+    		}
+    	}
+
+    	for (int shard = 0; shard < _shards.length; ++shard) {
+    		if (counts[shard] == 0) {
+    			continue;
+    		}
+
+    		MulticastData[] entries = new MulticastData[counts[shard]];
+    		int[] shardFeedIds = new int[counts[shard]], shardTopicIds = new int[counts[shard]];
+    		for (int i = 0, j = 0; j < entries.length; ++i) {
+    			if (feedIds[i] != SymbolTable.NONE && feedIds[i] % _shards.length == shard) {
+    				entries[j] = batch.getEntry(i);
+    				shardFeedIds[j] = feedIds[i];
+    				shardTopicIds[j] = topicIds[i];
+    				++j;
+    			}
+    		}
+
+    		_shardEvents.get(shard).add(new InteractorMessageEventArgs(event.getInteractor(), new MulticastBatch(entries), shardFeedIds, shardTopicIds));
+    	}
+    }
 
-            default:
-                logger.warning("Received unknown message type " + event.getMessage().getType() + " from interactor " + event.getInteractor() + ".");
-                break;
-        }
+    private void broadcast(InteractorEventArgs event) {
+    	for (List<InteractorEventArgs> shardEvents : _shardEvents) {
+    		shardEvents.add(event);
+    	}
     }
 
     private void sendHeartbeat() {
         logger.fine("Sending heartbeat");
         try {
-    		_eventQueue.enqueue(new InteractorMessageEventArgs(null, new MulticastData("__admin__", "heartbeat", true, null)));
+    		_eventQueue.enqueue(new InteractorMessageEventArgs(null, new MulticastData("__admin__", "heartbeat", true, null), _symbols));
 		} catch (InterruptedException e) {
 			// TODO: Should this be caught?
 		}
@@ -0,0 +1,194 @@
+package net.jetblack.feedbus.distributor;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.Logger;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+
+import net.jetblack.feedbus.distributor.interactors.InteractorConnectedEventArgs;
+import net.jetblack.feedbus.distributor.interactors.InteractorErrorEventArgs;
+import net.jetblack.feedbus.distributor.interactors.InteractorEventArgs;
+import net.jetblack.feedbus.distributor.interactors.InteractorManager;
+import net.jetblack.feedbus.distributor.interactors.InteractorMessageEventArgs;
+import net.jetblack.feedbus.distributor.notifiers.NotificationManager;
+import net.jetblack.feedbus.distributor.publishers.TopicAliases;
+import net.jetblack.feedbus.distributor.subscriptions.SubscriptionManager;
+import net.jetblack.feedbus.messages.MonitorRequest;
+import net.jetblack.feedbus.messages.MulticastBatch;
+import net.jetblack.feedbus.messages.MulticastData;
+import net.jetblack.feedbus.messages.NotificationRequest;
+import net.jetblack.feedbus.messages.PooledMessage;
+import net.jetblack.feedbus.messages.SubscriptionRequest;
+import net.jetblack.feedbus.messages.UnicastData;
+import net.jetblack.feedbus.util.EventListener;
+import net.jetblack.feedbus.util.SymbolTable;
+import net.jetblack.feedbus.util.concurrent.AbstractEventQueue;
+
+/**
+ * A shard routes the messages for a partition of the feeds.
+ *
+ * Each shard holds the subscriptions, notifications and publishers for its
+ * feeds. A shard either processes events on the thread which dispatches them,
+ * or on its own event queue thread.
+ */
+class Shard implements Closeable {
+
+	private static final Logger logger = Logger.getLogger(Shard.class.getName());
+
+	private final String _name;
+	private final AbstractEventQueue<InteractorEventArgs> _eventQueue;
+	private final InteractorManager _interactorManager;
+	private final SubscriptionManager _subscriptionManager;
+	private final NotificationManager _notificationManager;
+
+	private Thread _eventQueueThread;
+
+	/**
+	 * Construct a shard.
+	 *
+	 * @param name The name of the shard.
+	 * @param eventQueue The shard's event queue, or null to process events on the dispatching thread.
+	 * @param symbols The symbol table holding the feed and topic names.
+	 * @param aliases The aliases used when sending data to clients.
+	 * @throws NotCompliantMBeanException
+	 * @throws MBeanRegistrationException
+	 * @throws InstanceAlreadyExistsException
+	 * @throws MalformedObjectNameException
+	 */
+	public Shard(String name, AbstractEventQueue<InteractorEventArgs> eventQueue, SymbolTable symbols, TopicAliases aliases) throws MalformedObjectNameException, InstanceAlreadyExistsException, MBeanRegistrationException, NotCompliantMBeanException {
+		_name = name;
+		_eventQueue = eventQueue;
+
+		if (_eventQueue != null) {
+			_eventQueue.BatchListener.add(new EventListener<List<InteractorEventArgs>>() {
+				@Override
+				public void onEvent(List<InteractorEventArgs> events) {
+					process(events);
+				}
+			});
+		}
+
+		_interactorManager = new InteractorManager();
+
+		_notificationManager = new NotificationManager(_interactorManager);
+
+		_subscriptionManager = new SubscriptionManager(_interactorManager, _notificationManager, symbols, aliases);
+	}
+
+	/**
+	 * Start the shard's event queue thread, if it has one.
+	 */
+	public void start() {
+		if (_eventQueue != null) {
+			_eventQueueThread = _eventQueue.start();
+		}
+	}
+
+	/**
+	 * Pass a batch of events to the shard.
+	 *
+	 * @param events The events, in the order they should be processed.
+	 * @throws InterruptedException
+	 */
+	public void dispatchAll(List<InteractorEventArgs> events) throws InterruptedException {
+		if (_eventQueue == null) {
+			process(events);
+		} else {
+			_eventQueue.enqueueAll(events);
+		}
+	}
+
+	private void process(List<InteractorEventArgs> events) {
+		for (int i = 0; i < events.size(); ++i) {
+			process(events.get(i));
+		}
+	}
+
+	private void process(InteractorEventArgs args) {
+		if (args instanceof InteractorConnectedEventArgs) {
+			_interactorManager.addInteractor(args.getInteractor());
+		} else if (args instanceof InteractorMessageEventArgs) {
+			onMessage((InteractorMessageEventArgs)args);
+		} else if (args instanceof InteractorErrorEventArgs) {
+			onInteractorError((InteractorErrorEventArgs)args);
+		}
+	}
+
+	private void onInteractorError(InteractorErrorEventArgs event) {
+		if (event.getError() instanceof EOFException)
+			_interactorManager.closeInteractor(event.getInteractor());
+		else
+			_interactorManager.faultInteractor(event.getInteractor(), event.getError());
+	}
+
+	private void onMessage(InteractorMessageEventArgs event) {
+		logger.fine(String.format("OnMessage(shard=%s, sender=%s, message=%s", _name, event.getInteractor(), event.getMessage()));
+
+		try {
+			route(event);
+		} finally {
+			// The subscribers hold their own references to a pooled message.
+			if (event.getMessage() instanceof PooledMessage) {
+				((PooledMessage)event.getMessage()).getEncoded().release();
+			}
+		}
+	}
+
+	private void route(InteractorMessageEventArgs event) {
+		switch (event.getMessage().getType()) {
+			case MonitorRequest:
+				_subscriptionManager.requestMonitor(event.getInteractor(), (MonitorRequest)event.getMessage(), event.getFeedId());
+				break;
+
+			case SubscriptionRequest:
+				_subscriptionManager.requestSubscription(event.getInteractor(), (SubscriptionRequest)event.getMessage(), event.getFeedId(), event.getTopicId());
+				break;
+
+			case MulticastData:
+			case MulticastFrame:
+				_subscriptionManager.sendMulticastData(event.getInteractor(), (MulticastData)event.getMessage(), event.getFeedId(), event.getTopicId());
+				break;
+
+			case MulticastBatch:
+				_subscriptionManager.sendMulticastBatch(event.getInteractor(), (MulticastBatch)event.getMessage(), event.getEntryFeedIds(), event.getEntryTopicIds());
+				break;
+
+			case UnicastData:
+				_subscriptionManager.sendUnicastData(event.getInteractor(), (UnicastData)event.getMessage(), event.getFeedId(), event.getTopicId());
+				break;
+
+			case NotificationRequest:
+				_notificationManager.requestNotification(event.getInteractor(), (NotificationRequest)event.getMessage(), event.getFeedId());
+				break;
+
+			default:
+				logger.warning("Received unknown message type " + event.getMessage().getType() + " from interactor " + event.getInteractor() + ".");
+				break;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (_eventQueue == null) {
+			return;
+		}
+
+		_eventQueue.close();
+		try {
+			_eventQueueThread.join();
+		} catch (InterruptedException e) {
+			// Nothing to do.
+		}
+	}
+
+	@Override
+	public String toString() {
+		return _name;
+	}
+}
@@ -4,6 +4,7 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 
 import net.jetblack.feedbus.distributor.Distributor;
+import net.jetblack.feedbus.util.concurrent.WaitStrategy;
 
 /**
  * Configuration for the distributor.
@@ -15,12 +16,36 @@ public class DistributorConfig {
 	public static final int DEFAULT_EVENT_QUEUE_CAPACITY = 8096;
 	public static final int DEFAULT_WRITE_QUEUE_CAPACITY = 8096;
 	public static final long DEFAULT_HEARTBEAT_INTERVAL = 1000;
+	public static final TransportType DEFAULT_TRANSPORT = TransportType.Stream;
+	public static final int DEFAULT_SELECTOR_THREADS = 4;
+	public static final boolean DEFAULT_VIRTUAL_THREADS = false;
+	public static final int DEFAULT_WRITE_BATCH_BYTES = 64 * 1024;
+	public static final long DEFAULT_WRITE_LINGER_TIME = 0;
+	public static final SlowConsumerPolicy DEFAULT_SLOW_CONSUMER_POLICY = SlowConsumerPolicy.Block;
+	public static final int DEFAULT_SLOW_CONSUMER_THRESHOLD = 1000;
+	public static final int DEFAULT_ROUTING_SHARDS = 1;
+	public static final EventQueueType DEFAULT_EVENT_QUEUE_TYPE = EventQueueType.Blocking;
+	public static final WaitStrategy DEFAULT_WAIT_STRATEGY = WaitStrategy.Blocking;
+	public static final boolean DEFAULT_POOLED_DECODE = false;
+	public static final int DEFAULT_MAX_MESSAGE_SIZE = 16 * 1024 * 1024;
 
     private InetAddress _address;
     private int _port;
     private int _eventQueueCapacity;
     private int _writeQueueCapacity;
     private long _heartbeatInterval;
+    private TransportType _transport = DEFAULT_TRANSPORT;
+    private int _selectorThreads = DEFAULT_SELECTOR_THREADS;
+    private boolean _isVirtualThreads = DEFAULT_VIRTUAL_THREADS;
+    private int _writeBatchBytes = DEFAULT_WRITE_BATCH_BYTES;
+    private long _writeLingerTime = DEFAULT_WRITE_LINGER_TIME;
+    private SlowConsumerPolicy _slowConsumerPolicy = DEFAULT_SLOW_CONSUMER_POLICY;
+    private int _slowConsumerThreshold = DEFAULT_SLOW_CONSUMER_THRESHOLD;
+    private int _routingShards = DEFAULT_ROUTING_SHARDS;
+    private EventQueueType _eventQueueType = DEFAULT_EVENT_QUEUE_TYPE;
+    private WaitStrategy _waitStrategy = DEFAULT_WAIT_STRATEGY;
+    private boolean _isPooledDecode = DEFAULT_POOLED_DECODE;
+    private int _maxMessageSize = DEFAULT_MAX_MESSAGE_SIZE;
 
     /**
      * Construct a distributor with default values.
@@ -142,6 +167,228 @@ public class DistributorConfig {
     	_heartbeatInterval = value;
     }
 
+    /**
+     * Gets the transport used by the interactors.
+     * 
+     * @return The interactor transport.
+     */
+    public TransportType getTransport() {
+    	return _transport;
+    }
+    
+    /**
+     * Sets the transport used by the interactors.
+     * 
+     * @param value The interactor transport.
+     */
+    public void setTransport(TransportType value) {
+    	_transport = value;
+    }
+    
+    /**
+     * Gets the number of selector threads used by the selector transport.
+     * 
+     * @return The number of selector threads.
+     */
+    public int getSelectorThreads() {
+    	return _selectorThreads;
+    }
+    
+    /**
+     * Sets the number of selector threads used by the selector transport.
+     * 
+     * @param value The number of selector threads.
+     */
+    public void setSelectorThreads(int value) {
+    	_selectorThreads = value;
+    }
+    
+    /**
+     * Gets whether the acceptor and the stream interactors run on virtual threads.
+     * 
+     * Virtual threads require Java 21; on earlier runtimes platform threads are used.
+     * 
+     * @return true if virtual threads should be used.
+     */
+    public boolean isVirtualThreads() {
+    	return _isVirtualThreads;
+    }
+    
+    /**
+     * Sets whether the acceptor and the stream interactors run on virtual threads.
+     * 
+     * @param value If true use virtual threads.
+     */
+    public void setVirtualThreads(boolean value) {
+    	_isVirtualThreads = value;
+    }
+
+    /**
+     * Gets the maximum number of bytes an interactor writes to the socket in one batch.
+     * 
+     * @return The maximum batch size in bytes.
+     */
+    public int getWriteBatchBytes() {
+    	return _writeBatchBytes;
+    }
+    
+    /**
+     * Sets the maximum number of bytes an interactor writes to the socket in one batch.
+     * 
+     * @param value The maximum batch size in bytes.
+     */
+    public void setWriteBatchBytes(int value) {
+    	_writeBatchBytes = value;
+    }
+
+    /**
+     * Gets the time in milliseconds a stream interactor waits for more messages before writing a batch which is not full.
+     * 
+     * @return The linger time in milliseconds.
+     */
+    public long getWriteLingerTime() {
+    	return _writeLingerTime;
+    }
+    
+    /**
+     * Sets the time in milliseconds a stream interactor waits for more messages before writing a batch which is not full, or 0 to write as soon as the queue is empty.
+     * 
+     * @param value The linger time in milliseconds.
+     */
+    public void setWriteLingerTime(long value) {
+    	_writeLingerTime = value;
+    }
+
+    /**
+     * Gets the action taken when multicast data is sent to a client whose write queue is full.
+     * 
+     * @return The slow consumer policy.
+     */
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+    	return _slowConsumerPolicy;
+    }
+    
+    /**
+     * Sets the action taken when multicast data is sent to a client whose write queue is full.
+     * 
+     * @param value The slow consumer policy.
+     */
+    public void setSlowConsumerPolicy(SlowConsumerPolicy value) {
+    	_slowConsumerPolicy = value;
+    }
+
+    /**
+     * Gets the number of consecutive messages which may be discarded before a slow client is disconnected.
+     * 
+     * This is only used by the Disconnect policy.
+     * 
+     * @return The number of discarded messages tolerated.
+     */
+    public int getSlowConsumerThreshold() {
+    	return _slowConsumerThreshold;
+    }
+    
+    /**
+     * Sets the number of consecutive messages which may be discarded before a slow client is disconnected.
+     * 
+     * @param value The number of discarded messages tolerated.
+     */
+    public void setSlowConsumerThreshold(int value) {
+    	_slowConsumerThreshold = value;
+    }
+
+    /**
+     * Gets the number of shards which route messages, each owning a partition of the feeds.
+     * 
+     * With a single shard messages are routed on the event queue thread.
+     * 
+     * @return The number of routing shards.
+     */
+    public int getRoutingShards() {
+    	return _routingShards;
+    }
+    
+    /**
+     * Sets the number of shards which route messages, each owning a partition of the feeds.
+     * 
+     * @param value The number of routing shards.
+     */
+    public void setRoutingShards(int value) {
+    	_routingShards = value;
+    }
+
+    /**
+     * Gets the implementation of the event queues.
+     * 
+     * @return The event queue type.
+     */
+    public EventQueueType getEventQueueType() {
+    	return _eventQueueType;
+    }
+    
+    /**
+     * Sets the implementation of the event queues.
+     * 
+     * @param value The event queue type.
+     */
+    public void setEventQueueType(EventQueueType value) {
+    	_eventQueueType = value;
+    }
+
+    /**
+     * Gets how threads wait on a ring buffer event queue.
+     * 
+     * @return The wait strategy.
+     */
+    public WaitStrategy getWaitStrategy() {
+    	return _waitStrategy;
+    }
+    
+    /**
+     * Sets how threads wait on a ring buffer event queue.
+     * 
+     * @param value The wait strategy.
+     */
+    public void setWaitStrategy(WaitStrategy value) {
+    	_waitStrategy = value;
+    }
+
+    /**
+     * Gets whether multicast and unicast data are decoded into pooled buffers.
+     * 
+     * @return true if data messages are decoded into pooled buffers.
+     */
+    public boolean isPooledDecode() {
+    	return _isPooledDecode;
+    }
+    
+    /**
+     * Sets whether multicast and unicast data are decoded into pooled buffers.
+     * 
+     * @param value If true the buffer holding the received message is sent to the subscribers and reused once they have all written it.
+     */
+    public void setPooledDecode(boolean value) {
+    	_isPooledDecode = value;
+    }
+
+    /**
+     * Gets the largest message in bytes a selector interactor reads from a client.
+     * 
+     * @return The maximum message size in bytes.
+     */
+    public int getMaxMessageSize() {
+    	return _maxMessageSize;
+    }
+    
+    /**
+     * Sets the largest message in bytes a selector interactor reads from a client.
+     * 
+     * @param value The maximum message size in bytes. A client which sends a larger message is disconnected.
+     */
+    public void setMaxMessageSize(int value) {
+    	_maxMessageSize = value;
+    }
+
     /**
      * Create configuration from properties.
      * 
@@ -152,6 +399,18 @@ public class DistributorConfig {
 	 * net.jetblack.feedbus.distributor.EVENT_QUEUE_CAPACITY=8096
 	 * net.jetblack.feedbus.distributor.WRITE_QUEUE_CAPACITY=8096
 	 * net.jetblack.feedbus.distributor.HEARTBEAT_INTERVAL=1000
+	 * net.jetblack.feedbus.distributor.TRANSPORT=Stream
+	 * net.jetblack.feedbus.distributor.SELECTOR_THREADS=4
+	 * net.jetblack.feedbus.distributor.VIRTUAL_THREADS=false
+	 * net.jetblack.feedbus.distributor.WRITE_BATCH_BYTES=65536
+	 * net.jetblack.feedbus.distributor.WRITE_LINGER_TIME=0
+	 * net.jetblack.feedbus.distributor.SLOW_CONSUMER_POLICY=Block
+	 * net.jetblack.feedbus.distributor.SLOW_CONSUMER_THRESHOLD=1000
+	 * net.jetblack.feedbus.distributor.ROUTING_SHARDS=1
+	 * net.jetblack.feedbus.distributor.EVENT_QUEUE_TYPE=Blocking
+	 * net.jetblack.feedbus.distributor.WAIT_STRATEGY=Blocking
+	 * net.jetblack.feedbus.distributor.POOLED_DECODE=false
+	 * net.jetblack.feedbus.distributor.MAX_MESSAGE_SIZE=16777216
 	 * 
      * @return The distributor configuration.
      * @throws UnknownHostException
@@ -173,6 +432,55 @@ public class DistributorConfig {
 		String heartbeatIntervalText = System.getProperty(packageName + ".HEARTBEAT_INTERVAL");
 		long heartbeatInterval = heartbeatIntervalText== null ? DEFAULT_HEARTBEAT_INTERVAL : Long.parseLong(heartbeatIntervalText);
 		
-		return new DistributorConfig(address, port, eventQueueLength, writeQueueLength, heartbeatInterval);
+		String transportText = System.getProperty(packageName + ".TRANSPORT");
+		TransportType transport = transportText == null ? DEFAULT_TRANSPORT : TransportType.valueOf(transportText);
+
+		String selectorThreadsText = System.getProperty(packageName + ".SELECTOR_THREADS");
+		int selectorThreads = selectorThreadsText == null ? DEFAULT_SELECTOR_THREADS : Integer.parseInt(selectorThreadsText);
+
+		String virtualThreadsText = System.getProperty(packageName + ".VIRTUAL_THREADS");
+		boolean isVirtualThreads = virtualThreadsText == null ? DEFAULT_VIRTUAL_THREADS : Boolean.parseBoolean(virtualThreadsText);
+
+		String writeBatchBytesText = System.getProperty(packageName + ".WRITE_BATCH_BYTES");
+		int writeBatchBytes = writeBatchBytesText == null ? DEFAULT_WRITE_BATCH_BYTES : Integer.parseInt(writeBatchBytesText);
+
+		String writeLingerTimeText = System.getProperty(packageName + ".WRITE_LINGER_TIME");
+		long writeLingerTime = writeLingerTimeText == null ? DEFAULT_WRITE_LINGER_TIME : Long.parseLong(writeLingerTimeText);
+
+		String slowConsumerPolicyText = System.getProperty(packageName + ".SLOW_CONSUMER_POLICY");
+		SlowConsumerPolicy slowConsumerPolicy = slowConsumerPolicyText == null ? DEFAULT_SLOW_CONSUMER_POLICY : SlowConsumerPolicy.valueOf(slowConsumerPolicyText);
+
+		String slowConsumerThresholdText = System.getProperty(packageName + ".SLOW_CONSUMER_THRESHOLD");
+		int slowConsumerThreshold = slowConsumerThresholdText == null ? DEFAULT_SLOW_CONSUMER_THRESHOLD : Integer.parseInt(slowConsumerThresholdText);
+
+		String routingShardsText = System.getProperty(packageName + ".ROUTING_SHARDS");
+		int routingShards = routingShardsText == null ? DEFAULT_ROUTING_SHARDS : Integer.parseInt(routingShardsText);
+
+		String eventQueueTypeText = System.getProperty(packageName + ".EVENT_QUEUE_TYPE");
+		EventQueueType eventQueueType = eventQueueTypeText == null ? DEFAULT_EVENT_QUEUE_TYPE : EventQueueType.valueOf(eventQueueTypeText);
+
+		String waitStrategyText = System.getProperty(packageName + ".WAIT_STRATEGY");
+		WaitStrategy waitStrategy = waitStrategyText == null ? DEFAULT_WAIT_STRATEGY : WaitStrategy.valueOf(waitStrategyText);
+
+		String isPooledDecodeText = System.getProperty(packageName + ".POOLED_DECODE");
+		boolean isPooledDecode = isPooledDecodeText == null ? DEFAULT_POOLED_DECODE : Boolean.parseBoolean(isPooledDecodeText);
+
+		String maxMessageSizeText = System.getProperty(packageName + ".MAX_MESSAGE_SIZE");
+		int maxMessageSize = maxMessageSizeText == null ? DEFAULT_MAX_MESSAGE_SIZE : Integer.parseInt(maxMessageSizeText);
+
+		DistributorConfig config = new DistributorConfig(address, port, eventQueueLength, writeQueueLength, heartbeatInterval);
+		config.setTransport(transport);
+		config.setSelectorThreads(selectorThreads);
+		config.setVirtualThreads(isVirtualThreads);
+		config.setWriteBatchBytes(writeBatchBytes);
+		config.setWriteLingerTime(writeLingerTime);
+		config.setSlowConsumerPolicy(slowConsumerPolicy);
+		config.setSlowConsumerThreshold(slowConsumerThreshold);
+		config.setRoutingShards(routingShards);
+		config.setEventQueueType(eventQueueType);
+		config.setWaitStrategy(waitStrategy);
+		config.setPooledDecode(isPooledDecode);
+		config.setMaxMessageSize(maxMessageSize);
+		return config;
     }
 }
@@ -0,0 +1,15 @@
+package net.jetblack.feedbus.distributor.config;
+
+/**
+ * The implementation of the event queues which pass events to the router.
+ */
+public enum EventQueueType {
+	/**
+	 * An array blocking queue with a single lock.
+	 */
+	Blocking,
+	/**
+	 * A lock free ring buffer for many producers and a single consumer.
+	 */
+	RingBuffer
+}
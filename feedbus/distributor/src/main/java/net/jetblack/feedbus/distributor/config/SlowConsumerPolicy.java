@@ -0,0 +1,28 @@
+package net.jetblack.feedbus.distributor.config;
+
+/**
+ * The action taken when multicast data is sent to a client whose write queue is full.
+ */
+public enum SlowConsumerPolicy {
+	/**
+	 * Wait until there is space on the queue.
+	 */
+	Block,
+	/**
+	 * Discard the message being sent.
+	 */
+	DropNewest,
+	/**
+	 * Discard the oldest multicast data on the queue to make space, otherwise discard the message being sent.
+	 */
+	DropOldest,
+	/**
+	 * Queue multicast data in a ConflatingQueue, which keeps the latest image and delta for each feed and topic,
+	 * and discard the message being sent when there is no space for a new topic.
+	 */
+	ConflateByTopic,
+	/**
+	 * Discard the message being sent, and disconnect the client when the threshold is exceeded.
+	 */
+	Disconnect
+}
@@ -0,0 +1,15 @@
+package net.jetblack.feedbus.distributor.config;
+
+/**
+ * The transport used by the interactors.
+ */
+public enum TransportType {
+	/**
+	 * Blocking streams with a read and a write thread per connection.
+	 */
+	Stream,
+	/**
+	 * Non-blocking channels shared over a fixed pool of selector threads.
+	 */
+	Selector
+}
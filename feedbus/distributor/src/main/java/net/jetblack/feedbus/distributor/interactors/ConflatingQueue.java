@@ -0,0 +1,435 @@
+package net.jetblack.feedbus.distributor.interactors;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.jetblack.feedbus.messages.EncodedMessage;
+import net.jetblack.feedbus.messages.FeedTopic;
+import net.jetblack.feedbus.messages.Message;
+import net.jetblack.feedbus.messages.MulticastData;
+
+/**
+ * A bounded write queue which conflates multicast data by feed and topic.
+ *
+ * Each feed and topic holds at most one pending image followed by at most one
+ * pending delta. A new image replaces everything pending for the topic, and a
+ * new delta replaces a pending delta, so a subscriber which has fallen behind
+ * receives the latest value for each topic rather than a backlog of stale
+ * ticks. Other messages are queued in order as normal.
+ *
+ * The capacity limits the number of topics and other messages which may be
+ * pending, rather than the number of messages. A reserve may be kept beyond
+ * the capacity which only other messages may use, so the protocol messages
+ * are still queued when the topics have filled the queue.
+ */
+public class ConflatingQueue extends AbstractQueue<Message> implements BlockingQueue<Message> {
+
+	private static class TopicSlot {
+		final FeedTopic feedTopic;
+		Message image;
+		Message delta;
+
+		TopicSlot(FeedTopic feedTopic) {
+			this.feedTopic = feedTopic;
+		}
+
+		int size() {
+			return (image == null ? 0 : 1) + (delta == null ? 0 : 1);
+		}
+	}
+
+	private final int _capacity;
+	private final int _reserve;
+	private final WriteQueueStatistics _statistics;
+	private final ArrayDeque<Object> _slots;
+	private final Map<FeedTopic, TopicSlot> _topicSlots = new HashMap<FeedTopic, TopicSlot>();
+	private final ReentrantLock _lock = new ReentrantLock();
+	private final Condition _notEmpty = _lock.newCondition();
+	private final Condition _notFull = _lock.newCondition();
+
+	private int _size;
+
+	/**
+	 * Construct the queue.
+	 *
+	 * @param capacity The maximum number of topics and other messages which may be pending.
+	 * @param statistics The statistics in which to count conflated messages.
+	 */
+	public ConflatingQueue(int capacity, WriteQueueStatistics statistics) {
+		this(capacity, 0, statistics);
+	}
+
+	/**
+	 * Construct the queue with space reserved for messages other than multicast data.
+	 *
+	 * @param capacity The maximum number of topics and other messages which may be pending.
+	 * @param reserve The number of further messages other than multicast data which may be pending.
+	 * @param statistics The statistics in which to count conflated messages.
+	 */
+	public ConflatingQueue(int capacity, int reserve, WriteQueueStatistics statistics) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity");
+		}
+		if (reserve < 0) {
+			throw new IllegalArgumentException("reserve");
+		}
+
+		_capacity = capacity;
+		_reserve = reserve;
+		_statistics = statistics;
+		_slots = new ArrayDeque<Object>(Math.min(capacity, 1024));
+	}
+
+	@Override
+	public boolean offer(Message message) {
+		if (message == null) {
+			throw new NullPointerException();
+		}
+
+		_lock.lock();
+		try {
+			return enqueue(message);
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public void put(Message message) throws InterruptedException {
+		if (message == null) {
+			throw new NullPointerException();
+		}
+
+		_lock.lockInterruptibly();
+		try {
+			while (!enqueue(message)) {
+				_notFull.await();
+			}
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean offer(Message message, long timeout, TimeUnit unit) throws InterruptedException {
+		if (message == null) {
+			throw new NullPointerException();
+		}
+
+		long nanos = unit.toNanos(timeout);
+		_lock.lockInterruptibly();
+		try {
+			while (!enqueue(message)) {
+				if (nanos <= 0) {
+					return false;
+				}
+				nanos = _notFull.awaitNanos(nanos);
+			}
+			return true;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public Message poll() {
+		_lock.lock();
+		try {
+			return dequeue();
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public Message take() throws InterruptedException {
+		_lock.lockInterruptibly();
+		try {
+			while (_size == 0) {
+				_notEmpty.await();
+			}
+			return dequeue();
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		_lock.lockInterruptibly();
+		try {
+			while (_size == 0) {
+				if (nanos <= 0) {
+					return null;
+				}
+				nanos = _notEmpty.awaitNanos(nanos);
+			}
+			return dequeue();
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public Message peek() {
+		_lock.lock();
+		try {
+			Object head = _slots.peekFirst();
+			if (head instanceof TopicSlot) {
+				TopicSlot slot = (TopicSlot)head;
+				return slot.image != null ? slot.image : slot.delta;
+			}
+			return (Message)head;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		_lock.lock();
+		try {
+			return _size;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public int remainingCapacity() {
+		_lock.lock();
+		try {
+			return _capacity + _reserve - _slots.size();
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super Message> collection) {
+		return drainTo(collection, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super Message> collection, int maxElements) {
+		if (collection == this) {
+			throw new IllegalArgumentException();
+		}
+
+		_lock.lock();
+		try {
+			int count = 0;
+			Message message;
+			while (count < maxElements && (message = dequeue()) != null) {
+				collection.add(message);
+				++count;
+			}
+			return count;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (o == null) {
+			return false;
+		}
+
+		_lock.lock();
+		try {
+			Iterator<Object> iterator = _slots.iterator();
+			while (iterator.hasNext()) {
+				Object entry = iterator.next();
+				if (entry instanceof TopicSlot) {
+					TopicSlot slot = (TopicSlot)entry;
+					if (o.equals(slot.image)) {
+						slot.image = null;
+					} else if (o.equals(slot.delta)) {
+						slot.delta = null;
+					} else {
+						continue;
+					}
+					if (slot.size() == 0) {
+						iterator.remove();
+						_topicSlots.remove(slot.feedTopic);
+						_notFull.signal();
+					}
+				} else if (o.equals(entry)) {
+					iterator.remove();
+					_notFull.signal();
+				} else {
+					continue;
+				}
+				--_size;
+				return true;
+			}
+			return false;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public void clear() {
+		_lock.lock();
+		try {
+			_slots.clear();
+			_topicSlots.clear();
+			_size = 0;
+			_notFull.signalAll();
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns an iterator over a snapshot of the pending messages.
+	 *
+	 * @return The iterator.
+	 */
+	@Override
+	public Iterator<Message> iterator() {
+		List<Message> messages = new ArrayList<Message>();
+
+		_lock.lock();
+		try {
+			for (Object entry : _slots) {
+				if (entry instanceof TopicSlot) {
+					TopicSlot slot = (TopicSlot)entry;
+					if (slot.image != null) {
+						messages.add(slot.image);
+					}
+					if (slot.delta != null) {
+						messages.add(slot.delta);
+					}
+				} else {
+					messages.add((Message)entry);
+				}
+			}
+		} finally {
+			_lock.unlock();
+		}
+
+		final Iterator<Message> iterator = messages.iterator();
+		return new Iterator<Message>() {
+			private Message _last;
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public Message next() {
+				_last = iterator.next();
+				return _last;
+			}
+
+			@Override
+			public void remove() {
+				if (_last == null) {
+					throw new IllegalStateException();
+				}
+				ConflatingQueue.this.remove(_last);
+				_last = null;
+			}
+		};
+	}
+
+	private boolean enqueue(Message message) {
+		Message unwrapped = EncodedMessage.unwrap(message);
+		if (!(unwrapped instanceof MulticastData)) {
+			if (_slots.size() >= _capacity + _reserve) {
+				return false;
+			}
+			_slots.addLast(message);
+			++_size;
+			_notEmpty.signal();
+			return true;
+		}
+
+		MulticastData multicastData = (MulticastData)unwrapped;
+		FeedTopic feedTopic = new FeedTopic(multicastData.getFeed(), multicastData.getTopic());
+
+		TopicSlot slot = _topicSlots.get(feedTopic);
+		if (slot == null) {
+			if (_slots.size() >= _capacity) {
+				return false;
+			}
+			slot = new TopicSlot(feedTopic);
+			_topicSlots.put(feedTopic, slot);
+			_slots.addLast(slot);
+		} else {
+			_size -= slot.size();
+		}
+
+		if (multicastData.isImage()) {
+			// An image supersedes everything pending for the topic.
+			replace(slot.image);
+			replace(slot.delta);
+			slot.image = message;
+			slot.delta = null;
+		} else {
+			// A delta supersedes a pending delta, but must follow a pending image.
+			replace(slot.delta);
+			slot.delta = message;
+		}
+
+		_size += slot.size();
+		_notEmpty.signal();
+		return true;
+	}
+
+	private void replace(Message message) {
+		if (message != null) {
+			_statistics.incrementConflated();
+			EncodedMessage.release(message);
+		}
+	}
+
+	private Message dequeue() {
+		Object head = _slots.peekFirst();
+		if (head == null) {
+			return null;
+		}
+
+		Message message;
+		if (head instanceof TopicSlot) {
+			TopicSlot slot = (TopicSlot)head;
+			if (slot.image != null) {
+				message = slot.image;
+				slot.image = null;
+			} else {
+				message = slot.delta;
+				slot.delta = null;
+			}
+
+			if (slot.size() > 0) {
+				// The delta which follows the image stays at the head of the queue.
+				--_size;
+				return message;
+			}
+
+			_topicSlots.remove(slot.feedTopic);
+		} else {
+			message = (Message)head;
+		}
+
+		_slots.removeFirst();
+		--_size;
+		_notFull.signal();
+		return message;
+	}
+}
@@ -5,165 +5,523 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.InetAddress;
-import java.net.Socket;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
+import net.jetblack.feedbus.distributor.config.DistributorConfig;
+import net.jetblack.feedbus.distributor.config.SlowConsumerPolicy;
+import net.jetblack.feedbus.messages.AliasRegistration;
+import net.jetblack.feedbus.messages.AliasedData;
+import net.jetblack.feedbus.messages.BufferPool;
+import net.jetblack.feedbus.messages.EncodedMessage;
+import net.jetblack.feedbus.messages.Handshake;
 import net.jetblack.feedbus.messages.Message;
-import net.jetblack.feedbus.util.concurrent.EventQueue;
+import net.jetblack.feedbus.messages.MessageDecoder;
+import net.jetblack.feedbus.messages.MulticastBatch;
+import net.jetblack.feedbus.messages.MulticastData;
+import net.jetblack.feedbus.messages.StringCache;
+import net.jetblack.feedbus.util.EventListener;
+import net.jetblack.feedbus.util.IntObjectMap;
+import net.jetblack.feedbus.util.SymbolTable;
+import net.jetblack.feedbus.util.concurrent.AbstractEventQueue;
 
 /**
  * An interactor represents a connection between a client and the server.
+ *
+ * The transport used to move messages between the client and the server is
+ * provided by the derived class.
  */
-public class Interactor implements Comparable<Interactor>, Closeable {
+public abstract class Interactor implements Comparable<Interactor>, Closeable {
 
 	private static final Logger logger = Logger.getLogger(Interactor.class.getName());
 
+	/**
+	 * The handshake features the distributor accepts.
+	 */
+	public static final int SUPPORTED_FEATURES = Handshake.FEATURE_MULTICAST_FRAMES | Handshake.FEATURE_FRAMING | Handshake.FEATURE_ALIASES | Handshake.FEATURE_BATCH;
+
+	/**
+	 * The smallest number of places on the write queue kept for messages other
+	 * than multicast data when the slow consumer policy does not block.
+	 */
+	public static final int MIN_PROTOCOL_RESERVE = 16;
+
+	private static class ReceivedAlias {
+		final String feed;
+		final String topic;
+		// The identifiers, or SymbolTable.NONE until the feed or topic has been added.
+		int feedId = SymbolTable.NONE;
+		int topicId = SymbolTable.NONE;
+
+		ReceivedAlias(String feed, String topic) {
+			this.feed = feed;
+			this.topic = topic;
+		}
+	}
+
 	private final BlockingQueue<Message> _writeQueue;
-	
-	private final DataInputStream _inputStream;
-	private final DataOutputStream _outputStream;
-	private final EventQueue<InteractorEventArgs> _eventQueue;
-	
-	private Thread _readThread, _writeThread;
-	
+	private final AbstractEventQueue<InteractorEventArgs> _eventQueue;
+	private final SymbolTable _symbols;
+
 	private final String _id;
 	private final InetAddress _address;
+	private final SlowConsumerPolicy _slowConsumerPolicy;
+	private final int _slowConsumerThreshold;
+	private final int _maxMessageSize;
+	// The number of queued messages at which multicast data is handled by the slow consumer policy.
+	private final int _dataCapacity;
+	private final WriteQueueStatistics _statistics = new WriteQueueStatistics();
+
+	private final AtomicInteger _consecutiveDrops = new AtomicInteger();
+	private final AtomicBoolean _isDisconnecting = new AtomicBoolean();
+	private final AtomicBoolean _hasOverflowed = new AtomicBoolean();
+	private volatile int _features;
+	// Only used by the thread reading from the client.
+	private boolean _isReadingFrames;
+	private final MessageDecoder _decoder;
+	private final IntObjectMap<ReceivedAlias> _receivedAliases = new IntObjectMap<ReceivedAlias>();
+	// Only used by the thread writing to the client.
+	private boolean _isWritingFrames;
+	// Alias->The registration last sent, which is replaced when the alias is given to another topic.
+	private final IntObjectMap<AliasRegistration> _sentAliases = new IntObjectMap<AliasRegistration>();
 
 	/**
 	 * Construct the interactor.
-	 * 
-	 * @param socket The socket for cummincation.
+	 *
+	 * @param address The remote address of the client.
 	 * @param eventQueue The event queue used to communicate with the server.
-	 * @param writeQueueCapacity The capacity of the interactor write queue.
-	 * @return A new interactor.
-	 * @throws IOException
+	 * @param symbols The symbol table in which feeds and topics are interned.
+	 * @param bufferPool The pool into which data messages are decoded, or null to decode into new buffers.
+	 * @param config The distributor configuration.
 	 */
-	public static Interactor create(Socket socket, EventQueue<InteractorEventArgs> eventQueue, int writeQueueCapacity) throws IOException {
-		return new Interactor(
-				new DataInputStream(socket.getInputStream()),
-				new DataOutputStream(socket.getOutputStream()),
-				socket.getInetAddress(),
-				eventQueue, 
-				writeQueueCapacity);
-	}
-	
-	private Interactor(DataInputStream inputStream, DataOutputStream outputStream, InetAddress address, EventQueue<InteractorEventArgs> eventQueue, int writeQueueCapacity) {
-		_inputStream = inputStream;
-		_outputStream = outputStream;
+	protected Interactor(InetAddress address, AbstractEventQueue<InteractorEventArgs> eventQueue, SymbolTable symbols, BufferPool bufferPool, DistributorConfig config) {
 		_address = address;
 		_eventQueue = eventQueue;
+		_symbols = symbols;
+		_decoder = bufferPool == null ? null : new MessageDecoder(bufferPool, new StringCache());
 		_id = UUID.randomUUID().toString();
-		_writeQueue = new ArrayBlockingQueue<Message>(writeQueueCapacity);
+		_slowConsumerPolicy = config.getSlowConsumerPolicy();
+		int capacity = config.getWriteQueueCapacity();
+		if (_slowConsumerPolicy == SlowConsumerPolicy.Block) {
+			_writeQueue = new ArrayBlockingQueue<Message>(capacity);
+			_dataCapacity = Integer.MAX_VALUE;
+		} else {
+			// Multicast data may not fill the reserve, so the protocol messages never wait for the client.
+			int reserve = Math.max(MIN_PROTOCOL_RESERVE, capacity / 4);
+			if (_slowConsumerPolicy == SlowConsumerPolicy.ConflateByTopic) {
+				_writeQueue = new ConflatingQueue(capacity, reserve, _statistics);
+				_dataCapacity = Integer.MAX_VALUE;
+			} else {
+				_writeQueue = new ArrayBlockingQueue<Message>(capacity + reserve);
+				_dataCapacity = capacity;
+			}
+		}
+		_slowConsumerThreshold = config.getSlowConsumerThreshold();
+		_maxMessageSize = config.getMaxMessageSize();
 	}
 
 	/**
 	 * Gets the unique client identifier.
-	 * 
+	 *
 	 * @return A client identifier.
 	 */
 	public String getId() {
 		return _id;
 	}
-	
+
 	/**
 	 * Gets the remote address of the client.
-	 * 
+	 *
 	 * @return The clients address.
 	 */
 	public InetAddress getAddress() {
 		return _address;
 	}
-    
+
 	/**
-	 * Start sending and receiving data.
+	 * Find whether the client announced support for a feature in its handshake.
+	 *
+	 * @param feature The feature.
+	 * @return True if the feature is supported.
 	 */
-	public void start() {
-		_readThread = new Thread(new Runnable() {
-			@Override
-			public void run() {
-				queueReceivedMessages();
-			}
-		}, "Interactor-" + _id + "-read");
-
-		_writeThread = new Thread(new Runnable() {
-			@Override
-			public void run() {
-				writeQueuedMessages();
-			}
-		}, "Interactor-" + _id + "-write");
-		
-		_readThread.start();
-		_writeThread.start();
+	public boolean supports(int feature) {
+		return (_features & feature) == feature;
 	}
-	
-	private void queueReceivedMessages() {
-        while (!Thread.currentThread().isInterrupted()) {
-            try {
-                _eventQueue.enqueue(new InteractorMessageEventArgs(this, receiveMessage()));
-            }
-            catch (InterruptedException error) {
-				_writeThread.interrupt();
-                break;
-            }
-            catch (Exception error) {
-                try {
-					_eventQueue.enqueue(new InteractorErrorEventArgs(this, error));
-					_writeThread.interrupt();
-				} catch (InterruptedException e) {
-					// Nothing to do
-				}
-                break;
-            }
-        }
 
-        logger.fine("Exited read loop for " + this);
-	}
-	
-	private void writeQueuedMessages() {
-        while (!Thread.currentThread().isInterrupted()) {
-            try {
-                Message message = _writeQueue.take();
-                message.write(_outputStream);
-            }
-            catch (InterruptedException error) {
-                break;
-            }
-            catch (Exception error) {
-                try {
-					_eventQueue.enqueue(new InteractorErrorEventArgs(this, error));
-				} catch (InterruptedException e) {
-					// Nothing to do
-				}
-                break;
-            }
-        }
-
-        logger.fine("Exited read loop for " + this);
-	}
+	/**
+	 * Start sending and receiving data.
+	 */
+	public abstract void start();
 
 	/**
 	 * Send a message to the client.
 	 * 
+	 * When the write queue is full multicast data is handled according to the
+	 * slow consumer policy. Other messages wait for space on the queue under the
+	 * blocking policy. Under the other policies they use space reserved for them,
+	 * and the client is disconnected if the reserve is full.
+	 *
 	 * @param message The message to send.
 	 * @throws InterruptedException
 	 */
     public void sendMessage(Message message) throws InterruptedException {
-        _writeQueue.put(message);
+        if (!offerMessage(message) && !enqueueSlowly(message)) {
+        	return;
+        }
+
+        if (_consecutiveDrops.get() != 0) {
+        	_consecutiveDrops.set(0);
+        }
+        onMessageQueued();
+    }
+
+    private boolean offerMessage(Message message) {
+    	// The size is checked without a lock, so concurrent senders may take a little of the reserve.
+    	if (_dataCapacity != Integer.MAX_VALUE && _writeQueue.size() >= _dataCapacity && EncodedMessage.unwrap(message) instanceof MulticastData) {
+    		return false;
+    	}
+    	return _writeQueue.offer(message);
+    }
+
+    private boolean enqueueSlowly(Message message) throws InterruptedException {
+    	if (_slowConsumerPolicy == SlowConsumerPolicy.Block) {
+    		_statistics.incrementBlocked();
+    		_writeQueue.put(message);
+    		return true;
+    	}
+
+    	if (!(EncodedMessage.unwrap(message) instanceof MulticastData)) {
+    		// The client has not read even the reserve, and the protocol cannot continue without the message.
+    		EncodedMessage.release(message);
+    		disconnect("the write queue has no space for a " + message.getType() + " message");
+    		return false;
+    	}
+
+    	if (_hasOverflowed.compareAndSet(false, true)) {
+    		logger.warning("The write queue of " + this + " is full; multicast data is handled by the " + _slowConsumerPolicy + " policy");
+    	}
+
+    	switch (_slowConsumerPolicy) {
+    	case DropOldest:
+    		// Only multicast data may be evicted; the other messages are part of the protocol.
+    		while (dropOldestMulticastData()) {
+    			if (offerMessage(message)) {
+    				return true;
+    			}
+    		}
+    		break;
+
+    	default:
+    		break;
+    	}
+
+		_statistics.incrementDroppedNewest();
+		EncodedMessage.release(message);
+
+		if (_slowConsumerPolicy == SlowConsumerPolicy.Disconnect && _consecutiveDrops.incrementAndGet() > _slowConsumerThreshold) {
+			disconnect(_consecutiveDrops.get() + " messages were dropped");
+		}
+
+		return false;
+    }
+
+    private void disconnect(String reason) {
+    	// Only abort once; messages are discarded until the server closes the interactor.
+    	if (_isDisconnecting.compareAndSet(false, true)) {
+    		logger.warning("Disconnecting slow consumer " + this + " as " + reason);
+    		_statistics.incrementDisconnected();
+    		abort();
+    	}
+    }
+
+    private boolean dropOldestMulticastData() {
+    	Message oldest = null;
+    	for (Message pending : _writeQueue) {
+    		if (EncodedMessage.unwrap(pending) instanceof MulticastData) {
+    			oldest = pending;
+    			break;
+    		}
+    	}
+
+    	// The writer may have taken the message since it was found.
+    	if (oldest == null || !_writeQueue.remove(oldest)) {
+    		return false;
+    	}
+
+		_statistics.incrementDroppedOldest();
+		EncodedMessage.release(oldest);
+		return true;
     }
 
     /**
-     * Receive a message from a client.
-     * 
-     * @return The message sent by the client.
-     * @throws IOException
+     * Release the messages left on the write queue when the interactor has stopped writing.
      */
-    public Message receiveMessage() throws IOException {
-        return Message.read(_inputStream);
+    protected void releaseWriteQueue() {
+    	Message message;
+    	while ((message = _writeQueue.poll()) != null) {
+    		EncodedMessage.release(message);
+    	}
     }
-    
+
+    /**
+     * Called after a message has been placed on the write queue.
+     */
+    protected void onMessageQueued() {
+    }
+
+    /**
+     * Gets the counts of the actions taken when the write queue was full.
+     *
+     * @return The write queue statistics.
+     */
+    public WriteQueueStatistics getWriteQueueStatistics() {
+    	return _statistics;
+    }
+
+    /**
+     * Gets the queue of messages waiting to be written to the client.
+     *
+     * @return The write queue.
+     */
+    protected BlockingQueue<Message> getWriteQueue() {
+    	return _writeQueue;
+    }
+
+    /**
+     * Pass a message received from the client to the server.
+     *
+     * @param message The message received.
+     * @throws IOException Thrown if the message is not valid on this connection.
+     * @throws InterruptedException
+     */
+    protected void raiseMessage(Message message) throws IOException, InterruptedException {
+    	switch (message.getType()) {
+    	case Handshake:
+    		acceptHandshake((Handshake)message);
+    		break;
+
+    	case AliasRegistration:
+    		registerAlias((AliasRegistration)message);
+    		break;
+
+    	case AliasedData:
+    		raiseAliasedData((AliasedData)message);
+    		break;
+
+    	case MulticastBatch:
+    		raiseMulticastBatch((MulticastBatch)message);
+    		break;
+
+    	default:
+    		raiseEvent(new InteractorMessageEventArgs(this, message, _symbols));
+    		break;
+    	}
+    }
+
+    private void registerAlias(AliasRegistration registration) {
+    	_receivedAliases.put(registration.getAlias(), new ReceivedAlias(registration.getFeed(), registration.getTopic()));
+    }
+
+    private void raiseAliasedData(AliasedData aliasedData) throws IOException, InterruptedException {
+    	ReceivedAlias alias = getReceivedAlias(aliasedData);
+
+    	MulticastData multicastData = aliasedData.resolve(alias.feed, alias.topic);
+    	raiseEvent(new InteractorMessageEventArgs(this, multicastData, alias.feedId, alias.topicId));
+    }
+
+    private void raiseMulticastBatch(MulticastBatch batch) throws IOException, InterruptedException {
+    	MulticastData[] entries = new MulticastData[batch.size()];
+    	int[] feedIds = new int[batch.size()];
+    	int[] topicIds = new int[batch.size()];
+    	for (int i = 0; i < batch.size(); ++i) {
+    		MulticastData entry = batch.getEntry(i);
+    		if (entry instanceof AliasedData) {
+    			ReceivedAlias alias = getReceivedAlias((AliasedData)entry);
+    			entries[i] = ((AliasedData)entry).resolve(alias.feed, alias.topic);
+    			feedIds[i] = alias.feedId;
+    			topicIds[i] = alias.topicId;
+    		} else {
+    			entries[i] = entry;
+    			feedIds[i] = _symbols.lookup(entry.getFeed());
+    			topicIds[i] = _symbols.lookup(entry.getTopic());
+    		}
+    	}
+
+    	raiseEvent(new InteractorMessageEventArgs(this, new MulticastBatch(entries), feedIds, topicIds));
+    }
+
+    private ReceivedAlias getReceivedAlias(AliasedData aliasedData) throws IOException {
+    	ReceivedAlias alias = _receivedAliases.get(aliasedData.getAlias());
+    	if (alias == null) {
+    		throw new IOException("Received data for the unregistered alias " + aliasedData.getAlias());
+    	}
+
+    	// An identifier never changes once it has been allocated, so only a missing one is looked up again.
+    	if (alias.feedId == SymbolTable.NONE) {
+    		alias.feedId = _symbols.lookup(alias.feed);
+    	}
+    	if (alias.topicId == SymbolTable.NONE) {
+    		alias.topicId = _symbols.lookup(alias.topic);
+    	}
+    	return alias;
+    }
+
+    private void acceptHandshake(Handshake handshake) throws IOException {
+    	Handshake reply = new Handshake(
+    			Math.min(handshake.getVersion(), Handshake.VERSION),
+    			handshake.getFeatures() & SUPPORTED_FEATURES);
+    	logger.fine("Handshake from " + this + ": " + handshake + ", accepted: " + reply);
+
+    	_features = reply.getFeatures();
+    	// The client sends frames from the message after its handshake.
+    	_isReadingFrames = reply.supports(Handshake.FEATURE_FRAMING);
+
+    	// The reader must not wait for the writer, as a selector loop does both.
+    	if (!_writeQueue.offer(reply)) {
+    		throw new IOException("There is no space on the write queue for the handshake reply");
+    	}
+    	onMessageQueued();
+    }
+
+    /**
+     * Read a message from the client in the negotiated format.
+     *
+     * This must only be called by the thread reading from the client.
+     *
+     * @param stream The stream from which to read.
+     * @return The message, or null if the client sent a frame of an unknown type.
+     * @throws IOException Thrown if the message could not be read.
+     */
+    protected Message readMessage(DataInputStream stream) throws IOException {
+    	if (_decoder == null) {
+    		return _isReadingFrames ? Message.readFrame(stream, _maxMessageSize) : Message.read(stream, _maxMessageSize);
+    	} else {
+    		return _isReadingFrames ? _decoder.readFrame(stream, _maxMessageSize) : _decoder.read(stream, _maxMessageSize);
+    	}
+    }
+
+    /**
+     * Gets the largest message the client may send.
+     *
+     * @return The maximum message size in bytes.
+     */
+    protected int getMaxMessageSize() {
+    	return _maxMessageSize;
+    }
+
+    /**
+     * Decode the body of a frame received from the client.
+     *
+     * This must only be called by the thread reading from the client.
+     *
+     * @param bytes The buffer holding the frame.
+     * @param offset The offset of the body of the frame, after the length.
+     * @param length The length of the body of the frame.
+     * @return The message, or null if the frame held an unknown message type.
+     * @throws IOException Thrown if the frame did not hold a complete message.
+     */
+    protected Message decodeFrame(byte[] bytes, int offset, int length) throws IOException {
+    	return _decoder == null ? Message.decode(bytes, offset, length) : _decoder.decode(bytes, offset, length);
+    }
+
+    /**
+     * Gets whether messages from the client are framed.
+     *
+     * This must only be called by the thread reading from the client.
+     *
+     * @return True if the client has negotiated framing.
+     */
+    protected boolean isReadingFrames() {
+    	return _isReadingFrames;
+    }
+
+    /**
+     * Write a message to the client in the negotiated format.
+     *
+     * This must only be called by the thread writing to the client.
+     *
+     * @param message The message to write.
+     * @param stream The stream to which the message should be written.
+     * @throws IOException Thrown if the message could not be written.
+     */
+    protected void writeMessage(Message message, DataOutputStream stream) throws IOException {
+    	Message unwrapped = EncodedMessage.unwrap(message);
+    	if (unwrapped instanceof AliasedData) {
+    		AliasRegistration registration = ((AliasedData)unwrapped).toRegistration();
+    		if (_sentAliases.get(registration.getAlias()) != registration) {
+    			// The client must know the alias before it receives data which uses it.
+    			writeMessage(registration, stream);
+    			_sentAliases.put(registration.getAlias(), registration);
+    		}
+    	}
+
+    	if (_isWritingFrames) {
+    		message.writeFrame(stream);
+    	} else {
+    		message.write(stream);
+    	}
+
+    	if (message instanceof Handshake) {
+    		// The client reads frames from the message after the reply to its handshake.
+    		_isWritingFrames = ((Handshake)message).supports(Handshake.FEATURE_FRAMING);
+    	}
+    }
+
+    /**
+     * Inform the server of an error on the connection.
+     *
+     * @param error The error.
+     * @throws InterruptedException
+     */
+    protected void raiseError(Exception error) throws InterruptedException {
+    	raiseEvent(new InteractorErrorEventArgs(this, error));
+    }
+
+    /**
+     * Pass an event to the server, waiting for space on the event queue.
+     *
+     * @param event The event.
+     * @throws InterruptedException
+     */
+    protected void raiseEvent(InteractorEventArgs event) throws InterruptedException {
+    	_eventQueue.enqueue(event);
+    }
+
+    /**
+     * Pass an event to the server if there is space on the event queue, without waiting.
+     *
+     * @param event The event.
+     * @return True if the event was queued, or false if the event queue was full.
+     */
+    protected boolean offerEvent(InteractorEventArgs event) {
+    	return _eventQueue.offer(event);
+    }
+
+    /**
+     * Run a task once, after the server has next taken a batch of events from the event queue.
+     *
+     * The task runs on the thread of the event queue, so it should only hand
+     * the work to another thread. If the queue is emptied before the task is
+     * added the task waits for the next batch, so the caller should try again
+     * to queue its events after adding the task.
+     *
+     * @param task The task to run.
+     */
+    protected void whenEventQueueDrained(final Runnable task) {
+    	_eventQueue.BatchListener.add(new EventListener<List<InteractorEventArgs>>() {
+			@Override
+			public void onEvent(List<InteractorEventArgs> events) {
+				_eventQueue.BatchListener.remove(this);
+				task.run();
+			}
+		});
+    }
+
     @Override
     public boolean equals(Object obj) {
         return equals((Interactor)obj);
@@ -189,31 +547,12 @@ public class Interactor implements Comparable<Interactor>, Closeable {
 		return other == null ? 1 : _id.compareTo(other._id);
 	}
 
-	@Override
-	public void close() {
-		try {
-			_writeThread.interrupt();
-			_writeThread.join();
-		} catch (InterruptedException e1) {
-			// TODO Auto-generated catch block
-			e1.printStackTrace();
-		}
-        try {
-			_inputStream.close();
-			_readThread.join();
-		} catch (IOException e) {
-			// Nothing to do
-			e.printStackTrace();
-		} catch (InterruptedException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+	/**
+	 * Drop the connection without waiting for the transport to shut down.
+	 * The failure is reported to the server as an error on the connection.
+	 */
+	protected abstract void abort();
 
-        try {
-			_outputStream.close();
-		} catch (IOException e) {
-			// Nothing to do
-			e.printStackTrace();
-		}
-	}
+	@Override
+	public abstract void close();
 }
@@ -39,6 +39,15 @@ public class InteractorManager implements Closeable {
         _repository.add(interactor);
     }
 
+    /**
+     * Find an interactor by its client identifier.
+     * @param id The client identifier.
+     * @return The interactor, or null if it is not connected.
+     */
+    public Interactor findInteractor(String id) {
+        return _repository.find(id);
+    }
+
     /**
      * Close an interactor.
      * @param interactor The interactor to close.
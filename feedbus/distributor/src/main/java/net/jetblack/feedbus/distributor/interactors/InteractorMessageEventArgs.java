@@ -1,22 +1,83 @@
 package net.jetblack.feedbus.distributor.interactors;
 
 import net.jetblack.feedbus.messages.Message;
+import net.jetblack.feedbus.messages.MonitorRequest;
+import net.jetblack.feedbus.messages.MulticastBatch;
+import net.jetblack.feedbus.messages.MulticastData;
+import net.jetblack.feedbus.messages.NotificationRequest;
+import net.jetblack.feedbus.messages.SubscriptionRequest;
+import net.jetblack.feedbus.messages.UnicastData;
+import net.jetblack.feedbus.util.SymbolTable;
 
 /**
  * An interactor message event.
+ *
+ * The feed and topic of the message are resolved to identifiers when the
+ * event is created, so the server can route the message using integers. Only
+ * a request which adds a subscription, monitor or notification interns them;
+ * for any other message a feed or topic which has never been added has no
+ * identifier, as nothing can be routed to it. A batch is
+ * created with the identifiers of the feed and topic of every entry, and the
+ * feed of the event is the feed shared by all the entries, if there is one.
  */
 public class InteractorMessageEventArgs extends InteractorEventArgs {
-	
+
 	private final Message _message;
+	private final int _feedId;
+	private final int _topicId;
+	private final int[] _entryFeedIds;
+	private final int[] _entryTopicIds;
 
 	/**
 	 * Constructs the event.
 	 * @param interactor The interactor.
 	 * @param message The message.
+	 * @param symbols The symbol table holding the feed and topic.
+	 */
+	public InteractorMessageEventArgs(Interactor interactor, Message message, SymbolTable symbols) {
+		super(interactor);
+		_message = message;
+		_entryFeedIds = null;
+		_entryTopicIds = null;
+		if (isAdd(message)) {
+			_feedId = symbols.intern(getFeed(message));
+			_topicId = symbols.intern(getTopic(message));
+		} else {
+			_feedId = symbols.lookup(getFeed(message));
+			_topicId = symbols.lookup(getTopic(message));
+		}
+	}
+
+	/**
+	 * Constructs the event for a message whose feed and topic have already been interned.
+	 * @param interactor The interactor.
+	 * @param message The message.
+	 * @param feedId The identifier of the feed.
+	 * @param topicId The identifier of the topic.
 	 */
-	public InteractorMessageEventArgs(Interactor interactor, Message message) {
+	public InteractorMessageEventArgs(Interactor interactor, Message message, int feedId, int topicId) {
 		super(interactor);
 		_message = message;
+		_entryFeedIds = null;
+		_entryTopicIds = null;
+		_feedId = feedId;
+		_topicId = topicId;
+	}
+
+	/**
+	 * Constructs the event for a batch whose feeds and topics have already been interned.
+	 * @param interactor The interactor.
+	 * @param batch The batch.
+	 * @param entryFeedIds The identifiers of the feeds of the entries.
+	 * @param entryTopicIds The identifiers of the topics of the entries.
+	 */
+	public InteractorMessageEventArgs(Interactor interactor, MulticastBatch batch, int[] entryFeedIds, int[] entryTopicIds) {
+		super(interactor);
+		_message = batch;
+		_entryFeedIds = entryFeedIds;
+		_entryTopicIds = entryTopicIds;
+		_feedId = getSharedFeedId(entryFeedIds);
+		_topicId = SymbolTable.NONE;
 	}
 
 	/**
@@ -26,7 +87,96 @@ public class InteractorMessageEventArgs extends InteractorEventArgs {
 	public Message getMessage() {
 		return _message;
 	}
-	
+
+	/**
+	 * Gets the identifier of the feed of the message.
+	 * @return The feed identifier, or SymbolTable.NONE if the message has no feed.
+	 */
+	public int getFeedId() {
+		return _feedId;
+	}
+
+	/**
+	 * Gets the identifier of the topic of the message.
+	 * @return The topic identifier, or SymbolTable.NONE if the message has no topic.
+	 */
+	public int getTopicId() {
+		return _topicId;
+	}
+
+	/**
+	 * Gets the identifiers of the feeds of the entries of a batch.
+	 * @return The feed identifiers, or null if the message is not a batch.
+	 */
+	public int[] getEntryFeedIds() {
+		return _entryFeedIds;
+	}
+
+	/**
+	 * Gets the identifiers of the topics of the entries of a batch.
+	 * @return The topic identifiers, or null if the message is not a batch.
+	 */
+	public int[] getEntryTopicIds() {
+		return _entryTopicIds;
+	}
+
+	private static int getSharedFeedId(int[] feedIds) {
+		if (feedIds.length == 0) {
+			return SymbolTable.NONE;
+		}
+		for (int i = 1; i < feedIds.length; ++i) {
+			if (feedIds[i] != feedIds[0]) {
+				return SymbolTable.NONE;
+			}
+		}
+		return feedIds[0];
+	}
+
+	private static boolean isAdd(Message message) {
+		switch (message.getType()) {
+		case MonitorRequest:
+			return ((MonitorRequest)message).isAdd();
+		case SubscriptionRequest:
+			return ((SubscriptionRequest)message).isAdd();
+		case NotificationRequest:
+			return ((NotificationRequest)message).isAdd();
+		default:
+			return false;
+		}
+	}
+
+	private static String getFeed(Message message) {
+		switch (message.getType()) {
+		case MonitorRequest:
+			return ((MonitorRequest)message).getFeed();
+		case SubscriptionRequest:
+			return ((SubscriptionRequest)message).getFeed();
+		case MulticastData:
+		case MulticastFrame:
+			return ((MulticastData)message).getFeed();
+		case UnicastData:
+			return ((UnicastData)message).getFeed();
+		case NotificationRequest:
+			return ((NotificationRequest)message).getFeed();
+		default:
+			return null;
+		}
+	}
+
+	private static String getTopic(Message message) {
+		switch (message.getType()) {
+		case SubscriptionRequest:
+			return ((SubscriptionRequest)message).getTopic();
+		case MulticastData:
+		case MulticastFrame:
+			return ((MulticastData)message).getTopic();
+		case UnicastData:
+			return ((UnicastData)message).getTopic();
+		default:
+			return null;
+		}
+	}
+
 	@Override
 	public String toString() {
 		return super.toString() + ", Message=" + _message;
@@ -21,6 +21,15 @@ public class InteractorRepository implements Closeable {
 		_interactors.put(interactor.getId(), interactor);
 	}
 
+	/**
+	 * Find an interactor by its client identifier.
+	 * @param id The client identifier.
+	 * @return The interactor, or null if there is no interactor with the identifier.
+	 */
+	public Interactor find(String id) {
+		return _interactors.get(id);
+	}
+
 	/**
 	 * Remove an interactor.
 	 * @param interactor The interactor to remove.
@@ -0,0 +1,384 @@
+package net.jetblack.feedbus.distributor.interactors;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import net.jetblack.feedbus.distributor.config.DistributorConfig;
+import net.jetblack.feedbus.messages.BufferPool;
+import net.jetblack.feedbus.messages.EncodedMessage;
+import net.jetblack.feedbus.messages.Message;
+import net.jetblack.feedbus.messages.PartialInputStream;
+import net.jetblack.feedbus.util.SymbolTable;
+import net.jetblack.feedbus.util.concurrent.AbstractEventQueue;
+import net.jetblack.feedbus.util.io.ReusableByteArrayOutputStream;
+
+/**
+ * An interactor which uses a non-blocking channel serviced by a shared selector loop.
+ *
+ * The loop thread also writes to the other channels on the loop, so it never
+ * waits for the server. When the event queue is full the events are held
+ * and the interactor stops reading from the channel, until the server has
+ * taken a batch of events from the queue.
+ */
+public class SelectorInteractor extends Interactor {
+
+	private static final Logger logger = Logger.getLogger(SelectorInteractor.class.getName());
+
+	private static final int INITIAL_READ_BUFFER_SIZE = 64 * 1024;
+
+	private final SocketChannel _channel;
+	private final SelectorLoop _loop;
+	private final AtomicBoolean _isFlushScheduled = new AtomicBoolean();
+	private final int _writeBatchBytes;
+	private final ReusableByteArrayOutputStream _encodeBuffer;
+	private final DataOutputStream _encodeStream;
+	private final Runnable _flushTask = new Runnable() {
+		@Override
+		public void run() {
+			flush();
+		}
+	};
+	private final Runnable _resumeTask = new Runnable() {
+		@Override
+		public void run() {
+			_loop.execute(new Runnable() {
+				@Override
+				public void run() {
+					_isResumeScheduled = false;
+					raisePendingEvents();
+				}
+			});
+		}
+	};
+
+	private ByteBuffer _readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+	// The length the incomplete unframed message at the start of the read buffer needs before it is parsed again.
+	private int _requiredLength;
+	private ByteBuffer _pendingWrite;
+	// The events waiting for space on the event queue, and whether a retry has been scheduled.
+	private final ArrayDeque<InteractorEventArgs> _pendingEvents = new ArrayDeque<InteractorEventArgs>();
+	private boolean _isResumeScheduled;
+	private SelectionKey _key;
+	private volatile boolean _isClosed;
+
+	/**
+	 * Construct the interactor.
+	 *
+	 * @param channel The non-blocking channel connected to the client.
+	 * @param loop The selector loop which will service the channel.
+	 * @param eventQueue The event queue used to communicate with the server.
+	 * @param symbols The symbol table in which feeds and topics are interned.
+	 * @param bufferPool The pool into which data messages are decoded, or null.
+	 * @param config The distributor configuration.
+	 */
+	public SelectorInteractor(SocketChannel channel, SelectorLoop loop, AbstractEventQueue<InteractorEventArgs> eventQueue, SymbolTable symbols, BufferPool bufferPool, DistributorConfig config) {
+		super(channel.socket().getInetAddress(), eventQueue, symbols, bufferPool, config);
+		_channel = channel;
+		_loop = loop;
+		_writeBatchBytes = config.getWriteBatchBytes();
+		_encodeBuffer = new ReusableByteArrayOutputStream(_writeBatchBytes);
+		_encodeStream = new DataOutputStream(_encodeBuffer);
+	}
+
+	@Override
+	public void start() {
+		_loop.execute(new Runnable() {
+			@Override
+			public void run() {
+				register();
+			}
+		});
+	}
+
+	private void register() {
+		try {
+			_key = _loop.register(_channel, SelectionKey.OP_READ, this);
+			// Anything queued before registration can now be written.
+			flush();
+		} catch (IOException error) {
+			fail(error);
+		}
+	}
+
+	@Override
+	protected void onMessageQueued() {
+		if (_isFlushScheduled.compareAndSet(false, true)) {
+			_loop.execute(_flushTask);
+		}
+	}
+
+	/**
+	 * Called by the selector loop when the channel is ready.
+	 *
+	 * @param key The selection key.
+	 */
+	void onSelected(SelectionKey key) {
+		try {
+			if (key.isReadable()) {
+				read();
+			}
+			if (key.isValid() && key.isWritable()) {
+				flush();
+			}
+		} catch (CancelledKeyException error) {
+			fail(error);
+		}
+	}
+
+	private void read() {
+		try {
+			int count = _channel.read(_readBuffer);
+			if (count < 0) {
+				fail(new EOFException());
+				return;
+			}
+
+			readMessages();
+
+			if (!_pendingEvents.isEmpty()) {
+				// Stop reading until the server has space for the events.
+				_key.interestOps(_key.interestOps() & ~SelectionKey.OP_READ);
+				raisePendingEvents();
+			}
+		} catch (Exception error) {
+			fail(error);
+		}
+	}
+
+	private void readMessages() throws IOException {
+		_readBuffer.flip();
+
+		while (_pendingEvents.isEmpty() && _readBuffer.hasRemaining()) {
+			// The negotiated format may change after each message.
+			if (!(isReadingFrames() ? readFrame() : readUnframed())) {
+				// The message is incomplete; wait for more data.
+				break;
+			}
+		}
+
+		_readBuffer.compact();
+
+		if (_pendingEvents.isEmpty() && !_readBuffer.hasRemaining()) {
+			// A single message is larger than the buffer.
+			int maxBufferSize = getMaxMessageSize() + Message.FRAME_PREFIX_LENGTH;
+			if (_readBuffer.capacity() >= maxBufferSize) {
+				throw new IOException("A message from " + this + " is larger than the maximum of " + getMaxMessageSize() + " bytes");
+			}
+			ByteBuffer readBuffer = ByteBuffer.allocate((int)Math.min(_readBuffer.capacity() * 2L, maxBufferSize));
+			_readBuffer.flip();
+			readBuffer.put(_readBuffer);
+			_readBuffer = readBuffer;
+		}
+	}
+
+	private boolean readUnframed() throws IOException {
+		if (_readBuffer.remaining() < _requiredLength) {
+			return false;
+		}
+
+		PartialInputStream input = new PartialInputStream(
+				_readBuffer.array(),
+				_readBuffer.arrayOffset() + _readBuffer.position(),
+				_readBuffer.remaining());
+
+		Message message;
+		try {
+			message = readMessage(new DataInputStream(input));
+		} catch (EOFException error) {
+			// Wait for the bytes the message needs rather than parsing it again after every read.
+			_requiredLength = input.getRequiredLength();
+			if (_requiredLength > getMaxMessageSize()) {
+				throw new IOException("A message from " + this + " is larger than the maximum of " + getMaxMessageSize() + " bytes");
+			}
+			return false;
+		}
+
+		_requiredLength = 0;
+		_readBuffer.position(_readBuffer.position() + input.getPosition());
+		raiseMessage(message);
+		return true;
+	}
+
+	private boolean readFrame() throws IOException {
+		if (_readBuffer.remaining() < Message.FRAME_PREFIX_LENGTH) {
+			return false;
+		}
+
+		int position = _readBuffer.position();
+		int length = _readBuffer.getInt(position);
+		if (length < 0 || length > getMaxMessageSize()) {
+			throw new IOException("invalid frame length " + length);
+		}
+		if (_readBuffer.remaining() < Message.FRAME_PREFIX_LENGTH + length) {
+			return false;
+		}
+
+		_readBuffer.position(position + Message.FRAME_PREFIX_LENGTH + length);
+		Message message = decodeFrame(_readBuffer.array(), _readBuffer.arrayOffset() + position + Message.FRAME_PREFIX_LENGTH, length);
+		if (message == null) {
+			logger.fine("Skipped a frame of an unknown message type from " + this);
+		} else {
+			raiseMessage(message);
+		}
+		return true;
+	}
+
+	@Override
+	protected void raiseMessage(Message message) throws IOException {
+		try {
+			super.raiseMessage(message);
+		} catch (InterruptedException error) {
+			// The events are never waited for on the loop.
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	protected void raiseEvent(InteractorEventArgs event) {
+		// Events are passed to the server in order, so none may overtake those which are waiting.
+		if (!_pendingEvents.isEmpty() || !offerEvent(event)) {
+			_pendingEvents.add(event);
+		}
+	}
+
+	/**
+	 * Pass the waiting events to the server, then read the messages held in
+	 * the buffer and resume reading from the channel. If the event queue is
+	 * still full, try again once the server has taken a batch of events.
+	 */
+	private void raisePendingEvents() {
+		try {
+			while (true) {
+				InteractorEventArgs event;
+				while ((event = _pendingEvents.peek()) != null && offerEvent(event)) {
+					_pendingEvents.poll();
+				}
+
+				if (!_pendingEvents.isEmpty()) {
+					if (_isResumeScheduled) {
+						return;
+					}
+					_isResumeScheduled = true;
+					whenEventQueueDrained(_resumeTask);
+					// The server may have emptied the queue before the task was added.
+					continue;
+				}
+
+				if (_isClosed || (_key.interestOps() & SelectionKey.OP_READ) != 0) {
+					return;
+				}
+
+				readMessages();
+				if (_pendingEvents.isEmpty()) {
+					_key.interestOps(_key.interestOps() | SelectionKey.OP_READ);
+					return;
+				}
+			}
+		} catch (Exception error) {
+			fail(error);
+		}
+	}
+
+	private void flush() {
+		_isFlushScheduled.set(false);
+
+		if (_key == null || !_key.isValid()) {
+			return;
+		}
+
+		try {
+			if (_pendingWrite == null) {
+				_pendingWrite = encodeQueuedMessages();
+			}
+
+			while (_pendingWrite != null) {
+				_channel.write(_pendingWrite);
+				if (_pendingWrite.hasRemaining()) {
+					// The socket buffer is full; wait until the channel is writable.
+					_key.interestOps(_key.interestOps() | SelectionKey.OP_WRITE);
+					return;
+				}
+				_pendingWrite = encodeQueuedMessages();
+			}
+
+			_key.interestOps(_key.interestOps() & ~SelectionKey.OP_WRITE);
+		} catch (Exception error) {
+			fail(error);
+		}
+	}
+
+	private ByteBuffer encodeQueuedMessages() throws IOException {
+		_encodeBuffer.reset();
+
+		Message message;
+		while (_encodeBuffer.size() < _writeBatchBytes && (message = getWriteQueue().poll()) != null) {
+			try {
+				writeMessage(message, _encodeStream);
+			} finally {
+				EncodedMessage.release(message);
+			}
+		}
+
+		return _encodeBuffer.size() == 0 ? null : _encodeBuffer.toByteBuffer();
+	}
+
+	/**
+	 * Called by the selector loop when servicing the channel failed unexpectedly.
+	 *
+	 * @param error The failure.
+	 */
+	void onFault(Throwable error) {
+		fail(error instanceof Exception ? (Exception)error : new IOException("Failed to service " + this, error));
+	}
+
+	private void fail(Exception error) {
+		if (_isClosed) {
+			return;
+		}
+
+		closeChannel();
+
+		raiseEvent(new InteractorErrorEventArgs(this, error));
+		if (!_pendingEvents.isEmpty()) {
+			raisePendingEvents();
+		}
+	}
+
+	private void closeChannel() {
+		_isClosed = true;
+
+		try {
+			_channel.close();
+		} catch (IOException e) {
+			// Nothing to do
+		}
+
+		releaseWriteQueue();
+
+		logger.fine("Closed channel for " + this);
+	}
+
+	@Override
+	protected void abort() {
+		_loop.execute(new Runnable() {
+			@Override
+			public void run() {
+				fail(new IOException("The client was disconnected"));
+			}
+		});
+	}
+
+	@Override
+	public void close() {
+		closeChannel();
+	}
+}
@@ -0,0 +1,68 @@
+package net.jetblack.feedbus.distributor.interactors;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import net.jetblack.feedbus.distributor.config.DistributorConfig;
+import net.jetblack.feedbus.messages.BufferPool;
+import net.jetblack.feedbus.util.SymbolTable;
+import net.jetblack.feedbus.util.concurrent.AbstractEventQueue;
+
+/**
+ * An interactor listener which creates selector interactors, spreading the
+ * connections over a fixed pool of selector loops.
+ */
+public class SelectorInteractorListener implements InteractorListener {
+
+    private final AbstractEventQueue<InteractorEventArgs> _eventQueue;
+    private final SymbolTable _symbols;
+    private final BufferPool _bufferPool;
+    private final ServerSocketChannel _listener;
+    private final DistributorConfig _config;
+    private final SelectorLoop[] _loops;
+    private int _nextLoop = 0;
+
+    /**
+     * Constructs the listener.
+     * @param config The distributor configuration.
+     * @param eventQueue The event queue to pass to the interactor.
+     * @param symbols The symbol table to pass to the interactor.
+     * @param bufferPool The buffer pool to pass to the interactor, or null.
+     * @throws IOException
+     */
+    public SelectorInteractorListener(DistributorConfig config, AbstractEventQueue<InteractorEventArgs> eventQueue, SymbolTable symbols, BufferPool bufferPool) throws IOException {
+        _eventQueue = eventQueue;
+        _symbols = symbols;
+        _bufferPool = bufferPool;
+        _config = config;
+
+        _loops = new SelectorLoop[Math.max(1, config.getSelectorThreads())];
+        for (int i = 0; i < _loops.length; ++i) {
+        	_loops[i] = new SelectorLoop("SelectorLoop-" + i);
+        	_loops[i].start();
+        }
+
+        // The listener blocks on the acceptor thread; only the client channels are non-blocking.
+        _listener = ServerSocketChannel.open();
+        _listener.bind(new InetSocketAddress(config.getAddress(), config.getPort()));
+    }
+
+    @Override
+    public Interactor accept() throws IOException {
+        SocketChannel channel = _listener.accept();
+        channel.configureBlocking(false);
+        SelectorLoop loop = _loops[_nextLoop];
+        _nextLoop = (_nextLoop + 1) % _loops.length;
+        return new SelectorInteractor(channel, loop, _eventQueue, _symbols, _bufferPool, _config);
+    }
+
+	@Override
+	public void close() throws IOException {
+		_listener.close();
+		for (SelectorLoop loop : _loops) {
+			loop.close();
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package net.jetblack.feedbus.distributor.interactors;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A thread which multiplexes the I/O of many selector interactors over a single selector.
+ */
+public class SelectorLoop implements Runnable, Closeable {
+
+	private static final Logger logger = Logger.getLogger(SelectorLoop.class.getName());
+
+	private final Selector _selector;
+	private final Queue<Runnable> _tasks = new ConcurrentLinkedQueue<Runnable>();
+	private final String _name;
+
+	private volatile boolean _isClosed;
+	private Thread _thread;
+
+	/**
+	 * Construct the loop.
+	 *
+	 * @param name The name of the loop thread.
+	 * @throws IOException
+	 */
+	public SelectorLoop(String name) throws IOException {
+		_selector = Selector.open();
+		_name = name;
+	}
+
+	/**
+	 * Start a thread to run the loop.
+	 *
+	 * @return The thread.
+	 */
+	public Thread start() {
+		_thread = new Thread(this, _name);
+		_thread.start();
+		return _thread;
+	}
+
+	/**
+	 * Run a task on the loop thread.
+	 *
+	 * @param task The task to run.
+	 */
+	public void execute(Runnable task) {
+		_tasks.add(task);
+		_selector.wakeup();
+	}
+
+	/**
+	 * Register a channel with the selector. This must be called on the loop thread.
+	 *
+	 * @param channel The channel to register.
+	 * @param ops The initial interest set.
+	 * @param interactor The interactor to notify when the channel is ready.
+	 * @return The selection key.
+	 * @throws IOException
+	 */
+	SelectionKey register(SelectableChannel channel, int ops, SelectorInteractor interactor) throws IOException {
+		return channel.register(_selector, ops, interactor);
+	}
+
+	@Override
+	public void run() {
+		while (!_isClosed && !Thread.currentThread().isInterrupted()) {
+			try {
+				_selector.select();
+
+				runTasks();
+
+				Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+
+					SelectorInteractor interactor = (SelectorInteractor)key.attachment();
+					try {
+						interactor.onSelected(key);
+					} catch (Throwable error) {
+						// Only the interactor which failed is closed; the others share the loop.
+						logger.log(Level.WARNING, "Failed to service " + interactor, error);
+						interactor.onFault(error);
+					}
+				}
+			} catch (ClosedSelectorException error) {
+				break;
+			} catch (IOException error) {
+				logger.log(Level.SEVERE, "The selector loop has faulted", error);
+				break;
+			}
+		}
+
+		logger.fine("Exited selector loop " + _name);
+	}
+
+	private void runTasks() {
+		Runnable task;
+		while ((task = _tasks.poll()) != null) {
+			try {
+				task.run();
+			} catch (Throwable error) {
+				logger.log(Level.SEVERE, "A task on the selector loop failed", error);
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		_isClosed = true;
+		_selector.wakeup();
+		if (_thread != null) {
+			try {
+				_thread.join();
+			} catch (InterruptedException e) {
+				// Nothing to do.
+			}
+		}
+		_selector.close();
+	}
+}
@@ -0,0 +1,249 @@
+package net.jetblack.feedbus.distributor.interactors;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import net.jetblack.feedbus.distributor.config.DistributorConfig;
+import net.jetblack.feedbus.messages.BufferPool;
+import net.jetblack.feedbus.messages.EncodedMessage;
+import net.jetblack.feedbus.messages.Message;
+import net.jetblack.feedbus.util.SymbolTable;
+import net.jetblack.feedbus.util.concurrent.AbstractEventQueue;
+import net.jetblack.feedbus.util.concurrent.Threads;
+
+/**
+ * An interactor which uses blocking streams with a read and a write thread per connection.
+ *
+ * The writer drains the write queue into a batch buffer and flushes it to the
+ * socket once per batch rather than once per message.
+ */
+public class StreamInteractor extends Interactor {
+
+	private static final Logger logger = Logger.getLogger(StreamInteractor.class.getName());
+
+	private final DataInputStream _inputStream;
+	private final DataOutputStream _outputStream;
+	private final boolean _isVirtualThreads;
+	private final int _writeBatchBytes;
+	private final long _writeLingerNanos;
+	private final ByteArrayOutputStream _batchBuffer;
+	private final DataOutputStream _batchStream;
+	private final List<Message> _pendingMessages = new ArrayList<Message>();
+
+	private Thread _readThread, _writeThread;
+
+	/**
+	 * Construct the interactor.
+	 *
+	 * @param socket The socket for cummincation.
+	 * @param eventQueue The event queue used to communicate with the server.
+	 * @param symbols The symbol table in which feeds and topics are interned.
+	 * @param bufferPool The pool into which data messages are decoded, or null.
+	 * @param config The distributor configuration.
+	 * @return A new interactor.
+	 * @throws IOException
+	 */
+	public static StreamInteractor create(Socket socket, AbstractEventQueue<InteractorEventArgs> eventQueue, SymbolTable symbols, BufferPool bufferPool, DistributorConfig config) throws IOException {
+		return new StreamInteractor(
+				new DataInputStream(socket.getInputStream()),
+				new DataOutputStream(socket.getOutputStream()),
+				socket.getInetAddress(),
+				eventQueue,
+				symbols,
+				bufferPool,
+				config);
+	}
+
+	private StreamInteractor(DataInputStream inputStream, DataOutputStream outputStream, InetAddress address, AbstractEventQueue<InteractorEventArgs> eventQueue, SymbolTable symbols, BufferPool bufferPool, DistributorConfig config) {
+		super(address, eventQueue, symbols, bufferPool, config);
+		_inputStream = inputStream;
+		_outputStream = outputStream;
+		_isVirtualThreads = config.isVirtualThreads();
+		_writeBatchBytes = config.getWriteBatchBytes();
+		_writeLingerNanos = TimeUnit.MILLISECONDS.toNanos(config.getWriteLingerTime());
+		_batchBuffer = new ByteArrayOutputStream(_writeBatchBytes);
+		_batchStream = new DataOutputStream(_batchBuffer);
+	}
+
+	@Override
+	public void start() {
+		_readThread = Threads.create(new Runnable() {
+			@Override
+			public void run() {
+				queueReceivedMessages();
+			}
+		}, "Interactor-" + getId() + "-read", _isVirtualThreads);
+
+		_writeThread = Threads.create(new Runnable() {
+			@Override
+			public void run() {
+				writeQueuedMessages();
+			}
+		}, "Interactor-" + getId() + "-write", _isVirtualThreads);
+
+		_readThread.start();
+		_writeThread.start();
+	}
+
+	private void queueReceivedMessages() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Message message = receiveMessage();
+                if (message != null) {
+                	raiseMessage(message);
+                } else {
+                	logger.fine("Skipped a frame of an unknown message type from " + this);
+                }
+            }
+            catch (InterruptedException error) {
+				_writeThread.interrupt();
+                break;
+            }
+            catch (Exception error) {
+                try {
+					raiseError(error);
+					_writeThread.interrupt();
+				} catch (InterruptedException e) {
+					// Nothing to do
+				}
+                break;
+            }
+        }
+
+        logger.fine("Exited read loop for " + this);
+	}
+
+	private void writeQueuedMessages() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                writeBatch(getWriteQueue().take());
+            }
+            catch (InterruptedException error) {
+                break;
+            }
+            catch (Exception error) {
+                try {
+					raiseError(error);
+				} catch (InterruptedException e) {
+					// Nothing to do
+				}
+                break;
+            }
+        }
+
+        logger.fine("Exited write loop for " + this);
+	}
+
+	/**
+	 * Write the message and any others which are waiting, flushing the socket once per batch.
+	 *
+	 * @param message The first message of the batch.
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void writeBatch(Message message) throws IOException, InterruptedException {
+		long deadline = System.nanoTime() + _writeLingerNanos;
+
+		while (message != null) {
+			encode(message);
+
+			_pendingMessages.clear();
+			getWriteQueue().drainTo(_pendingMessages);
+			int encoded = 0;
+			try {
+				for (; encoded < _pendingMessages.size(); ++encoded) {
+					encode(_pendingMessages.get(encoded));
+				}
+			} finally {
+				// A message which failed to encode has been released, but those after it never will be.
+				for (int i = encoded + 1; i < _pendingMessages.size(); ++i) {
+					EncodedMessage.release(_pendingMessages.get(i));
+				}
+				_pendingMessages.clear();
+			}
+
+			long remaining = deadline - System.nanoTime();
+			message = remaining > 0 ? getWriteQueue().poll(remaining, TimeUnit.NANOSECONDS) : null;
+		}
+
+		flushBatch();
+	}
+
+	private void encode(Message message) throws IOException {
+		try {
+			writeMessage(message, _batchStream);
+		} finally {
+			EncodedMessage.release(message);
+		}
+
+		if (_batchBuffer.size() >= _writeBatchBytes) {
+			flushBatch();
+		}
+	}
+
+	private void flushBatch() throws IOException {
+		if (_batchBuffer.size() > 0) {
+			_batchBuffer.writeTo(_outputStream);
+			_outputStream.flush();
+			_batchBuffer.reset();
+		}
+	}
+
+    /**
+     * Receive a message from a client.
+     *
+     * @return The message sent by the client, or null if the client sent a frame of an unknown type.
+     * @throws IOException
+     */
+    public Message receiveMessage() throws IOException {
+        return readMessage(_inputStream);
+    }
+
+	@Override
+	protected void abort() {
+		// Closing the socket fails the read loop, which reports the error.
+		try {
+			_inputStream.close();
+		} catch (IOException e) {
+			// Nothing to do
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			_writeThread.interrupt();
+			_writeThread.join();
+		} catch (InterruptedException e1) {
+			// TODO Auto-generated catch block
+			e1.printStackTrace();
+		}
+        try {
+			_inputStream.close();
+			_readThread.join();
+		} catch (IOException e) {
+			// Nothing to do
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
+
+        try {
+			_outputStream.close();
+		} catch (IOException e) {
+			// Nothing to do
+			e.printStackTrace();
+		}
+
+        releaseWriteQueue();
+	}
+}
@@ -0,0 +1,49 @@
+package net.jetblack.feedbus.distributor.interactors;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import net.jetblack.feedbus.distributor.config.DistributorConfig;
+import net.jetblack.feedbus.messages.BufferPool;
+import net.jetblack.feedbus.util.SymbolTable;
+import net.jetblack.feedbus.util.concurrent.AbstractEventQueue;
+
+/**
+ * An interactor listener which creates stream interactors.
+ */
+public class StreamInteractorListener implements InteractorListener {
+
+    private final AbstractEventQueue<InteractorEventArgs> _eventQueue;
+    private final SymbolTable _symbols;
+    private final BufferPool _bufferPool;
+    private final ServerSocket _listener;
+    private final DistributorConfig _config;
+
+    /**
+     * Constructs the listener.
+     * @param config The distributor configuration.
+     * @param eventQueue The event queue to pass to the interactor.
+     * @param symbols The symbol table to pass to the interactor.
+     * @param bufferPool The buffer pool to pass to the interactor, or null.
+     * @throws IOException
+     */
+    public StreamInteractorListener(DistributorConfig config, AbstractEventQueue<InteractorEventArgs> eventQueue, SymbolTable symbols, BufferPool bufferPool) throws IOException {
+        _eventQueue = eventQueue;
+        _symbols = symbols;
+        _bufferPool = bufferPool;
+    	_listener = new ServerSocket(config.getPort(), -1, config.getAddress());
+    	_config = config;
+    }
+    
+    @Override
+    public Interactor accept() throws IOException {
+        Socket socket = _listener.accept();
+        return StreamInteractor.create(socket, _eventQueue, _symbols, _bufferPool, _config);
+    }
+
+	@Override
+	public void close() throws IOException {
+		_listener.close();
+	}
+}
@@ -0,0 +1,96 @@
+package net.jetblack.feedbus.distributor.interactors;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the actions taken when an interactor's write queue is full.
+ */
+public class WriteQueueStatistics {
+
+	private final AtomicLong _blocked = new AtomicLong();
+	private final AtomicLong _droppedNewest = new AtomicLong();
+	private final AtomicLong _droppedOldest = new AtomicLong();
+	private final AtomicLong _conflated = new AtomicLong();
+	private final AtomicLong _disconnected = new AtomicLong();
+
+	/**
+	 * Gets the number of times the sender waited for space on the queue.
+	 *
+	 * @return The number of blocked sends.
+	 */
+	public long getBlocked() {
+		return _blocked.get();
+	}
+
+	/**
+	 * Gets the number of messages discarded because the queue was full.
+	 *
+	 * @return The number of discarded messages.
+	 */
+	public long getDroppedNewest() {
+		return _droppedNewest.get();
+	}
+
+	/**
+	 * Gets the number of queued messages discarded to make space for newer ones.
+	 *
+	 * @return The number of discarded messages.
+	 */
+	public long getDroppedOldest() {
+		return _droppedOldest.get();
+	}
+
+	/**
+	 * Gets the number of queued messages replaced by a newer message for the same feed and topic.
+	 *
+	 * @return The number of conflated messages.
+	 */
+	public long getConflated() {
+		return _conflated.get();
+	}
+
+	/**
+	 * Gets the number of times the client was disconnected for being too slow.
+	 *
+	 * @return The number of disconnections.
+	 */
+	public long getDisconnected() {
+		return _disconnected.get();
+	}
+
+	/**
+	 * Find whether the write queue has never been full.
+	 *
+	 * @return True if no action has been counted.
+	 */
+	public boolean isEmpty() {
+		return _blocked.get() == 0 && _droppedNewest.get() == 0 && _droppedOldest.get() == 0
+				&& _conflated.get() == 0 && _disconnected.get() == 0;
+	}
+
+	void incrementBlocked() {
+		_blocked.incrementAndGet();
+	}
+
+	void incrementDroppedNewest() {
+		_droppedNewest.incrementAndGet();
+	}
+
+	void incrementDroppedOldest() {
+		_droppedOldest.incrementAndGet();
+	}
+
+	void incrementConflated() {
+		_conflated.incrementAndGet();
+	}
+
+	void incrementDisconnected() {
+		_disconnected.incrementAndGet();
+	}
+
+	@Override
+	public String toString() {
+		return "Blocked=" + _blocked + ", DroppedNewest=" + _droppedNewest + ", DroppedOldest=" + _droppedOldest
+				+ ", Conflated=" + _conflated + ", Disconnected=" + _disconnected;
+	}
+}
@@ -9,15 +9,18 @@ import net.jetblack.feedbus.distributor.interactors.InteractorEventArgs;
 public class NotificationEventArgs extends InteractorEventArgs {
 
     private final String _feed;
+    private final int _feedId;
 
     /**
      * Constructs the event.
      * @param interactor The interactor.
      * @param feed The feed name.
+     * @param feedId The feed identifier.
      */
-    public NotificationEventArgs(Interactor interactor, String feed) {
+    public NotificationEventArgs(Interactor interactor, String feed, int feedId) {
         super(interactor);
         _feed = feed;
+        _feedId = feedId;
     }
     
     /**
@@ -28,6 +31,14 @@ public class NotificationEventArgs extends InteractorEventArgs {
     	return _feed;
     }
 
+    /**
+     * Gets the feed identifier.
+     * @return The feed identifier.
+     */
+    public int getFeedId() {
+    	return _feedId;
+    }
+
 	@Override
 	public String toString() {
 	    return super.toString() + ", Feed=" + _feed;
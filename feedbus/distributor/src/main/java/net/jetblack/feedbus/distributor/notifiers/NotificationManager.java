@@ -61,28 +61,30 @@ public class NotificationManager {
      * Request a notification.
      * @param notifiable The interactor to be notified.
      * @param notificationRequest The notification request.
+     * @param feedId The identifier of the feed.
      */
-    public void requestNotification(Interactor notifiable, NotificationRequest notificationRequest)
+    public void requestNotification(Interactor notifiable, NotificationRequest notificationRequest, int feedId)
     {
         logger.info("Handling notification request for " + notifiable + " on " + notificationRequest);
 
         if (notificationRequest.isAdd()) {
-            if (_repository.addRequest(notifiable, notificationRequest.getFeed())) {
-            	_newNotificationRequest.notify(new NotificationEventArgs(notifiable, notificationRequest.getFeed()));
+            if (_repository.addRequest(notifiable, feedId)) {
+            	_newNotificationRequest.notify(new NotificationEventArgs(notifiable, notificationRequest.getFeed(), feedId));
             }
         }
         else
-            _repository.removeRequest(notifiable, notificationRequest.getFeed());
+            _repository.removeRequest(notifiable, feedId);
     }
 
     /**
      * Forward a subscription to interested interactors.
+     * @param feedId The identifier of the feed.
      * @param forwardedSubscriptionRequest The forwarded subscription request.
      */
-    public void forwardSubscription(ForwardedSubscriptionRequest forwardedSubscriptionRequest)
+    public void forwardSubscription(int feedId, ForwardedSubscriptionRequest forwardedSubscriptionRequest)
     {
         // Find all the interactors that wish to be notified of subscriptions to this topic.
-        Set<Interactor> notifiables = _repository.findNotifiables(forwardedSubscriptionRequest.getFeed());
+        Set<Interactor> notifiables = _repository.findNotifiables(feedId);
         if (notifiables == null)
             return;
 
@@ -6,47 +6,46 @@ import java.util.Map;
 import java.util.Set;
 
 import net.jetblack.feedbus.distributor.interactors.Interactor;
+import net.jetblack.feedbus.util.IntObjectMap;
 
 /**
  * The notification repository.
  */
 public class NotificationRepository {
 
-    private final Map<String, Set<Interactor>> _feedToNotifiables = new HashMap<String, Set<Interactor>>();
+    // Feed->Notifiables.
+    private final IntObjectMap<Set<Interactor>> _feedToNotifiables = new IntObjectMap<Set<Interactor>>();
+    // Notifiable->Feeds.
+    private final Map<Interactor, Set<Integer>> _notifiableToFeeds = new HashMap<Interactor, Set<Integer>>();
 
     /**
      * Remove an interactor.
      * @param interactor The interactor to remove.
      */
     public void removeInteractor(Interactor interactor) {
-        // Remove the interactor where it appears in the notifiables, remembering any topics which are left without any interactors.
-        Set<String> topicsWithoutInteractors = new HashSet<String>();
-        for (Map.Entry<String, Set<Interactor>> topicPatternToNotifiable : _feedToNotifiables.entrySet())
-        {
-        	Set<Interactor> notifiables = topicPatternToNotifiable.getValue();
-        	
-        	if (!notifiables.contains(interactor)) {
-        		continue;
-        	}
-        	
-        	notifiables.remove(interactor);
-            if (notifiables.isEmpty())
-                topicsWithoutInteractors.add(topicPatternToNotifiable.getKey());
+        // Only visit the feeds for which the interactor requested notifications.
+        Set<Integer> feeds = _notifiableToFeeds.remove(interactor);
+        if (feeds == null) {
+            return;
         }
 
-        // Remove any topics left without interactors.
-        for (String topic : topicsWithoutInteractors) {
-            _feedToNotifiables.remove(topic);
+        for (int feed : feeds) {
+            Set<Interactor> notifiables = _feedToNotifiables.get(feed);
+            notifiables.remove(interactor);
+
+            // Remove any feeds left without interactors.
+            if (notifiables.isEmpty())
+                _feedToNotifiables.remove(feed);
         }
     }
 
     /**
      * Add a notification request.
      * @param notifiable The interactor to be notified.
-     * @param feed The feed name.
+     * @param feed The feed identifier.
      * @return true if this is new.
      */
-    public boolean addRequest(Interactor notifiable, String feed)
+    public boolean addRequest(Interactor notifiable, int feed)
     {
         // Find or create the set of notifiables for this feed.
         Set<Interactor> notifiables = _feedToNotifiables.get(feed);
@@ -59,15 +58,21 @@ public class NotificationRepository {
 
         // Add to the notifiables for this topic pattern and inform the subscription manager of the new notification request.
         notifiables.add(notifiable);
+
+        Set<Integer> feeds = _notifiableToFeeds.get(notifiable);
+        if (feeds == null) {
+            _notifiableToFeeds.put(notifiable, feeds = new HashSet<Integer>());
+        }
+        feeds.add(feed);
         return true;
     }
 
     /**
      * Remove a notification request.
      * @param notifiable The interactor which no longer wants to be notified.
-     * @param feed The feed name.
+     * @param feed The feed identifier.
      */
-    public void removeRequest(Interactor notifiable, String feed) {
+    public void removeRequest(Interactor notifiable, int feed) {
         // Does this feed have any notifiable interactors?
        Set<Interactor> notifiables = _feedToNotifiables.get(feed);
         if (notifiables == null) {
@@ -82,6 +87,11 @@ public class NotificationRepository {
         // Remove the interactor from the set of notifiables.
         notifiables.remove(notifiable);
 
+        Set<Integer> feeds = _notifiableToFeeds.get(notifiable);
+        feeds.remove(feed);
+        if (feeds.isEmpty())
+            _notifiableToFeeds.remove(notifiable);
+
         // Are there any interactors left listening to this feed?
         if (!notifiables.isEmpty())
             return;
@@ -92,10 +102,10 @@ public class NotificationRepository {
 
     /**
      * Find interactors who wish to be notified about subscriptions to a feed.
-     * @param feed The feed name.
+     * @param feed The feed identifier.
      * @return The interested interactors.
      */
-    public Set<Interactor> findNotifiables(String feed) {
+    public Set<Interactor> findNotifiables(int feed) {
         Set<Interactor> interactors = _feedToNotifiables.get(feed);
         return interactors == null ? null : interactors;
     }
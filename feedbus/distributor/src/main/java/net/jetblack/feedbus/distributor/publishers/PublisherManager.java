@@ -1,6 +1,6 @@
 package net.jetblack.feedbus.distributor.publishers;
 
-import java.util.List;
+import java.io.IOException;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -9,12 +9,20 @@ import net.jetblack.feedbus.distributor.interactors.Interactor;
 import net.jetblack.feedbus.distributor.interactors.InteractorClosedEventArgs;
 import net.jetblack.feedbus.distributor.interactors.InteractorFaultedEventArgs;
 import net.jetblack.feedbus.distributor.interactors.InteractorManager;
+import net.jetblack.feedbus.messages.AliasRegistration;
+import net.jetblack.feedbus.messages.AliasedData;
+import net.jetblack.feedbus.messages.EncodedMessage;
 import net.jetblack.feedbus.messages.FeedTopic;
+import net.jetblack.feedbus.messages.Handshake;
+import net.jetblack.feedbus.messages.Message;
 import net.jetblack.feedbus.messages.MulticastData;
+import net.jetblack.feedbus.messages.MulticastFrame;
+import net.jetblack.feedbus.messages.PooledMessage;
 import net.jetblack.feedbus.messages.UnicastData;
 import net.jetblack.feedbus.util.EventHandler;
 import net.jetblack.feedbus.util.EventListener;
 import net.jetblack.feedbus.util.EventRegister;
+import net.jetblack.feedbus.util.SymbolTable;
 import net.jetblack.feedbus.util.concurrent.ConcurrentEventHandler;
 
 /**
@@ -32,9 +40,10 @@ public class PublisherManager {
     /**
      * Construct the manager.
      * @param interactorManager The interactor manager.
+     * @param symbols The symbol table holding the feed and topic names.
      */
-    public PublisherManager(InteractorManager interactorManager) {
-        _repository = new PublisherRepository();
+    public PublisherManager(InteractorManager interactorManager, SymbolTable symbols) {
+        _repository = new PublisherRepository(symbols);
         
         interactorManager.InteractorClosed.add(new EventListener<InteractorClosedEventArgs>() {
 			@Override
@@ -59,34 +68,93 @@ public class PublisherManager {
      * @param publisher The publisher.
      * @param unicastData The data to send.
      * @param subscriber The recipient.
+     * @param feedId The identifier of the feed.
+     * @param topicId The identifier of the topic.
      */
-    public void sendUnicastData(Interactor publisher, UnicastData unicastData, Interactor subscriber) {
-        _repository.addPublisher(publisher, unicastData.getFeed(), unicastData.getTopic());
+    public void sendUnicastData(Interactor publisher, UnicastData unicastData, Interactor subscriber, int feedId, int topicId) {
+        _repository.addPublisher(publisher, feedId, topicId);
+        // A pooled message is sent in the buffer it was received in.
+        Message message = unicastData instanceof PooledMessage ? ((PooledMessage)unicastData).getEncoded().retain() : unicastData;
         try {
-			subscriber.sendMessage(unicastData);
+			subscriber.sendMessage(message);
 		} catch (InterruptedException error) {
+			EncodedMessage.release(message);
 			logger.log(Level.WARNING, "Failed to send unicast data from " + publisher + " to " + subscriber, error);
 		}
     }
 
     /**
      * Send data to all subscribers.
+     * 
+     * The data is encoded once for each format and the encoded message is
+     * shared by the write queues of all the subscribers using that format.
+     * Subscribers which support aliases receive the data with the alias of
+     * the feed and topic, when the topic has one. A frame is forwarded untouched to the subscribers
+     * which accept frames, and is only decoded for the others. Data decoded
+     * into a pooled buffer is sent in that buffer to the other subscribers.
+     * 
      * @param publisher The publisher.
      * @param subscribers The subscribers to receive the data.
      * @param multicastData The data.
+     * @param alias The registration of the alias of the feed and topic, or null if the topic has none.
+     * @param feedId The identifier of the feed.
+     * @param topicId The identifier of the topic.
      */
-    public void sendMulticastData(Interactor publisher, List<Interactor> subscribers, MulticastData multicastData) {
-        for (Interactor subscriber : subscribers) {
-			sendMulticastData(publisher, subscriber, multicastData);
+    public void sendMulticastData(Interactor publisher, Interactor[] subscribers, MulticastData multicastData, AliasRegistration alias, int feedId, int topicId) {
+    	if (subscribers.length == 0) {
+    		return;
+    	}
+
+        if (publisher != null)
+            _repository.addPublisher(publisher, feedId, topicId);
+
+        MulticastFrame multicastFrame = multicastData instanceof MulticastFrame ? (MulticastFrame)multicastData : null;
+        EncodedMessage encodedAlias = null, encodedFrame = null, encodedMessage = null;
+        try {
+	        for (Interactor subscriber : subscribers) {
+	        	if (alias != null && subscriber.supports(Handshake.FEATURE_ALIASES)) {
+	        		if (encodedAlias == null) {
+	        			encodedAlias = EncodedMessage.encode(new AliasedData(alias, multicastData.isImage(), multicastData.getData()));
+	        		}
+	        		sendMulticastData(publisher, subscriber, encodedAlias);
+	        	} else if (multicastFrame != null && subscriber.supports(Handshake.FEATURE_MULTICAST_FRAMES)) {
+	        		if (encodedFrame == null) {
+	        			byte[] frame = multicastFrame.getFrame();
+	        			encodedFrame = new EncodedMessage(multicastFrame, frame, frame.length, null);
+	        		}
+	        		sendMulticastData(publisher, subscriber, encodedFrame);
+	        	} else {
+	        		if (encodedMessage == null) {
+	        			if (multicastData instanceof PooledMessage) {
+	        				encodedMessage = ((PooledMessage)multicastData).getEncoded().retain();
+	        			} else {
+	        				encodedMessage = EncodedMessage.encode(multicastFrame == null ? multicastData : multicastFrame.toMulticastData());
+	        			}
+	        		}
+	        		sendMulticastData(publisher, subscriber, encodedMessage);
+	        	}
+	        }
+        } catch (IOException error) {
+			logger.log(Level.WARNING, "Failed to encode multicast data from " + publisher, error);
+        } finally {
+        	if (encodedAlias != null) {
+        		encodedAlias.release();
+        	}
+        	if (encodedFrame != null) {
+        		encodedFrame.release();
+        	}
+        	if (encodedMessage != null) {
+        		encodedMessage.release();
+        	}
         }
     }
 
-    private void sendMulticastData(Interactor publisher, Interactor subscriber, MulticastData multicastData) {
-        if (publisher != null)
-            _repository.addPublisher(publisher, multicastData.getFeed(), multicastData.getTopic());
+    private void sendMulticastData(Interactor publisher, Interactor subscriber, EncodedMessage encodedMessage) {
+    	encodedMessage.retain();
         try {
-			subscriber.sendMessage(multicastData);
+			subscriber.sendMessage(encodedMessage);
 		} catch (InterruptedException error) {
+			encodedMessage.release();
 			logger.log(Level.WARNING, "Failed to send multicast data from " + publisher + " to " + subscriber, error);
 		}
     }
@@ -1,37 +1,99 @@
 package net.jetblack.feedbus.distributor.publishers;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import net.jetblack.feedbus.distributor.interactors.Interactor;
 import net.jetblack.feedbus.messages.FeedTopic;
-import net.jetblack.feedbus.util.TwoWaySet;
+import net.jetblack.feedbus.util.IntObjectMap;
+import net.jetblack.feedbus.util.SymbolTable;
 
 /**
  * The publisher repository.
+ *
+ * Feeds and topics are held by their symbol identifiers, so recording a
+ * publisher which has already published on a topic makes no allocation.
  */
 public class PublisherRepository {
 
-    private final TwoWaySet<FeedTopic, Interactor> _topicsAndPublishers = new TwoWaySet<FeedTopic, Interactor>();
+    // Feed->Topic->Publishers.
+    private final IntObjectMap<IntObjectMap<Set<Interactor>>> _publishers = new IntObjectMap<IntObjectMap<Set<Interactor>>>();
+    // Publisher->Feed and topic keys.
+    private final Map<Interactor, Set<Long>> _feedTopicsByPublisher = new HashMap<Interactor, Set<Long>>();
+    private final SymbolTable _symbols;
+
+    /**
+     * Construct the repository.
+     * @param symbols The symbol table holding the feed and topic names.
+     */
+    public PublisherRepository(SymbolTable symbols) {
+    	_symbols = symbols;
+    }
 
     /**
      * Add a publisher.
      * @param publisher The publisher.
-     * @param feed The feed on which it has published.
-     * @param topic The topic on which it has published.
+     * @param feed The identifier of the feed on which it has published.
+     * @param topic The identifier of the topic on which it has published.
      */
-    public void addPublisher(Interactor publisher, String feed, String topic) {
-        _topicsAndPublishers.addSecondAndFirst(publisher, new FeedTopic(feed, topic));
+    public void addPublisher(Interactor publisher, int feed, int topic) {
+    	IntObjectMap<Set<Interactor>> topicPublishers = _publishers.get(feed);
+    	if (topicPublishers == null) {
+    		_publishers.put(feed, topicPublishers = new IntObjectMap<Set<Interactor>>());
+    	}
+
+    	Set<Interactor> publishers = topicPublishers.get(topic);
+    	if (publishers == null) {
+    		topicPublishers.put(topic, publishers = new HashSet<Interactor>());
+    	} else if (publishers.contains(publisher)) {
+    		return;
+    	}
+
+    	publishers.add(publisher);
+
+    	Set<Long> feedTopics = _feedTopicsByPublisher.get(publisher);
+    	if (feedTopics == null) {
+    		_feedTopicsByPublisher.put(publisher, feedTopics = new HashSet<Long>());
+    	}
+    	feedTopics.add(toKey(feed, topic));
     }
 
     /**
      * Remove a publisher.
      * @param publisher The publisher to remove.
-     * @return true if topics were removed.
+     * @return The feeds and topics which no longer have a publisher.
      */
     public Set<FeedTopic> removePublisher(Interactor publisher) {
-    	Set<FeedTopic> removedTopics = _topicsAndPublishers.removeSecond(publisher);
-        return removedTopics != null ? removedTopics : new HashSet<FeedTopic>();
+    	Set<FeedTopic> topicsWithoutPublishers = new HashSet<FeedTopic>();
+
+    	Set<Long> feedTopics = _feedTopicsByPublisher.remove(publisher);
+    	if (feedTopics == null) {
+    		return topicsWithoutPublishers;
+    	}
+
+    	for (long key : feedTopics) {
+    		int feed = (int)(key >>> 32), topic = (int)key;
+
+    		IntObjectMap<Set<Interactor>> topicPublishers = _publishers.get(feed);
+    		Set<Interactor> publishers = topicPublishers.get(topic);
+    		publishers.remove(publisher);
+    		if (!publishers.isEmpty()) {
+    			continue;
+    		}
+
+    		topicPublishers.remove(topic);
+    		if (topicPublishers.isEmpty()) {
+    			_publishers.remove(feed);
+    		}
+    		topicsWithoutPublishers.add(new FeedTopic(_symbols.getSymbol(feed), _symbols.getSymbol(topic)));
+    	}
+
+        return topicsWithoutPublishers;
     }
 
+    private static long toKey(int feed, int topic) {
+    	return ((long)feed << 32) | (topic & 0xFFFFFFFFL);
+    }
 }
@@ -0,0 +1,59 @@
+package net.jetblack.feedbus.distributor.publishers;
+
+import java.util.BitSet;
+
+import net.jetblack.feedbus.messages.AliasRegistration;
+
+/**
+ * The aliases the distributor uses for feeds and topics when sending data to
+ * clients which support aliases.
+ *
+ * An alias is shared by every connection, so aliased data is encoded once
+ * however many subscribers receive it. The alias is held with the routing
+ * state of its topic, and is freed for reuse when the topic is removed. Each
+ * connection is sent the registration of an alias before the first data which
+ * uses it, and again if the alias has since been given to another topic.
+ */
+public class TopicAliases {
+
+	private final BitSet _allocated = new BitSet();
+	private int _size;
+
+	/**
+	 * Assign the lowest free alias to a feed and topic.
+	 *
+	 * The registration is shared by all the data sent with the alias, so a
+	 * connection can tell by its identity whether it has been sent.
+	 *
+	 * @param feed The name of the feed.
+	 * @param topic The name of the topic.
+	 * @return The registration of the alias.
+	 */
+	public synchronized AliasRegistration allocate(String feed, String topic) {
+		int alias = _allocated.nextClearBit(0);
+		_allocated.set(alias);
+		++_size;
+		return new AliasRegistration(alias, feed, topic);
+	}
+
+	/**
+	 * Free an alias for reuse.
+	 *
+	 * @param alias The alias.
+	 */
+	public synchronized void free(int alias) {
+		if (_allocated.get(alias)) {
+			_allocated.clear(alias);
+			--_size;
+		}
+	}
+
+	/**
+	 * Gets the number of aliases which are assigned.
+	 *
+	 * @return The number of aliases.
+	 */
+	public synchronized int size() {
+		return _size;
+	}
+}
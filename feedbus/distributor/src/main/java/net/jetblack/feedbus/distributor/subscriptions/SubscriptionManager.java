@@ -17,17 +17,17 @@ import net.jetblack.feedbus.distributor.notifiers.NotificationEventArgs;
 import net.jetblack.feedbus.distributor.notifiers.NotificationManager;
 import net.jetblack.feedbus.distributor.publishers.PublisherManager;
 import net.jetblack.feedbus.distributor.publishers.StalePublisherEventArgs;
+import net.jetblack.feedbus.distributor.publishers.TopicAliases;
 import net.jetblack.feedbus.messages.FeedTopic;
 import net.jetblack.feedbus.messages.ForwardedSubscriptionRequest;
 import net.jetblack.feedbus.messages.MonitorRequest;
+import net.jetblack.feedbus.messages.MulticastBatch;
 import net.jetblack.feedbus.messages.MulticastData;
 import net.jetblack.feedbus.messages.SubscriptionRequest;
 import net.jetblack.feedbus.messages.UnicastData;
-import net.jetblack.feedbus.util.Enumerable;
 import net.jetblack.feedbus.util.EventListener;
 import net.jetblack.feedbus.util.KeyValuePair;
-import net.jetblack.feedbus.util.StringComparator;
-import net.jetblack.feedbus.util.invokable.UnaryFunction;
+import net.jetblack.feedbus.util.SymbolTable;
 
 /**
  * The subscription manager.
@@ -37,26 +37,32 @@ public class SubscriptionManager {
 	private static final Logger logger = Logger.getLogger(SubscriptionManager.class.getName());
 
 	private final SubscriptionRepository _repository;
+	private final InteractorManager _interactorManager;
 	private final NotificationManager _notificationManager;
 	private final PublisherManager _publisherManager;
+	private final SymbolTable _symbols;
 
 	/**
 	 * Constructs the manager.
 	 * 
 	 * @param interactorManager   The interactor manager.
 	 * @param notificationManager The notification manager.
+	 * @param symbols             The symbol table holding the feed and topic names.
+	 * @param aliases             The aliases used when sending data to clients.
 	 * @throws NotCompliantMBeanException
 	 * @throws MBeanRegistrationException
 	 * @throws InstanceAlreadyExistsException
 	 * @throws MalformedObjectNameException
 	 */
-	public SubscriptionManager(InteractorManager interactorManager, NotificationManager notificationManager)
+	public SubscriptionManager(InteractorManager interactorManager, NotificationManager notificationManager, SymbolTable symbols, TopicAliases aliases)
 			throws MalformedObjectNameException, InstanceAlreadyExistsException, MBeanRegistrationException,
 			NotCompliantMBeanException {
+		_interactorManager = interactorManager;
 		_notificationManager = notificationManager;
+		_symbols = symbols;
 
-		_repository = new SubscriptionRepository();
-		_publisherManager = new PublisherManager(interactorManager);
+		_repository = new SubscriptionRepository(symbols, aliases);
+		_publisherManager = new PublisherManager(interactorManager, symbols);
 
 		interactorManager.InteractorClosed.add(new EventListener<InteractorClosedEventArgs>() {
 			@Override
@@ -78,7 +84,7 @@ public class SubscriptionManager {
 			public void onEvent(NotificationEventArgs event) {
 				// Find the subscribers whoes subscriptions match the pattern.
 				for (KeyValuePair<String, Set<Interactor>> matchingSubscriptions : _repository
-						.getSubscribersToFeed(event.getFeed())) {
+						.getSubscribersToFeed(event.getFeedId())) {
 					// Tell the requestor about subscribers that are interested in this topic.
 					for (Interactor subscriber : matchingSubscriptions.Value) {
 						try {
@@ -101,8 +107,8 @@ public class SubscriptionManager {
 					MulticastData staleMessage = new MulticastData(staleFeedTopic.getFeed(), staleFeedTopic.getTopic(),
 							true, null);
 
-					for (Interactor subscriber : _repository.GetSubscribersToFeedAndTopic(staleFeedTopic.getFeed(),
-							staleFeedTopic.getTopic())) {
+					for (Interactor subscriber : _repository.GetSubscribersToFeedAndTopic(_symbols.lookup(staleFeedTopic.getFeed()),
+							_symbols.lookup(staleFeedTopic.getTopic()))) {
 						try {
 							subscriber.sendMessage(staleMessage);
 						} catch (InterruptedException e) {
@@ -122,24 +128,26 @@ public class SubscriptionManager {
 	 * 
 	 * @param subscriber          The subscriber.
 	 * @param subscriptionRequest The request.
+	 * @param feedId              The identifier of the feed.
+	 * @param topicId             The identifier of the topic.
 	 */
-	public void requestSubscription(Interactor subscriber, SubscriptionRequest subscriptionRequest) {
+	public void requestSubscription(Interactor subscriber, SubscriptionRequest subscriptionRequest, int feedId, int topicId) {
 		logger.info("Received subscription from " + subscriber + " on \"" + subscriptionRequest + "\"");
 
 		if (subscriptionRequest.isAdd()) {
 			_repository.addSubscription(
 					subscriber, 
-					subscriptionRequest.getFeed(), 
-					subscriptionRequest.getTopic());
-		} else {
+					feedId, 
+					topicId);
+		} else if (topicId != SymbolTable.NONE) {
 			_repository.removeSubscription(
 					subscriber, 
-					subscriptionRequest.getFeed(), 
-					subscriptionRequest.getTopic(),
+					feedId, 
+					topicId,
 					false);
 		}
 
-		_notificationManager.forwardSubscription(new ForwardedSubscriptionRequest(subscriber.getId(),
+		_notificationManager.forwardSubscription(feedId, new ForwardedSubscriptionRequest(subscriber.getId(),
 				subscriptionRequest.getFeed(), subscriptionRequest.getTopic(), subscriptionRequest.isAdd()));
 	}
 
@@ -148,50 +156,29 @@ public class SubscriptionManager {
 	 * 
 	 * @param monitor        The requester.
 	 * @param monitorRequest The request.
+	 * @param feedId         The identifier of the feed.
 	 */
-	public void requestMonitor(Interactor monitor, MonitorRequest monitorRequest) {
+	public void requestMonitor(Interactor monitor, MonitorRequest monitorRequest, int feedId) {
 		logger.info("Received monitor from " + monitor + " on \"" + monitorRequest + "\"");
 
 		if (monitorRequest.isAdd()) {
-			_repository.addMonitor(monitor, monitorRequest.getFeed());
+			_repository.addMonitor(monitor, feedId);
 		} else {
-			_repository.removeMonitor(monitor, monitorRequest.getFeed(), false);
+			_repository.removeMonitor(monitor, feedId, false);
 		}
 	}
 
 	private void closeInteractor(Interactor interactor) {
 		logger.fine("Removing subscriptions for " + interactor);
 
-		// Remove the subscriptions
-		List<FeedTopic> feedTopics = _repository.findFeedTopicsBySubscriber(interactor);
-		for (FeedTopic feedTopic : feedTopics) {
-			_repository.removeSubscription(interactor, feedTopic.getFeed(), feedTopic.getTopic(), true);
-		}
-
-		Enumerable<String> monitorEnumerator = Enumerable.create(feedTopics)
-				.select(new UnaryFunction<FeedTopic, String>() {
-					@Override
-					public String invoke(FeedTopic arg) {
-						return arg.getFeed();
-					}
-				}).distinct(StringComparator.Default);
-
-		for (String feed : monitorEnumerator) {
-			_repository.removeMonitor(interactor, feed, true);
-		}
+		// Remove the subscriptions and monitors.
+		List<FeedTopic> feedTopics = _repository.removeInteractor(interactor);
 
-		Enumerable<ForwardedSubscriptionRequest> subscriptionEnumerator = Enumerable.create(feedTopics)
-				.select(new UnaryFunction<FeedTopic, ForwardedSubscriptionRequest>() {
-					@Override
-					public ForwardedSubscriptionRequest invoke(FeedTopic feedTopic) {
-						return new ForwardedSubscriptionRequest(interactor.getId(), feedTopic.getFeed(),
-								feedTopic.getTopic(), false);
-					}
-				});
 		// Inform those interested that this interactor is no longer subscribed to these
 		// topics.
-		for (ForwardedSubscriptionRequest subscriptionRequest : subscriptionEnumerator) {
-			_notificationManager.forwardSubscription(subscriptionRequest);
+		for (FeedTopic feedTopic : feedTopics) {
+			_notificationManager.forwardSubscription(_symbols.lookup(feedTopic.getFeed()),
+					new ForwardedSubscriptionRequest(interactor.getId(), feedTopic.getFeed(), feedTopic.getTopic(), false));
 		}
 	}
 
@@ -200,22 +187,17 @@ public class SubscriptionManager {
 	 * 
 	 * @param publisher   The publisher
 	 * @param unicastData The data.
+	 * @param feedId      The identifier of the feed.
+	 * @param topicId     The identifier of the topic.
 	 */
-	public void sendUnicastData(Interactor publisher, UnicastData unicastData) {
-		// Can we find this client in the subscribers to this topic?
-		Interactor subscriber = Enumerable
-				.create(_repository.GetSubscribersToFeedAndTopic(unicastData.getFeed(), unicastData.getTopic()))
-				.firstOrDefault(new UnaryFunction<Interactor, Boolean>() {
-					@Override
-					public Boolean invoke(Interactor arg) {
-						return arg.getId().equals(unicastData.getClientId());
-					}
-				});
-
-		if (subscriber == null)
+	public void sendUnicastData(Interactor publisher, UnicastData unicastData, int feedId, int topicId) {
+		// Is this client connected and subscribed to the topic?
+		Interactor subscriber = _interactorManager.findInteractor(unicastData.getClientId());
+		topicId = getRecipientTopicId(feedId, topicId, unicastData.getTopic());
+		if (subscriber == null || topicId == SymbolTable.NONE || !_repository.isSubscribed(subscriber, feedId, topicId))
 			return;
 
-		_publisherManager.sendUnicastData(publisher, unicastData, subscriber);
+		_publisherManager.sendUnicastData(publisher, unicastData, subscriber, feedId, topicId);
 	}
 
 	/**
@@ -223,10 +205,54 @@ public class SubscriptionManager {
 	 * 
 	 * @param publisher     The publisher.
 	 * @param multicastData The data.
+	 * @param feedId        The identifier of the feed.
+	 * @param topicId       The identifier of the topic.
+	 */
+	public void sendMulticastData(Interactor publisher, MulticastData multicastData, int feedId, int topicId) {
+		topicId = getRecipientTopicId(feedId, topicId, multicastData.getTopic());
+		if (topicId == SymbolTable.NONE) {
+			return;
+		}
+
+		Interactor[] subscribers = _repository.GetSubscribersToFeedAndTopic(feedId, topicId);
+		if (subscribers.length == 0) {
+			return;
+		}
+		_publisherManager.sendMulticastData(publisher, subscribers, multicastData, _repository.getAlias(feedId, topicId), feedId, topicId);
+	}
+
+	/**
+	 * Gets the identifier of the topic of data which may have recipients.
+	 * 
+	 * The interactors only look up the identifiers of data, so a topic which
+	 * has never been subscribed to has none. It is interned here only when a
+	 * pattern or a monitor of the feed may receive it.
+	 * 
+	 * @param feedId  The identifier of the feed.
+	 * @param topicId The identifier of the topic.
+	 * @param topic   The name of the topic.
+	 * @return The identifier of the topic, or SymbolTable.NONE if the data can have no recipients.
 	 */
-	public void sendMulticastData(Interactor publisher, MulticastData multicastData) {
-		List<Interactor> subscribers = _repository.GetSubscribersToFeedAndTopic(multicastData.getFeed(),
-				multicastData.getTopic());
-		_publisherManager.sendMulticastData(publisher, subscribers, multicastData);
+	private int getRecipientTopicId(int feedId, int topicId, String topic) {
+		if (feedId == SymbolTable.NONE || topicId != SymbolTable.NONE) {
+			// A feed without an identifier has never been subscribed to.
+			return feedId == SymbolTable.NONE ? SymbolTable.NONE : topicId;
+		}
+
+		return _repository.hasPatternsOrMonitors(feedId) ? _symbols.intern(topic) : SymbolTable.NONE;
+	}
+
+	/**
+	 * Send each entry of a batch to its subscribers.
+	 * 
+	 * @param publisher The publisher.
+	 * @param batch     The batch.
+	 * @param feedIds   The identifiers of the feeds of the entries.
+	 * @param topicIds  The identifiers of the topics of the entries.
+	 */
+	public void sendMulticastBatch(Interactor publisher, MulticastBatch batch, int[] feedIds, int[] topicIds) {
+		for (int i = 0; i < batch.size(); ++i) {
+			sendMulticastData(publisher, batch.getEntry(i), feedIds[i], topicIds[i]);
+		}
 	}
 }
@@ -2,52 +2,101 @@ package net.jetblack.feedbus.distributor.subscriptions;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import net.jetblack.feedbus.util.Enumerable;
+import net.jetblack.feedbus.util.IntObjectMap;
 import net.jetblack.feedbus.util.KeyValuePair;
-import net.jetblack.feedbus.util.invokable.UnaryFunction;
+import net.jetblack.feedbus.util.SymbolTable;
 import net.jetblack.feedbus.distributor.interactors.Interactor;
+import net.jetblack.feedbus.distributor.publishers.TopicAliases;
+import net.jetblack.feedbus.messages.AliasRegistration;
 import net.jetblack.feedbus.messages.FeedTopic;
 
-import java.util.Map.Entry;
-
 /**
  * The subscription repository.
+ *
+ * Feeds and topics are held by their symbol identifiers, so finding the
+ * subscribers to a topic takes two integer lookups. Each topic caches an
+ * array of its subscribers followed by the monitors of its feed. The array is
+ * discarded when the subscriptions or monitors change and rebuilt on the next
+ * lookup, so publishing to an unchanged topic makes no allocation.
+ *
+ * The feeds and topics held by each interactor are also indexed, so removing
+ * an interactor only visits its own subscriptions and monitors.
+ *
+ * A subscription may be to a topic pattern, as described by {@link TopicTrie}.
+ * The patterns which match a topic are found when its array is rebuilt, and
+ * the array for a topic with no exact subscriptions is cached by the feed, so
+ * the cost of matching is not paid on every publish.
+ *
+ * A topic with subscriptions of its own also holds the alias used to send its
+ * data, which is assigned when the data is first sent and freed when the last
+ * subscription to the topic is removed.
  */
 public class SubscriptionRepository {
 
-    // Feed->Topic->Interactor->SubscriptionCount.
-    private final Map<String, Map<String, Map<Interactor, SubscriptionState>>> _subscriptions = new HashMap<String, Map<String, Map<Interactor, SubscriptionState>>>();
-    // Feed->Topic->Interactor->SubscriptionCount.
-    private final Map<String, Map<Interactor, SubscriptionState>> _monitors = new HashMap<String, Map<Interactor, SubscriptionState>>();
+	private static final Interactor[] NO_INTERACTORS = new Interactor[0];
+	private static final int MAX_CACHED_MATCHES = 64 * 1024;
+
+    // Feed->(Topic->Interactor->SubscriptionCount, Interactor->MonitorCount).
+    private final IntObjectMap<FeedSubscriptions> _feeds = new IntObjectMap<FeedSubscriptions>();
+    // Subscriber->Feed and topic keys.
+    private final Map<Interactor, Set<Long>> _feedTopicsBySubscriber = new HashMap<Interactor, Set<Long>>();
+    // Monitor->Feeds.
+    private final Map<Interactor, Set<Integer>> _feedsByMonitor = new HashMap<Interactor, Set<Integer>>();
+    private final SymbolTable _symbols;
+    private final TopicAliases _aliases;
+
+    /**
+     * Construct the repository.
+     *
+     * @param symbols The symbol table holding the feed and topic names.
+     * @param aliases The aliases used when sending data to clients.
+     */
+    public SubscriptionRepository(SymbolTable symbols, TopicAliases aliases) {
+    	_symbols = symbols;
+    	_aliases = aliases;
+    }
 
     /**
      * Add a subscription.
-     * 
+     *
      * @param subscriber The subscriber.
-     * @param feed The feed name.
-     * @param topic The topic name.
+     * @param feed The feed identifier.
+     * @param topic The topic identifier.
      */
-    public void addSubscription(Interactor subscriber, String feed, String topic) {
+    public void addSubscription(Interactor subscriber, int feed, int topic) {
         // Find topic subscriptions for this feed.
-        Map<String, Map<Interactor, SubscriptionState>> topicSubscriptions = _subscriptions.get(feed);
-        if (topicSubscriptions == null) {
-            _subscriptions.put(feed, topicSubscriptions = new HashMap<String, Map<Interactor, SubscriptionState>>());
+        FeedSubscriptions feedSubscriptions = _feeds.get(feed);
+        if (feedSubscriptions == null) {
+            _feeds.put(feed, feedSubscriptions = new FeedSubscriptions());
         }
 
-        // Find the list of interactors that have subscribed to this topic.
-        Map<Interactor, SubscriptionState> subscribersForTopic = topicSubscriptions.get(topic);
+        // Find the list of interactors that have subscribed to this topic or pattern.
+        boolean isPattern = TopicTrie.isPattern(_symbols.getSymbol(topic));
+        TopicSubscriptions subscribersForTopic = feedSubscriptions.getTopics(isPattern).get(topic);
         if (subscribersForTopic == null) {
-            topicSubscriptions.put(topic, subscribersForTopic = new HashMap<Interactor, SubscriptionState>());
+            feedSubscriptions.getTopics(isPattern).put(topic, subscribersForTopic = new TopicSubscriptions());
+            if (isPattern) {
+            	feedSubscriptions.PatternTrie.put(_symbols.getSymbol(topic), subscribersForTopic);
+            }
         }
 
         // Find this interactor.
-        SubscriptionState subscriptionState = subscribersForTopic.get(subscriber);
+        SubscriptionState subscriptionState = subscribersForTopic.Subscribers.get(subscriber);
         if (subscriptionState == null) {
-            subscribersForTopic.put(subscriber, subscriptionState = new SubscriptionState());
+            subscribersForTopic.Subscribers.put(subscriber, subscriptionState = new SubscriptionState());
+            feedSubscriptions.invalidateSnapshots(subscribersForTopic, isPattern);
+
+            Set<Long> feedTopics = _feedTopicsBySubscriber.get(subscriber);
+            if (feedTopics == null) {
+            	_feedTopicsBySubscriber.put(subscriber, feedTopics = new HashSet<Long>());
+            }
+            feedTopics.add(toKey(feed, topic));
         }
 
         // Increment the subscription count.
@@ -57,56 +106,79 @@ public class SubscriptionRepository {
     /**
      * Remove a subscription.
      * @param subscriber The subscriber.
-     * @param feed The feed name.
-     * @param topic The topic name.
+     * @param feed The feed identifier.
+     * @param topic The topic identifier.
      * @param removeAll If true remove all subscriptions.
      */
-    public void removeSubscription(Interactor subscriber, String feed, String topic, boolean removeAll) {
+    public void removeSubscription(Interactor subscriber, int feed, int topic, boolean removeAll) {
         // Can we find topic subscriptions this feed?
-        Map<String, Map<Interactor, SubscriptionState>> topicSubscriptions = _subscriptions.get(feed);
-        if (topicSubscriptions == null) {
+        FeedSubscriptions feedSubscriptions = _feeds.get(feed);
+        if (feedSubscriptions == null) {
             return;
         }
 
-        // Can we find subscribers for this topic?
-        Map<Interactor, SubscriptionState> subscribersForTopic = topicSubscriptions.get(topic); 
+        // Can we find subscribers for this topic or pattern?
+        boolean isPattern = TopicTrie.isPattern(_symbols.getSymbol(topic));
+        TopicSubscriptions subscribersForTopic = feedSubscriptions.getTopics(isPattern).get(topic);
         if (subscribersForTopic == null) {
             return;
         }
 
         // Has this subscriber registered an interest in the topic?
-        SubscriptionState subscriptionState = subscribersForTopic.get(subscriber);
+        SubscriptionState subscriptionState = subscribersForTopic.Subscribers.get(subscriber);
         if (subscriptionState == null)
             return;
 
-        if (removeAll || --subscriptionState.Count == 0)
-            subscribersForTopic.remove(subscriber);
+        if (removeAll || --subscriptionState.Count == 0) {
+            subscribersForTopic.Subscribers.remove(subscriber);
+            feedSubscriptions.invalidateSnapshots(subscribersForTopic, isPattern);
+
+            Set<Long> feedTopics = _feedTopicsBySubscriber.get(subscriber);
+            feedTopics.remove(toKey(feed, topic));
+            if (feedTopics.isEmpty()) {
+            	_feedTopicsBySubscriber.remove(subscriber);
+            }
+        }
 
         // If there are no subscribers left on this topic, remove it from the feed.
-        if (subscribersForTopic.isEmpty())
-            topicSubscriptions.remove(topic);
+        if (subscribersForTopic.Subscribers.isEmpty()) {
+            feedSubscriptions.getTopics(isPattern).remove(topic);
+            if (isPattern) {
+            	feedSubscriptions.PatternTrie.remove(_symbols.getSymbol(topic));
+            }
+            if (subscribersForTopic.Alias != null) {
+            	_aliases.free(subscribersForTopic.Alias.getAlias());
+            }
+        }
 
-        // If there are no topics left in the feed, remove it from the cache.
-        if (topicSubscriptions.isEmpty())
-            _subscriptions.remove(feed);
+        // If there are no topics or monitors left in the feed, remove it from the cache.
+        if (feedSubscriptions.isEmpty())
+            _feeds.remove(feed);
     }
 
     /**
      * Add a monitor to the feed.
      * @param monitor The interactor.
-     * @param feed The feed name.
+     * @param feed The feed identifier.
      */
-    public void addMonitor(Interactor monitor, String feed) {
+    public void addMonitor(Interactor monitor, int feed) {
         // Find monitors to the feed.
-        Map<Interactor, SubscriptionState> feedMonitors = _monitors.get(feed); 
-        if (feedMonitors == null) {
-            _monitors.put(feed, feedMonitors = new HashMap<Interactor, SubscriptionState>());
+        FeedSubscriptions feedSubscriptions = _feeds.get(feed);
+        if (feedSubscriptions == null) {
+            _feeds.put(feed, feedSubscriptions = new FeedSubscriptions());
         }
 
         // Find the subscription state of this monitor.
-        SubscriptionState subscriptionState = feedMonitors.get(monitor);
+        SubscriptionState subscriptionState = feedSubscriptions.Monitors.get(monitor);
         if (subscriptionState == null) {
-            feedMonitors.put(monitor, subscriptionState = new SubscriptionState());
+            feedSubscriptions.Monitors.put(monitor, subscriptionState = new SubscriptionState());
+            feedSubscriptions.invalidateSnapshots();
+
+            Set<Integer> feeds = _feedsByMonitor.get(monitor);
+            if (feeds == null) {
+            	_feedsByMonitor.put(monitor, feeds = new HashSet<Integer>());
+            }
+            feeds.add(feed);
         }
 
         // Increment the subscription count.
@@ -116,29 +188,36 @@ public class SubscriptionRepository {
     /**
      * Remove the monitor to a feed.
      * @param monitor The interactor.
-     * @param feed The feed name.
+     * @param feed The feed identifier.
      * @param removeAll If true remove all monitors.
      */
-    public void removeMonitor(Interactor monitor, String feed, boolean removeAll) {
+    public void removeMonitor(Interactor monitor, int feed, boolean removeAll) {
         // Can we find monitors for this feed in the cache?
-        Map<Interactor, SubscriptionState> feedMonitors = _monitors.get(feed);
-        if (feedMonitors == null) {
+        FeedSubscriptions feedSubscriptions = _feeds.get(feed);
+        if (feedSubscriptions == null) {
             return;
         }
 
         // Does this monitor have a subscription state?
-        SubscriptionState subscriptionState = feedMonitors.get(monitor);
+        SubscriptionState subscriptionState = feedSubscriptions.Monitors.get(monitor);
         if (subscriptionState == null) {
             return;
         }
 
         if (removeAll || --subscriptionState.Count == 0) {
-            feedMonitors.remove(monitor);
+            feedSubscriptions.Monitors.remove(monitor);
+            feedSubscriptions.invalidateSnapshots();
+
+            Set<Integer> feeds = _feedsByMonitor.get(monitor);
+            feeds.remove(feed);
+            if (feeds.isEmpty()) {
+            	_feedsByMonitor.remove(monitor);
+            }
         }
 
-        // If there are no topics left in the feed, remove it from the cache.
-        if (feedMonitors.isEmpty()) {
-            _monitors.remove(feed);
+        // If there are no topics or monitors left in the feed, remove it from the cache.
+        if (feedSubscriptions.isEmpty()) {
+            _feeds.remove(feed);
         }
     }
 
@@ -148,89 +227,265 @@ public class SubscriptionRepository {
      * @return The subscribed feeds and topics.
      */
     public List<FeedTopic> findFeedTopicsBySubscriber(Interactor subscriber) {
-    	
-    	return Enumerable.create(_subscriptions)
-    		.select(new UnaryFunction<Entry<String, Map<String, Map<Interactor,SubscriptionState>>>, Enumerable<FeedTopic>>() {
-
-				@Override
-				public Enumerable<FeedTopic> invoke(
-						Entry<String, Map<String, Map<Interactor, SubscriptionState>>> topicCache) {
-					return Enumerable.create(topicCache.getValue())
-							.where(new UnaryFunction<Map.Entry<String,Map<Interactor,SubscriptionState>>, Boolean>() {
-								@Override
-								public Boolean invoke(Entry<String, Map<Interactor, SubscriptionState>> arg) {
-									return arg.getValue().containsKey(subscriber);
-								}
-							})
-							.select(new UnaryFunction<Map.Entry<String,Map<Interactor,SubscriptionState>>, FeedTopic>() {
-								@Override
-								public FeedTopic invoke(Entry<String, Map<Interactor, SubscriptionState>> arg) {
-									return new FeedTopic(topicCache.getKey(), arg.getKey());
-								}
-							});
-				}
-    		})
-    		.selectMany(new UnaryFunction<Enumerable<FeedTopic>, Enumerable<FeedTopic>>() {
-				@Override
-				public Enumerable<FeedTopic> invoke(Enumerable<FeedTopic> arg) {
-					return arg;
-				}
-			}).toList(new ArrayList<FeedTopic>());
+    	List<FeedTopic> feedTopics = new ArrayList<FeedTopic>();
+
+    	Set<Long> keys = _feedTopicsBySubscriber.get(subscriber);
+    	if (keys != null) {
+	    	for (long key : keys) {
+	    		feedTopics.add(new FeedTopic(_symbols.getSymbol(getFeed(key)), _symbols.getSymbol(getTopic(key))));
+	    	}
+    	}
+
+    	return feedTopics;
+    }
+
+    /**
+     * Remove all the subscriptions and monitors of an interactor.
+     * @param interactor The interactor.
+     * @return The feeds and topics to which the interactor was subscribed.
+     */
+    public List<FeedTopic> removeInteractor(Interactor interactor) {
+    	List<FeedTopic> feedTopics = findFeedTopicsBySubscriber(interactor);
+
+    	Set<Long> keys = _feedTopicsBySubscriber.get(interactor);
+    	if (keys != null) {
+    		for (long key : keys.toArray(new Long[keys.size()])) {
+    			removeSubscription(interactor, getFeed(key), getTopic(key), true);
+    		}
+    	}
+
+    	Set<Integer> feeds = _feedsByMonitor.get(interactor);
+    	if (feeds != null) {
+    		for (int feed : feeds.toArray(new Integer[feeds.size()])) {
+    			removeMonitor(interactor, feed, true);
+    		}
+    	}
+
+    	return feedTopics;
     }
 
     /**
      * Get all subscribers to a given feed and topic.
-     * @param feed The feed name.
-     * @param topic The topic name.
-     * @return The subscribers.
+     *
+     * The array is shared and must not be modified.
+     *
+     * @param feed The feed identifier.
+     * @param topic The topic identifier.
+     * @return The subscribers to the topic, then the subscribers to matching patterns, then the monitors of the feed.
      */
-    public List<Interactor> GetSubscribersToFeedAndTopic(String feed, String topic) {
-    	List<Interactor> subscribers = new ArrayList<Interactor>();
-
-        // Look for subscriptions to this feed.
-        Map<String, Map<Interactor, SubscriptionState>> topicSubscriptions =_subscriptions.get(feed); 
-        if (topicSubscriptions != null) {
-            // Are there subscribers for this topic?
-            Map<Interactor, SubscriptionState> subscribersForTopic = topicSubscriptions.get(topic);
-            if (subscribersForTopic != null) {
-            	for (Interactor subscriber : subscribersForTopic.keySet()) {
-                    subscribers.add(subscriber);
-            	}
-            }
+    public Interactor[] GetSubscribersToFeedAndTopic(int feed, int topic) {
+        // Look for subscriptions or monitors to this feed.
+        FeedSubscriptions feedSubscriptions = _feeds.get(feed);
+        if (feedSubscriptions == null) {
+        	return NO_INTERACTORS;
+        }
+
+        // Are there subscribers for this topic?
+        TopicSubscriptions subscribersForTopic = feedSubscriptions.Topics.get(topic);
+        if (subscribersForTopic != null) {
+	        return feedSubscriptions.getSnapshot(topic, subscribersForTopic);
+        }
+
+        if (feedSubscriptions.Patterns.isEmpty()) {
+        	return feedSubscriptions.getMonitorSnapshot();
         }
 
-        // Look for monitors to this feed.
-        Map<Interactor, SubscriptionState> feedMonitors =_monitors.get(feed); 
-        if (feedMonitors != null) {
-        	for (Interactor subscriber : feedMonitors.keySet()) {
-                subscribers.add(subscriber);
+        // Find the subscribers to the patterns which match the topic.
+        Interactor[] matches = feedSubscriptions.Matches.get(topic);
+        if (matches == null) {
+        	if (feedSubscriptions.Matches.size() == MAX_CACHED_MATCHES) {
+        		feedSubscriptions.Matches.clear();
         	}
+        	feedSubscriptions.Matches.put(topic, matches = feedSubscriptions.createSnapshot(topic, null));
         }
+        return matches;
+    }
 
-        return subscribers;
+    /**
+     * Get the alias used to send data on a feed and topic, assigning one if necessary.
+     *
+     * Only a topic with subscriptions of its own has an alias, so one is not
+     * held for every topic which matches a pattern or is monitored.
+     *
+     * @param feed The feed identifier.
+     * @param topic The topic identifier.
+     * @return The registration of the alias, or null if the topic has no subscriptions of its own.
+     */
+    public AliasRegistration getAlias(int feed, int topic) {
+        FeedSubscriptions feedSubscriptions = _feeds.get(feed);
+        TopicSubscriptions subscribersForTopic = feedSubscriptions == null ? null : feedSubscriptions.Topics.get(topic);
+        if (subscribersForTopic == null) {
+        	return null;
+        }
+
+        if (subscribersForTopic.Alias == null) {
+        	subscribersForTopic.Alias = _aliases.allocate(_symbols.getSymbol(feed), _symbols.getSymbol(topic));
+        }
+        return subscribersForTopic.Alias;
+    }
+
+    /**
+     * Find whether data on a topic with no subscriptions of its own may still
+     * have recipients, through a pattern or by monitoring the feed.
+     * @param feed The feed identifier.
+     * @return True if the feed has pattern subscriptions or monitors.
+     */
+    public boolean hasPatternsOrMonitors(int feed) {
+        FeedSubscriptions feedSubscriptions = _feeds.get(feed);
+        return feedSubscriptions != null && !(feedSubscriptions.Patterns.isEmpty() && feedSubscriptions.Monitors.isEmpty());
+    }
+
+    /**
+     * Find whether an interactor receives the data for a feed and topic, either
+     * through a subscription to the topic or a matching pattern, or by monitoring the feed.
+     * @param interactor The interactor.
+     * @param feed The feed identifier.
+     * @param topic The topic identifier.
+     * @return True if the interactor is a subscriber or monitor.
+     */
+    public boolean isSubscribed(Interactor interactor, int feed, int topic) {
+        FeedSubscriptions feedSubscriptions = _feeds.get(feed);
+        if (feedSubscriptions == null) {
+        	return false;
+        }
+
+        TopicSubscriptions subscribersForTopic = feedSubscriptions.Topics.get(topic);
+        if ((subscribersForTopic != null && subscribersForTopic.Subscribers.containsKey(interactor))
+        		|| feedSubscriptions.Monitors.containsKey(interactor)) {
+        	return true;
+        }
+
+        for (TopicSubscriptions subscribersForPattern : feedSubscriptions.matchPatterns(topic)) {
+        	if (subscribersForPattern.Subscribers.containsKey(interactor)) {
+        		return true;
+        	}
+        }
+        return false;
     }
 
     /**
      * Get the subscribers to a feed.
-     * @param feed The feed name.
-     * @return Subscribers to the feed and the topics subscriber to.
+     * @param feed The feed identifier.
+     * @return Subscribers to the feed and the topics or patterns subscribed to.
      */
-    public List<KeyValuePair<String, Set<Interactor>>> getSubscribersToFeed(String feed) {
-    	List<KeyValuePair<String, Set<Interactor>>> subscribersToFeed = new ArrayList<KeyValuePair<String, Set<Interactor>>>(); 
-    	
+    public List<KeyValuePair<String, Set<Interactor>>> getSubscribersToFeed(int feed) {
+    	List<KeyValuePair<String, Set<Interactor>>> subscribersToFeed = new ArrayList<KeyValuePair<String, Set<Interactor>>>();
+
         // Can we find this feed in the cache?
-        Map<String, Map<Interactor, SubscriptionState>> topicCache =_subscriptions.get(feed); 
-        if (topicCache != null) {
-        	for (Entry<String, Map<Interactor, SubscriptionState>> x : topicCache.entrySet()) {
-        		subscribersToFeed.add(new KeyValuePair<String, Set<Interactor>>(x.getKey(), x.getValue().keySet()));
+        FeedSubscriptions feedSubscriptions = _feeds.get(feed);
+        if (feedSubscriptions != null) {
+        	for (IntObjectMap.Entry<TopicSubscriptions> x : feedSubscriptions.Topics) {
+        		subscribersToFeed.add(new KeyValuePair<String, Set<Interactor>>(_symbols.getSymbol(x.getKey()), x.getValue().Subscribers.keySet()));
+        	}
+        	for (IntObjectMap.Entry<TopicSubscriptions> x : feedSubscriptions.Patterns) {
+        		subscribersToFeed.add(new KeyValuePair<String, Set<Interactor>>(_symbols.getSymbol(x.getKey()), x.getValue().Subscribers.keySet()));
         	}
         }
 
         return subscribersToFeed;
     }
 
+    private static long toKey(int feed, int topic) {
+    	return ((long)feed << 32) | (topic & 0xFFFFFFFFL);
+    }
+
+    private static int getFeed(long key) {
+    	return (int)(key >>> 32);
+    }
+
+    private static int getTopic(long key) {
+    	return (int)key;
+    }
+
     private class SubscriptionState {
         public int Count;
     }
 
+    private class TopicSubscriptions {
+    	public final Map<Interactor, SubscriptionState> Subscribers = new HashMap<Interactor, SubscriptionState>();
+    	// The recipients of the topic, or null if they have changed.
+    	public Interactor[] Snapshot;
+    	// The generation of the feed when the snapshot was taken.
+    	public long SnapshotGeneration;
+    	// The alias used to send data on the topic, or null until data is sent.
+    	public AliasRegistration Alias;
+    }
+
+    private class FeedSubscriptions {
+    	public final IntObjectMap<TopicSubscriptions> Topics = new IntObjectMap<TopicSubscriptions>();
+    	public final IntObjectMap<TopicSubscriptions> Patterns = new IntObjectMap<TopicSubscriptions>();
+    	public final TopicTrie<TopicSubscriptions> PatternTrie = new TopicTrie<TopicSubscriptions>();
+    	public final Map<Interactor, SubscriptionState> Monitors = new HashMap<Interactor, SubscriptionState>();
+    	// Topic->Recipients, for topics with no exact subscriptions.
+    	public final IntObjectMap<Interactor[]> Matches = new IntObjectMap<Interactor[]>();
+    	// The monitors, or null if they have changed.
+    	public Interactor[] MonitorSnapshot = NO_INTERACTORS;
+    	// Incremented when the monitors or patterns change, which stales the snapshot of every topic.
+    	public long Generation;
+
+    	public boolean isEmpty() {
+    		return Topics.isEmpty() && Patterns.isEmpty() && Monitors.isEmpty();
+    	}
+
+    	public IntObjectMap<TopicSubscriptions> getTopics(boolean isPattern) {
+    		return isPattern ? Patterns : Topics;
+    	}
+
+    	public Interactor[] getMonitorSnapshot() {
+    		if (MonitorSnapshot == null) {
+    			MonitorSnapshot = Monitors.isEmpty() ? NO_INTERACTORS : Monitors.keySet().toArray(new Interactor[Monitors.size()]);
+    		}
+    		return MonitorSnapshot;
+    	}
+
+    	public List<TopicSubscriptions> matchPatterns(int topic) {
+    		List<TopicSubscriptions> matches = new ArrayList<TopicSubscriptions>();
+    		PatternTrie.match(_symbols.getSymbol(topic), matches);
+    		return matches;
+    	}
+
+    	public Interactor[] getSnapshot(int topic, TopicSubscriptions subscribersForTopic) {
+    		if (subscribersForTopic.Snapshot == null || subscribersForTopic.SnapshotGeneration != Generation) {
+    			subscribersForTopic.Snapshot = createSnapshot(topic, subscribersForTopic.Subscribers);
+    			subscribersForTopic.SnapshotGeneration = Generation;
+    		}
+    		return subscribersForTopic.Snapshot;
+    	}
+
+    	public Interactor[] createSnapshot(int topic, Map<Interactor, SubscriptionState> subscribers) {
+    		if (Patterns.isEmpty() && (subscribers == null || Monitors.isEmpty())) {
+    			// There can be no duplicates.
+    			return subscribers == null
+    					? getMonitorSnapshot()
+    					: subscribers.keySet().toArray(new Interactor[subscribers.size()]);
+    		}
+
+    		// An interactor may subscribe to the topic, match several patterns and monitor the feed, but receives the data once.
+    		Set<Interactor> recipients = new LinkedHashSet<Interactor>();
+    		if (subscribers != null) {
+    			recipients.addAll(subscribers.keySet());
+    		}
+    		for (TopicSubscriptions subscribersForPattern : matchPatterns(topic)) {
+    			recipients.addAll(subscribersForPattern.Subscribers.keySet());
+    		}
+    		recipients.addAll(Monitors.keySet());
+    		return recipients.isEmpty() ? NO_INTERACTORS : recipients.toArray(new Interactor[recipients.size()]);
+    	}
+
+    	public void invalidateSnapshots(TopicSubscriptions subscribersForTopic, boolean isPattern) {
+    		if (isPattern) {
+    			// The pattern may match any topic.
+    			invalidateSnapshots();
+    		} else {
+    			subscribersForTopic.Snapshot = null;
+    		}
+    	}
+
+    	public void invalidateSnapshots() {
+    		MonitorSnapshot = null;
+    		Matches.clear();
+    		// The topic snapshots are checked against the generation when they are next used.
+    		++Generation;
+    	}
+    }
 }
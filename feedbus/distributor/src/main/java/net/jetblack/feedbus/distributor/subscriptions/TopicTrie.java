@@ -0,0 +1,234 @@
+package net.jetblack.feedbus.distributor.subscriptions;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A trie of topic patterns.
+ *
+ * Topics are divided into segments by a ".". In a pattern the segment "*"
+ * matches any single segment, and a final segment ">" matches one or more
+ * remaining segments. For example "EQUITY.LSE.*" matches "EQUITY.LSE.BARC" but
+ * not "EQUITY.LSE.BARC.BID", while "EQUITY.>" matches both.
+ *
+ * @param <V> The type of the value held for each pattern.
+ */
+public class TopicTrie<V> {
+
+	/**
+	 * The separator between the segments of a topic.
+	 */
+	public static final char SEPARATOR = '.';
+
+	/**
+	 * The segment which matches any single segment.
+	 */
+	public static final String ANY_SEGMENT = "*";
+
+	/**
+	 * The final segment which matches the remaining segments.
+	 */
+	public static final String ANY_SUFFIX = ">";
+
+	private static class Node<V> {
+		final Map<String, Node<V>> children = new HashMap<String, Node<V>>();
+		V value;
+		V suffixValue;
+
+		boolean isEmpty() {
+			return value == null && suffixValue == null && children.isEmpty();
+		}
+	}
+
+	private final Node<V> _root = new Node<V>();
+	private int _size;
+
+	/**
+	 * Find whether a topic is a pattern.
+	 *
+	 * @param topic The topic.
+	 * @return True if the topic contains a wildcard segment.
+	 */
+	public static boolean isPattern(String topic) {
+		if (topic == null) {
+			return false;
+		}
+
+		String[] segments = split(topic);
+		for (int i = 0; i < segments.length; ++i) {
+			if (segments[i].equals(ANY_SEGMENT) || (i == segments.length - 1 && segments[i].equals(ANY_SUFFIX))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the number of patterns in the trie.
+	 *
+	 * @return The number of patterns.
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Gets whether the trie is empty.
+	 *
+	 * @return True if there are no patterns.
+	 */
+	public boolean isEmpty() {
+		return _size == 0;
+	}
+
+	/**
+	 * Get the value for a pattern.
+	 *
+	 * @param pattern The pattern.
+	 * @return The value, or null if the pattern is not in the trie.
+	 */
+	public V get(String pattern) {
+		String[] segments = split(pattern);
+		Node<V> node = _root;
+		for (int i = 0; i < segments.length; ++i) {
+			if (isSuffix(segments, i)) {
+				return node.suffixValue;
+			}
+			node = node.children.get(segments[i]);
+			if (node == null) {
+				return null;
+			}
+		}
+		return node.value;
+	}
+
+	/**
+	 * Add or replace the value for a pattern.
+	 *
+	 * @param pattern The pattern.
+	 * @param value The value.
+	 */
+	public void put(String pattern, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("value");
+		}
+
+		String[] segments = split(pattern);
+		Node<V> node = _root;
+		for (int i = 0; i < segments.length; ++i) {
+			if (isSuffix(segments, i)) {
+				if (node.suffixValue == null) {
+					++_size;
+				}
+				node.suffixValue = value;
+				return;
+			}
+
+			Node<V> child = node.children.get(segments[i]);
+			if (child == null) {
+				node.children.put(segments[i], child = new Node<V>());
+			}
+			node = child;
+		}
+
+		if (node.value == null) {
+			++_size;
+		}
+		node.value = value;
+	}
+
+	/**
+	 * Remove a pattern.
+	 *
+	 * @param pattern The pattern.
+	 * @return The value which was removed, or null if the pattern was not in the trie.
+	 */
+	public V remove(String pattern) {
+		V value = remove(_root, split(pattern), 0);
+		if (value != null) {
+			--_size;
+		}
+		return value;
+	}
+
+	private V remove(Node<V> node, String[] segments, int index) {
+		V value;
+		if (index == segments.length) {
+			value = node.value;
+			node.value = null;
+		} else if (isSuffix(segments, index)) {
+			value = node.suffixValue;
+			node.suffixValue = null;
+		} else {
+			Node<V> child = node.children.get(segments[index]);
+			if (child == null) {
+				return null;
+			}
+			value = remove(child, segments, index + 1);
+			// Prune the branches which no longer lead to a pattern.
+			if (child.isEmpty()) {
+				node.children.remove(segments[index]);
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Find the values of the patterns which match a topic.
+	 *
+	 * @param topic The topic.
+	 * @param values The collection to which the values of the matching patterns are added.
+	 */
+	public void match(String topic, Collection<V> values) {
+		if (_size > 0) {
+			match(_root, split(topic), 0, values);
+		}
+	}
+
+	private void match(Node<V> node, String[] segments, int index, Collection<V> values) {
+		if (index == segments.length) {
+			if (node.value != null) {
+				values.add(node.value);
+			}
+			return;
+		}
+
+		if (node.suffixValue != null) {
+			values.add(node.suffixValue);
+		}
+
+		Node<V> child = node.children.get(segments[index]);
+		if (child != null) {
+			match(child, segments, index + 1, values);
+		}
+
+		Node<V> any = node.children.get(ANY_SEGMENT);
+		if (any != null && any != child) {
+			match(any, segments, index + 1, values);
+		}
+	}
+
+	private static boolean isSuffix(String[] segments, int index) {
+		return index == segments.length - 1 && segments[index].equals(ANY_SUFFIX);
+	}
+
+	private static String[] split(String topic) {
+		int count = 1;
+		for (int i = 0; i < topic.length(); ++i) {
+			if (topic.charAt(i) == SEPARATOR) {
+				++count;
+			}
+		}
+
+		String[] segments = new String[count];
+		int start = 0;
+		for (int i = 0; i < count - 1; ++i) {
+			int end = topic.indexOf(SEPARATOR, start);
+			segments[i] = topic.substring(start, end);
+			start = end + 1;
+		}
+		segments[count - 1] = topic.substring(start);
+		return segments;
+	}
+}
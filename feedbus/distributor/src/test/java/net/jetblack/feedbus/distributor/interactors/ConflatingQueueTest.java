@@ -0,0 +1,119 @@
+package net.jetblack.feedbus.distributor.interactors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import net.jetblack.feedbus.messages.Message;
+import net.jetblack.feedbus.messages.MulticastData;
+import net.jetblack.feedbus.messages.SubscriptionRequest;
+
+import org.junit.Test;
+
+public class ConflatingQueueTest {
+
+	private static MulticastData data(String topic, boolean isImage, int value) {
+		return new MulticastData("FEED", topic, isImage, new byte[] { (byte)value });
+	}
+
+	@Test
+	public void deltaReplacesPendingDelta() {
+		WriteQueueStatistics statistics = new WriteQueueStatistics();
+		ConflatingQueue queue = new ConflatingQueue(8, statistics);
+
+		queue.offer(data("A", false, 1));
+		queue.offer(data("A", false, 2));
+
+		assertEquals(1, queue.size());
+		assertEquals(data("A", false, 2), queue.poll());
+		assertNull(queue.poll());
+		assertEquals(1, statistics.getConflated());
+	}
+
+	@Test
+	public void imageReplacesEverythingPending() {
+		WriteQueueStatistics statistics = new WriteQueueStatistics();
+		ConflatingQueue queue = new ConflatingQueue(8, statistics);
+
+		queue.offer(data("A", true, 1));
+		queue.offer(data("A", false, 2));
+		queue.offer(data("A", true, 3));
+
+		assertEquals(1, queue.size());
+		assertEquals(data("A", true, 3), queue.poll());
+		assertEquals(2, statistics.getConflated());
+	}
+
+	@Test
+	public void deltaFollowsPendingImage() {
+		ConflatingQueue queue = new ConflatingQueue(8, new WriteQueueStatistics());
+
+		queue.offer(data("A", true, 1));
+		queue.offer(data("A", false, 2));
+		queue.offer(data("A", false, 3));
+
+		assertEquals(2, queue.size());
+		assertEquals(data("A", true, 1), queue.poll());
+		assertEquals(data("A", false, 3), queue.poll());
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void topicsKeepTheirFirstPosition() {
+		ConflatingQueue queue = new ConflatingQueue(8, new WriteQueueStatistics());
+		Message request = new SubscriptionRequest("FEED", "C", true);
+
+		queue.offer(data("A", false, 1));
+		queue.offer(request);
+		queue.offer(data("B", false, 2));
+		queue.offer(data("A", false, 3));
+
+		assertEquals(data("A", false, 3), queue.poll());
+		assertSame(request, queue.poll());
+		assertEquals(data("B", false, 2), queue.poll());
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void capacityCountsTopicsNotMessages() {
+		ConflatingQueue queue = new ConflatingQueue(2, new WriteQueueStatistics());
+
+		assertTrue(queue.offer(data("A", true, 1)));
+		assertTrue(queue.offer(data("B", true, 2)));
+		assertTrue(queue.offer(data("A", false, 3)));
+		assertFalse(queue.offer(data("C", true, 4)));
+		assertFalse(queue.offer(new SubscriptionRequest("FEED", "D", true)));
+		assertEquals(0, queue.remainingCapacity());
+
+		queue.poll();
+		queue.poll();
+		assertEquals(1, queue.remainingCapacity());
+		assertTrue(queue.offer(data("C", true, 4)));
+	}
+
+	@Test
+	public void removeFindsConflatedMessages() {
+		ConflatingQueue queue = new ConflatingQueue(8, new WriteQueueStatistics());
+
+		queue.offer(data("A", true, 1));
+		queue.offer(data("A", false, 2));
+
+		assertTrue(queue.remove(data("A", false, 2)));
+		assertFalse(queue.remove(data("A", false, 2)));
+		assertEquals(1, queue.size());
+		assertEquals(data("A", true, 1), queue.poll());
+		assertEquals(8, queue.remainingCapacity());
+	}
+
+	@Test
+	public void reserveIsOnlyForOtherMessages() {
+		ConflatingQueue queue = new ConflatingQueue(1, 1, new WriteQueueStatistics());
+
+		assertTrue(queue.offer(new MulticastData("FEED", "A", true, null)));
+		assertFalse(queue.offer(new MulticastData("FEED", "B", true, null)));
+		assertTrue(queue.offer(new SubscriptionRequest("FEED", "A", true)));
+		assertFalse(queue.offer(new SubscriptionRequest("FEED", "B", true)));
+	}
+}
@@ -0,0 +1,203 @@
+package net.jetblack.feedbus.distributor.interactors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.jetblack.feedbus.distributor.config.DistributorConfig;
+import net.jetblack.feedbus.distributor.config.SlowConsumerPolicy;
+import net.jetblack.feedbus.messages.AliasRegistration;
+import net.jetblack.feedbus.messages.AliasedData;
+import net.jetblack.feedbus.messages.Message;
+import net.jetblack.feedbus.messages.MulticastData;
+import net.jetblack.feedbus.messages.SubscriptionRequest;
+import net.jetblack.feedbus.util.SymbolTable;
+import net.jetblack.feedbus.util.concurrent.EventQueue;
+
+import org.junit.Test;
+
+public class InteractorTest {
+
+	private static final int CAPACITY = 4;
+
+	/**
+	 * An interactor whose client never reads, so the write queue only fills.
+	 */
+	private static class StalledInteractor extends Interactor {
+
+		int abortCount;
+
+		StalledInteractor(SlowConsumerPolicy policy, int threshold) throws IOException {
+			super(InetAddress.getLoopbackAddress(), new EventQueue<InteractorEventArgs>(16, new InteractorShutdownEventArgs()), new SymbolTable(), null, config(policy, threshold));
+		}
+
+		private static DistributorConfig config(SlowConsumerPolicy policy, int threshold) throws IOException {
+			DistributorConfig config = new DistributorConfig();
+			config.setWriteQueueCapacity(CAPACITY);
+			config.setSlowConsumerPolicy(policy);
+			config.setSlowConsumerThreshold(threshold);
+			return config;
+		}
+
+		@Override
+		public void start() {
+		}
+
+		@Override
+		protected void abort() {
+			++abortCount;
+		}
+
+		@Override
+		public void close() {
+		}
+
+		List<Message> drain() {
+			List<Message> messages = new ArrayList<Message>();
+			getWriteQueue().drainTo(messages);
+			return messages;
+		}
+	}
+
+	private static MulticastData data(int value) {
+		return new MulticastData("FEED", "TOPIC", false, new byte[] { (byte)value });
+	}
+
+	private static void sendData(Interactor interactor, int count) throws InterruptedException {
+		for (int i = 0; i < count; ++i) {
+			interactor.sendMessage(data(i));
+		}
+	}
+
+	@Test
+	public void blockWaitsForSpace() throws Exception {
+		final StalledInteractor interactor = new StalledInteractor(SlowConsumerPolicy.Block, 0);
+		sendData(interactor, CAPACITY);
+
+		final CountDownLatch sent = new CountDownLatch(1);
+		Thread sender = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					interactor.sendMessage(data(CAPACITY));
+					sent.countDown();
+				} catch (InterruptedException error) {
+					// The test has failed.
+				}
+			}
+		});
+		sender.start();
+
+		assertFalse(sent.await(200, TimeUnit.MILLISECONDS));
+		assertEquals(data(0), interactor.getWriteQueue().poll());
+		assertTrue(sent.await(10, TimeUnit.SECONDS));
+		sender.join();
+
+		assertEquals(1, interactor.getWriteQueueStatistics().getBlocked());
+		assertEquals(CAPACITY, interactor.drain().size());
+	}
+
+	@Test
+	public void dropNewestDiscardsTheMessageBeingSent() throws Exception {
+		StalledInteractor interactor = new StalledInteractor(SlowConsumerPolicy.DropNewest, 0);
+
+		sendData(interactor, CAPACITY + 2);
+
+		List<Message> messages = interactor.drain();
+		assertEquals(CAPACITY, messages.size());
+		assertEquals(data(0), messages.get(0));
+		assertEquals(data(CAPACITY - 1), messages.get(CAPACITY - 1));
+		assertEquals(2, interactor.getWriteQueueStatistics().getDroppedNewest());
+		assertEquals(0, interactor.abortCount);
+	}
+
+	@Test
+	public void dropOldestDiscardsTheOldestData() throws Exception {
+		StalledInteractor interactor = new StalledInteractor(SlowConsumerPolicy.DropOldest, 0);
+
+		sendData(interactor, CAPACITY + 2);
+
+		List<Message> messages = interactor.drain();
+		assertEquals(CAPACITY, messages.size());
+		assertEquals(data(2), messages.get(0));
+		assertEquals(data(CAPACITY + 1), messages.get(CAPACITY - 1));
+		assertEquals(2, interactor.getWriteQueueStatistics().getDroppedOldest());
+	}
+
+	@Test
+	public void dropOldestKeepsProtocolMessages() throws Exception {
+		StalledInteractor interactor = new StalledInteractor(SlowConsumerPolicy.DropOldest, 0);
+		SubscriptionRequest request = new SubscriptionRequest("FEED", "TOPIC", true);
+
+		interactor.sendMessage(request);
+		sendData(interactor, CAPACITY + 2);
+
+		List<Message> messages = interactor.drain();
+		assertEquals(request, messages.get(0));
+		assertEquals(data(CAPACITY + 1), messages.get(messages.size() - 1));
+	}
+
+	@Test
+	public void disconnectAbortsOnceAfterTheThreshold() throws Exception {
+		StalledInteractor interactor = new StalledInteractor(SlowConsumerPolicy.Disconnect, 2);
+
+		sendData(interactor, CAPACITY + 2);
+		assertEquals(0, interactor.abortCount);
+
+		sendData(interactor, 3);
+		assertEquals(1, interactor.abortCount);
+		assertEquals(1, interactor.getWriteQueueStatistics().getDisconnected());
+		assertEquals(5, interactor.getWriteQueueStatistics().getDroppedNewest());
+	}
+
+	@Test
+	public void protocolMessagesUseTheReserveWithoutBlocking() throws Exception {
+		StalledInteractor interactor = new StalledInteractor(SlowConsumerPolicy.DropNewest, 0);
+		sendData(interactor, CAPACITY);
+
+		for (int i = 0; i < Interactor.MIN_PROTOCOL_RESERVE; ++i) {
+			interactor.sendMessage(new SubscriptionRequest("FEED", "TOPIC-" + i, true));
+		}
+		assertEquals(0, interactor.abortCount);
+		assertEquals(CAPACITY + Interactor.MIN_PROTOCOL_RESERVE, interactor.getWriteQueue().size());
+
+		// The reserve is full, so the client cannot keep up with the protocol.
+		interactor.sendMessage(new SubscriptionRequest("FEED", "TOPIC", true));
+		interactor.sendMessage(new SubscriptionRequest("FEED", "TOPIC", true));
+		assertEquals(1, interactor.abortCount);
+		assertEquals(1, interactor.getWriteQueueStatistics().getDisconnected());
+		assertEquals(CAPACITY + Interactor.MIN_PROTOCOL_RESERVE, interactor.drain().size());
+	}
+
+	@Test
+	public void aliasIsRegisteredAgainWhenItIsReused() throws Exception {
+		StalledInteractor interactor = new StalledInteractor(SlowConsumerPolicy.Block, 0);
+		AliasRegistration first = new AliasRegistration(0, "FEED", "A");
+		AliasRegistration second = new AliasRegistration(0, "FEED", "B");
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(buffer);
+		interactor.writeMessage(new AliasedData(first, true, null), output);
+		interactor.writeMessage(new AliasedData(first, false, null), output);
+		interactor.writeMessage(new AliasedData(second, true, null), output);
+
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+		assertEquals(first, Message.read(input));
+		assertEquals(new AliasedData(0, null, null, true, null), Message.read(input));
+		assertEquals(new AliasedData(0, null, null, false, null), Message.read(input));
+		assertEquals(second, Message.read(input));
+		assertEquals(new AliasedData(0, null, null, true, null), Message.read(input));
+		assertEquals(0, input.available());
+	}
+}
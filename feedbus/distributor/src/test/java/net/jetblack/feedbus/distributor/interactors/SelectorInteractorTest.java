@@ -0,0 +1,195 @@
+package net.jetblack.feedbus.distributor.interactors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.jetblack.feedbus.distributor.config.DistributorConfig;
+import net.jetblack.feedbus.messages.Message;
+import net.jetblack.feedbus.messages.MessageType;
+import net.jetblack.feedbus.messages.MulticastData;
+import net.jetblack.feedbus.messages.SubscriptionRequest;
+import net.jetblack.feedbus.util.EventListener;
+import net.jetblack.feedbus.util.SymbolTable;
+import net.jetblack.feedbus.util.concurrent.EventQueue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SelectorInteractorTest {
+
+	private static final int TIMEOUT = 10000;
+
+	private SelectorLoop _loop;
+	private ServerSocketChannel _server;
+	private final List<Socket> _clients = new ArrayList<Socket>();
+
+	@Before
+	public void setUp() throws IOException {
+		_loop = new SelectorLoop("test-loop");
+		_loop.start();
+		_server = ServerSocketChannel.open();
+		_server.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (Socket client : _clients) {
+			client.close();
+		}
+		_server.close();
+		_loop.close();
+	}
+
+	private Socket connect() throws IOException {
+		Socket client = new Socket(InetAddress.getLoopbackAddress(), _server.socket().getLocalPort());
+		client.setSoTimeout(TIMEOUT);
+		_clients.add(client);
+		return client;
+	}
+
+	private SelectorInteractor accept(EventQueue<InteractorEventArgs> events, DistributorConfig config) throws IOException {
+		SocketChannel channel = _server.accept();
+		channel.configureBlocking(false);
+		SelectorInteractor interactor = new SelectorInteractor(channel, _loop, events, new SymbolTable(), null, config);
+		interactor.start();
+		return interactor;
+	}
+
+	private static CountDownLatch collect(EventQueue<InteractorEventArgs> events, final List<InteractorEventArgs> received, int count) {
+		final CountDownLatch latch = new CountDownLatch(count);
+		events.Listener.add(new EventListener<InteractorEventArgs>() {
+			@Override
+			public void onEvent(InteractorEventArgs event) {
+				if (!(event instanceof InteractorShutdownEventArgs)) {
+					received.add(event);
+					latch.countDown();
+				}
+			}
+		});
+		return latch;
+	}
+
+	@Test
+	public void fullEventQueueDoesNotBlockTheLoop() throws Exception {
+		EventQueue<InteractorEventArgs> events = new EventQueue<InteractorEventArgs>(2, new InteractorShutdownEventArgs());
+		List<InteractorEventArgs> received = new ArrayList<InteractorEventArgs>();
+		CountDownLatch latch = collect(events, received, 20);
+
+		Socket client = connect();
+		SelectorInteractor interactor = accept(events, new DistributorConfig());
+
+		// The event queue is not running, so it fills after two requests.
+		DataOutputStream output = new DataOutputStream(client.getOutputStream());
+		for (int i = 0; i < 20; ++i) {
+			new SubscriptionRequest("FEED", "TOPIC-" + i, true).write(output);
+		}
+		output.flush();
+
+		// The loop still writes to the client while the requests wait.
+		MulticastData data = new MulticastData("FEED", "TOPIC", true, new byte[] { 1 });
+		interactor.sendMessage(data);
+		assertEquals(data, Message.read(new DataInputStream(client.getInputStream())));
+
+		Thread thread = events.start();
+		try {
+			assertTrue(latch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+			for (int i = 0; i < 20; ++i) {
+				InteractorMessageEventArgs event = (InteractorMessageEventArgs)received.get(i);
+				assertEquals(new SubscriptionRequest("FEED", "TOPIC-" + i, true), event.getMessage());
+			}
+		} finally {
+			events.close();
+			thread.join(TIMEOUT);
+		}
+	}
+
+	@Test
+	public void messageSplitAcrossReadsIsAssembled() throws Exception {
+		EventQueue<InteractorEventArgs> events = new EventQueue<InteractorEventArgs>(16, new InteractorShutdownEventArgs());
+		List<InteractorEventArgs> received = new ArrayList<InteractorEventArgs>();
+		CountDownLatch latch = collect(events, received, 1);
+		Thread thread = events.start();
+		try {
+			Socket client = connect();
+			accept(events, new DistributorConfig());
+
+			MulticastData data = new MulticastData("FEED", "TOPIC", true, new byte[1000]);
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			data.write(new DataOutputStream(buffer));
+			byte[] bytes = buffer.toByteArray();
+
+			// Send the message a byte at a time, so it arrives in many reads.
+			for (byte b : bytes) {
+				client.getOutputStream().write(b);
+				client.getOutputStream().flush();
+			}
+
+			assertTrue(latch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+			assertEquals(data, ((InteractorMessageEventArgs)received.get(0)).getMessage());
+		} finally {
+			events.close();
+			thread.join(TIMEOUT);
+		}
+	}
+
+	@Test
+	public void oversizedLengthFailsOnlyThatInteractor() throws Exception {
+		EventQueue<InteractorEventArgs> events = new EventQueue<InteractorEventArgs>(16, new InteractorShutdownEventArgs());
+		List<InteractorEventArgs> received = new ArrayList<InteractorEventArgs>();
+		CountDownLatch latch = collect(events, received, 2);
+		Thread thread = events.start();
+		try {
+			Socket bad = connect();
+			SelectorInteractor badInteractor = accept(events, new DistributorConfig());
+			Socket good = connect();
+			accept(events, new DistributorConfig());
+
+			// A data message declaring far more data than the maximum message size.
+			DataOutputStream output = new DataOutputStream(bad.getOutputStream());
+			output.write((byte)MessageType.MulticastData.ordinal());
+			output.writeUTF("FEED");
+			output.writeUTF("TOPIC");
+			output.writeBoolean(true);
+			output.writeInt(Integer.MAX_VALUE - 8);
+			output.flush();
+
+			// The interactor closes the connection, and the loop goes on to serve the other client.
+			assertEquals(-1, bad.getInputStream().read());
+			SubscriptionRequest request = new SubscriptionRequest("FEED", "TOPIC", true);
+			request.write(new DataOutputStream(good.getOutputStream()));
+			good.getOutputStream().flush();
+
+			assertTrue(latch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+			boolean isFailed = false, isServed = false;
+			for (InteractorEventArgs event : received) {
+				if (event instanceof InteractorErrorEventArgs) {
+					assertEquals(badInteractor, event.getInteractor());
+					isFailed = true;
+				} else {
+					assertEquals(request, ((InteractorMessageEventArgs)event).getMessage());
+					isServed = true;
+				}
+			}
+			assertTrue(isFailed);
+			assertTrue(isServed);
+		} finally {
+			events.close();
+			thread.join(TIMEOUT);
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package net.jetblack.feedbus.distributor.publishers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import net.jetblack.feedbus.messages.AliasRegistration;
+
+import org.junit.Test;
+
+public class TopicAliasesTest {
+
+	@Test
+	public void freedAliasIsReused() {
+		TopicAliases aliases = new TopicAliases();
+
+		AliasRegistration a = aliases.allocate("FEED", "A");
+		AliasRegistration b = aliases.allocate("FEED", "B");
+		assertEquals(0, a.getAlias());
+		assertEquals(1, b.getAlias());
+		assertEquals(2, aliases.size());
+
+		aliases.free(a.getAlias());
+		assertEquals(1, aliases.size());
+
+		AliasRegistration c = aliases.allocate("FEED", "C");
+		assertEquals(0, c.getAlias());
+		assertNotSame(a, c);
+		assertEquals(2, aliases.size());
+	}
+
+	@Test
+	public void freeingTwiceIsIgnored() {
+		TopicAliases aliases = new TopicAliases();
+		AliasRegistration a = aliases.allocate("FEED", "A");
+
+		aliases.free(a.getAlias());
+		aliases.free(a.getAlias());
+
+		assertEquals(0, aliases.size());
+		assertEquals(0, aliases.allocate("FEED", "B").getAlias());
+	}
+}
@@ -0,0 +1,103 @@
+package net.jetblack.feedbus.distributor.subscriptions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TopicTrieTest {
+
+	private static List<String> match(TopicTrie<String> trie, String topic) {
+		List<String> values = new ArrayList<String>();
+		trie.match(topic, values);
+		Collections.sort(values);
+		return values;
+	}
+
+	private static TopicTrie<String> trieOf(String... patterns) {
+		TopicTrie<String> trie = new TopicTrie<String>();
+		for (String pattern : patterns) {
+			trie.put(pattern, pattern);
+		}
+		return trie;
+	}
+
+	@Test
+	public void findsPatterns() {
+		assertTrue(TopicTrie.isPattern("EQUITY.*"));
+		assertTrue(TopicTrie.isPattern("*.LSE.BARC"));
+		assertTrue(TopicTrie.isPattern("EQUITY.>"));
+		assertTrue(TopicTrie.isPattern(">"));
+		assertFalse(TopicTrie.isPattern("EQUITY.LSE.BARC"));
+		assertFalse(TopicTrie.isPattern("EQUITY.>.BARC"));
+		assertFalse(TopicTrie.isPattern("EQUITY*"));
+		assertFalse(TopicTrie.isPattern(null));
+	}
+
+	@Test
+	public void anySegmentMatchesExactlyOneSegment() {
+		TopicTrie<String> trie = trieOf("EQUITY.LSE.*");
+
+		assertEquals(Collections.singletonList("EQUITY.LSE.*"), match(trie, "EQUITY.LSE.BARC"));
+		assertTrue(match(trie, "EQUITY.LSE").isEmpty());
+		assertTrue(match(trie, "EQUITY.LSE.BARC.BID").isEmpty());
+		assertTrue(match(trie, "EQUITY.NYSE.IBM").isEmpty());
+	}
+
+	@Test
+	public void anySuffixMatchesOneOrMoreSegments() {
+		TopicTrie<String> trie = trieOf("EQUITY.>");
+
+		assertEquals(Collections.singletonList("EQUITY.>"), match(trie, "EQUITY.LSE"));
+		assertEquals(Collections.singletonList("EQUITY.>"), match(trie, "EQUITY.LSE.BARC.BID"));
+		assertTrue(match(trie, "EQUITY").isEmpty());
+		assertTrue(match(trie, "BOND.UK").isEmpty());
+	}
+
+	@Test
+	public void everyMatchingPatternIsFound() {
+		TopicTrie<String> trie = trieOf("EQUITY.LSE.BARC", "EQUITY.LSE.*", "EQUITY.*.BARC", "*.*.*", "EQUITY.>", ">", "EQUITY.NYSE.*");
+
+		assertEquals(
+				Arrays.asList("*.*.*", ">", "EQUITY.*.BARC", "EQUITY.>", "EQUITY.LSE.*", "EQUITY.LSE.BARC"),
+				match(trie, "EQUITY.LSE.BARC"));
+	}
+
+	@Test
+	public void putReplacesAndRemovePrunes() {
+		TopicTrie<String> trie = new TopicTrie<String>();
+		trie.put("EQUITY.*", "first");
+		trie.put("EQUITY.*", "second");
+		trie.put("EQUITY.>", "suffix");
+
+		assertEquals(2, trie.size());
+		assertEquals("second", trie.get("EQUITY.*"));
+		assertEquals("suffix", trie.get("EQUITY.>"));
+
+		assertEquals("second", trie.remove("EQUITY.*"));
+		assertNull(trie.remove("EQUITY.*"));
+		assertNull(trie.get("EQUITY.*"));
+		assertEquals(Collections.singletonList("suffix"), match(trie, "EQUITY.LSE"));
+
+		assertEquals("suffix", trie.remove("EQUITY.>"));
+		assertTrue(trie.isEmpty());
+		assertTrue(match(trie, "EQUITY.LSE").isEmpty());
+	}
+
+	@Test
+	public void removingAPatternKeepsItsNeighbours() {
+		TopicTrie<String> trie = trieOf("EQUITY.LSE.*", "EQUITY.LSE.*.BID");
+
+		trie.remove("EQUITY.LSE.*");
+
+		assertTrue(match(trie, "EQUITY.LSE.BARC").isEmpty());
+		assertEquals(Collections.singletonList("EQUITY.LSE.*.BID"), match(trie, "EQUITY.LSE.BARC.BID"));
+	}
+}
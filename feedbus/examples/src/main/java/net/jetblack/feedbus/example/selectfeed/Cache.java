@@ -5,6 +5,7 @@ import java.util.Map;
 import java.util.logging.Logger;
 
 import net.jetblack.feedbus.adapters.Client;
+import net.jetblack.feedbus.adapters.PublishBatch;
 
 public class Cache {
 	
@@ -81,6 +82,29 @@ public class Cache {
     }
     
     public void publish(String feed, String topic, Map<String, Object> data) {
+        // If there are any clients listening publish the data.
+        if (update(feed, topic, data)) {
+            logger.info("Publishing update on feed \"" + feed + "\" with topic \"" + topic);
+            _client.publish(feed, topic, false, (Object)data);
+        }
+    }
+
+    public void publish(String feed, Map<String, Map<String, Object>> topicData) {
+        PublishBatch batch = new PublishBatch();
+        for (Map.Entry<String, Map<String, Object>> item : topicData.entrySet()) {
+            if (update(feed, item.getKey(), item.getValue())) {
+                batch.add(feed, item.getKey(), false, (Object)item.getValue());
+            }
+        }
+
+        // Publish the topics which have clients listening in a single message.
+        if (!batch.isEmpty()) {
+            logger.info("Publishing " + batch.size() + " updates on feed \"" + feed + "\"");
+            _client.publishBatch(batch);
+        }
+    }
+
+    private boolean update(String feed, String topic, Map<String, Object> data) {
 
     	// If the feed is not in the cache add it.
         Map<String, CacheItem> topicCache = _cacheItems.get(feed);
@@ -102,11 +126,7 @@ public class Cache {
             cacheItem.getData().put(item.getKey(), item.getValue());
         }
 
-        // If there are any clients listening publish the data.
-        if (cacheItem.getClientStates().size() > 0) {
-            logger.info("Publishing update on feed \"" + feed + "\" with topic \"" + topic);
-            _client.publish(feed, topic, false, (Object)data);
-        }
+        return cacheItem.getClientStates().size() > 0;
     }
     
 }
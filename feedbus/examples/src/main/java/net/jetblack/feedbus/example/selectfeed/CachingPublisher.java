@@ -38,6 +38,12 @@ public class CachingPublisher {
 		}
 	}
 
+	public void publish(String feed, Map<String, Map<String, Object>> topicData) {
+		synchronized (_gate) {
+			_cache.publish(feed, topicData);
+		}
+	}
+
 	public void addNotification(String feed) throws InterruptedException {
 		_client.addNotification(feed);
 	}
@@ -52,13 +52,7 @@ public class Program {
 			Map<String, Map<String, Object>> topicData = feedItem.getValue();
 
 			cachingPublisher.addNotification(feed);
-
-			for (Map.Entry<String, Map<String, Object>> topicItem : topicData.entrySet()) {
-				String topic = topicItem.getKey();
-				Map<String,Object> data = topicItem.getValue();
-				
-				cachingPublisher.publish(feed, topic, data);
-			}
+			cachingPublisher.publish(feed, topicData);
 		}
 
 		List<Timer> timers = new ArrayList<Timer>();
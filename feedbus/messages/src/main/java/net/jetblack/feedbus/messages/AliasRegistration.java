@@ -0,0 +1,121 @@
+package net.jetblack.feedbus.messages;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A message which assigns an alias to a feed and topic.
+ *
+ * Aliases belong to the connection and to the direction in which the
+ * registration was sent. After the registration the sender may publish
+ * aliased data, which carries the alias in place of the feed and topic.
+ */
+public class AliasRegistration extends Message {
+
+	private final int _alias;
+	private final String _feed;
+	private final String _topic;
+
+	/**
+	 * Construct an alias registration.
+	 *
+	 * @param alias The alias.
+	 * @param feed The name of the feed.
+	 * @param topic The name of the topic.
+	 */
+	public AliasRegistration(int alias, String feed, String topic) {
+		super(MessageType.AliasRegistration);
+		_alias = alias;
+		_feed = feed;
+		_topic = topic;
+	}
+
+	/**
+	 * Read the body of an alias registration.
+	 *
+	 * @param stream The stream from which to read.
+	 * @return The alias registration read from the stream.
+	 * @throws IOException Thrown if the message could not be read.
+	 */
+	public static AliasRegistration readBody(DataInputStream stream) throws IOException {
+		int alias = stream.readInt();
+		String feed = stream.readUTF();
+		String topic = stream.readUTF();
+		return new AliasRegistration(alias, feed, topic);
+	}
+
+	@Override
+	public void write(DataOutputStream stream) throws IOException {
+		super.write(stream);
+		stream.writeInt(_alias);
+		stream.writeUTF(_feed);
+		stream.writeUTF(_topic);
+	}
+
+	/**
+	 * The alias.
+	 *
+	 * @return The alias.
+	 */
+	public int getAlias() {
+		return _alias;
+	}
+
+	/**
+	 * The name of the feed.
+	 *
+	 * @return The feed name.
+	 */
+	public String getFeed() {
+		return _feed;
+	}
+
+	/**
+	 * The name of the topic.
+	 *
+	 * @return The topic name.
+	 */
+	public String getTopic() {
+		return _topic;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = super.hashCode();
+		result = prime * result + _alias;
+		result = prime * result + ((_feed == null) ? 0 : _feed.hashCode());
+		result = prime * result + ((_topic == null) ? 0 : _topic.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!super.equals(obj))
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		AliasRegistration other = (AliasRegistration) obj;
+		if (_alias != other._alias)
+			return false;
+		if (_feed == null) {
+			if (other._feed != null)
+				return false;
+		} else if (!_feed.equals(other._feed))
+			return false;
+		if (_topic == null) {
+			if (other._topic != null)
+				return false;
+		} else if (!_topic.equals(other._topic))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + ", Alias=" + _alias + ", Feed=\"" + _feed + "\", Topic=\"" + _topic + "\"";
+	}
+}
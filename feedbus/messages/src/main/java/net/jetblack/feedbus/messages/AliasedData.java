@@ -0,0 +1,147 @@
+package net.jetblack.feedbus.messages;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A multicast message which carries an alias in place of the feed and topic.
+ *
+ * Only the alias, the image flag and the data are written. The sender keeps
+ * the feed and topic so it can register the alias before the first use, but
+ * a message read from a stream has neither until the receiver resolves the
+ * alias.
+ */
+public class AliasedData extends MulticastData {
+
+	private final int _alias;
+	// The registration shared by the data sent with the alias, or null if one is created when needed.
+	private final AliasRegistration _registration;
+
+	/**
+	 * Construct an aliased multicast message.
+	 *
+	 * @param alias The alias of the feed and topic.
+	 * @param feed The name of the feed, or null if it is not known.
+	 * @param topic The name of the topic, or null if it is not known.
+	 * @param isImage If true the data represents the full image, otherwise it is a delta.
+	 * @param data The data transmitted.
+	 */
+	public AliasedData(int alias, String feed, String topic, boolean isImage, byte[] data) {
+		super(MessageType.AliasedData, feed, topic, isImage, data);
+		_alias = alias;
+		_registration = null;
+	}
+
+	/**
+	 * Construct an aliased multicast message which shares the registration of its alias.
+	 *
+	 * @param registration The registration of the alias, feed and topic.
+	 * @param isImage If true the data represents the full image, otherwise it is a delta.
+	 * @param data The data transmitted.
+	 */
+	public AliasedData(AliasRegistration registration, boolean isImage, byte[] data) {
+		super(MessageType.AliasedData, registration.getFeed(), registration.getTopic(), isImage, data);
+		_alias = registration.getAlias();
+		_registration = registration;
+	}
+
+	/**
+	 * Read the body of an aliased multicast message.
+	 *
+	 * @param stream The stream from which to read.
+	 * @return The aliased message read from the stream, without the feed and topic.
+	 * @throws IOException Thrown if the message could not be read.
+	 */
+	public static AliasedData readBody(DataInputStream stream) throws IOException {
+		return readBody(stream, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Read the body of an aliased multicast message, checking the length of the data before it is allocated.
+	 *
+	 * @param stream The stream from which to read.
+	 * @param maxLength The largest number of bytes of data allowed.
+	 * @return The aliased message read from the stream, without the feed and topic.
+	 * @throws IOException Thrown if the message could not be read.
+	 */
+	static AliasedData readBody(DataInputStream stream, int maxLength) throws IOException {
+		int alias = stream.readInt();
+		boolean isImage = stream.readBoolean();
+		int len = readLength(stream, maxLength);
+		byte[] data = len == 0 ? null : new byte[len];
+		if (len > 0) {
+			stream.readFully(data);
+		}
+
+		return new AliasedData(alias, null, null, isImage, data);
+	}
+
+	@Override
+	public void write(DataOutputStream stream) throws IOException {
+		stream.write((byte)getType().ordinal());
+		stream.writeInt(_alias);
+		stream.writeBoolean(isImage());
+		byte[] data = getData();
+		if (data == null) {
+			stream.writeInt(0);
+		} else {
+			stream.writeInt(data.length);
+			stream.write(data);
+		}
+	}
+
+	/**
+	 * The alias of the feed and topic.
+	 *
+	 * @return The alias.
+	 */
+	public int getAlias() {
+		return _alias;
+	}
+
+	/**
+	 * Gets the registration of the alias, creating it if the message does not share one.
+	 *
+	 * @return The alias registration.
+	 */
+	public AliasRegistration toRegistration() {
+		return _registration != null ? _registration : new AliasRegistration(_alias, getFeed(), getTopic());
+	}
+
+	/**
+	 * Create the unaliased message for a resolved alias.
+	 *
+	 * @param feed The name of the feed.
+	 * @param topic The name of the topic.
+	 * @return The multicast message.
+	 */
+	public MulticastData resolve(String feed, String topic) {
+		return new MulticastData(feed, topic, isImage(), getData());
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = super.hashCode();
+		result = prime * result + _alias;
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!super.equals(obj))
+			return false;
+		AliasedData other = (AliasedData) obj;
+		if (_alias != other._alias)
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + ", Alias=" + _alias;
+	}
+}
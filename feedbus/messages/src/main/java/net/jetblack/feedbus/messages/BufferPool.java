@@ -0,0 +1,93 @@
+package net.jetblack.feedbus.messages;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A pool of byte buffers in power of two size classes.
+ *
+ * Buffers may be acquired and released on any thread. Each size class holds
+ * a bounded number of free buffers; a buffer released to a full class, or
+ * one too large to pool, is left for the garbage collector. Buffers which
+ * are never released are simply not reused.
+ */
+public class BufferPool implements EncodedMessage.Releaser {
+
+	/**
+	 * The size of the smallest buffer.
+	 */
+	public static final int MIN_BUFFER_SIZE = 64;
+	/**
+	 * The size of the largest buffer which is pooled.
+	 */
+	public static final int MAX_BUFFER_SIZE = 1024 * 1024;
+	/**
+	 * The default number of free buffers held for each size class.
+	 */
+	public static final int DEFAULT_BUFFERS_PER_SIZE = 1024;
+
+	private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+
+	private final ArrayBlockingQueue<byte[]>[] _sizeClasses;
+
+	/**
+	 * Construct a pool with the default number of buffers for each size class.
+	 */
+	public BufferPool() {
+		this(DEFAULT_BUFFERS_PER_SIZE);
+	}
+
+	/**
+	 * Construct a pool.
+	 *
+	 * @param buffersPerSize The maximum number of free buffers held for each size class.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public BufferPool(int buffersPerSize) {
+		_sizeClasses = new ArrayBlockingQueue[Integer.numberOfTrailingZeros(MAX_BUFFER_SIZE) - MIN_SHIFT + 1];
+		for (int i = 0; i < _sizeClasses.length; ++i) {
+			_sizeClasses[i] = new ArrayBlockingQueue<byte[]>(buffersPerSize);
+		}
+	}
+
+	/**
+	 * Acquire a buffer. The contents of the buffer are undefined.
+	 *
+	 * @param minLength The minimum length of the buffer.
+	 * @return A buffer of at least the requested length.
+	 */
+	public byte[] acquire(int minLength) {
+		if (minLength > MAX_BUFFER_SIZE) {
+			return new byte[minLength];
+		}
+
+		int sizeClass = getSizeClass(minLength);
+		byte[] buffer = _sizeClasses[sizeClass].poll();
+		return buffer != null ? buffer : new byte[MIN_BUFFER_SIZE << sizeClass];
+	}
+
+	/**
+	 * Return a buffer to the pool. The buffer must not be used after it has been released.
+	 *
+	 * @param buffer The buffer, which should have been acquired from this pool.
+	 */
+	public void release(byte[] buffer) {
+		int length = buffer.length;
+		if (length < MIN_BUFFER_SIZE || length > MAX_BUFFER_SIZE || Integer.bitCount(length) != 1) {
+			return;
+		}
+
+		_sizeClasses[Integer.numberOfTrailingZeros(length) - MIN_SHIFT].offer(buffer);
+	}
+
+	@Override
+	public void onReleased(EncodedMessage message) {
+		release(message.getBytes());
+	}
+
+	private static int getSizeClass(int length) {
+		if (length <= MIN_BUFFER_SIZE) {
+			return 0;
+		}
+		return 32 - Integer.numberOfLeadingZeros(length - 1) - MIN_SHIFT;
+	}
+}
@@ -0,0 +1,180 @@
+package net.jetblack.feedbus.messages;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A message which has already been encoded to its wire format.
+ *
+ * The encoded message is immutable and may be placed on the write queues of
+ * many interactors, so a message fanned out to many subscribers is only
+ * encoded once. The message is reference counted: each holder should call
+ * retain before taking a reference and release when it has finished with it.
+ * Encoded messages are compared by identity.
+ */
+public class EncodedMessage extends Message {
+
+	/**
+	 * A callback invoked when the last reference to an encoded message is released.
+	 */
+	public interface Releaser {
+
+		/**
+		 * Called when the encoded message is no longer referenced.
+		 *
+		 * @param message The released message.
+		 */
+		void onReleased(EncodedMessage message);
+	}
+
+	private final Message _message;
+	private final byte[] _bytes;
+	private final int _length;
+	private final Releaser _releaser;
+	private final AtomicInteger _referenceCount = new AtomicInteger(1);
+
+	/**
+	 * Construct an encoded message with a single reference.
+	 *
+	 * @param message The message which was encoded.
+	 * @param bytes The buffer holding the encoded message.
+	 * @param length The number of bytes used in the buffer.
+	 * @param releaser The callback to invoke when the last reference is released, or null.
+	 */
+	public EncodedMessage(Message message, byte[] bytes, int length, Releaser releaser) {
+		super(message.getType());
+		_message = message;
+		_bytes = bytes;
+		_length = length;
+		_releaser = releaser;
+	}
+
+	/**
+	 * Encode a message.
+	 *
+	 * @param message The message to encode.
+	 * @return The encoded message with a single reference.
+	 * @throws IOException Thrown if the message could not be encoded.
+	 */
+	public static EncodedMessage encode(Message message) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		message.write(new DataOutputStream(buffer));
+		return new EncodedMessage(message, buffer.toByteArray(), buffer.size(), null);
+	}
+
+	@Override
+	public void write(DataOutputStream stream) throws IOException {
+		writeTo(stream);
+	}
+
+	@Override
+	public void writeFrame(DataOutputStream stream) throws IOException {
+		stream.writeInt(_length);
+		writeTo(stream);
+	}
+
+	/**
+	 * Write the encoded bytes to a stream.
+	 *
+	 * @param stream The stream to which the bytes should be written.
+	 * @throws IOException Thrown if the bytes could not be written.
+	 */
+	public void writeTo(OutputStream stream) throws IOException {
+		stream.write(_bytes, 0, _length);
+	}
+
+	/**
+	 * Gets the message which was encoded.
+	 *
+	 * @return The original message.
+	 */
+	public Message getMessage() {
+		return _message;
+	}
+
+	/**
+	 * Gets the number of encoded bytes.
+	 *
+	 * @return The length of the encoded message.
+	 */
+	public int getLength() {
+		return _length;
+	}
+
+	/**
+	 * Gets the buffer holding the encoded bytes. The buffer must not be modified.
+	 *
+	 * @return The buffer.
+	 */
+	public byte[] getBytes() {
+		return _bytes;
+	}
+
+	/**
+	 * Add a reference to the message.
+	 *
+	 * @return This message.
+	 */
+	public EncodedMessage retain() {
+		_referenceCount.incrementAndGet();
+		return this;
+	}
+
+	/**
+	 * Release a reference to the message.
+	 *
+	 * @return True if this was the last reference.
+	 */
+	public boolean release() {
+		int referenceCount = _referenceCount.decrementAndGet();
+		if (referenceCount < 0) {
+			throw new IllegalStateException("The message has already been released");
+		}
+		if (referenceCount > 0) {
+			return false;
+		}
+		if (_releaser != null) {
+			_releaser.onReleased(this);
+		}
+		return true;
+	}
+
+	/**
+	 * Release a reference if the message is encoded.
+	 *
+	 * @param message The message which may be encoded.
+	 */
+	public static void release(Message message) {
+		if (message instanceof EncodedMessage) {
+			((EncodedMessage)message).release();
+		}
+	}
+
+	/**
+	 * Gets the original message if the message is encoded.
+	 *
+	 * @param message The message which may be encoded.
+	 * @return The original message.
+	 */
+	public static Message unwrap(Message message) {
+		return message instanceof EncodedMessage ? ((EncodedMessage)message).getMessage() : message;
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(this);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return this == obj;
+	}
+
+	@Override
+	public String toString() {
+		return "Encoded[" + _message + ", Length=" + _length + "]";
+	}
+}
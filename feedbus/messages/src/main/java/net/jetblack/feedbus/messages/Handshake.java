@@ -0,0 +1,137 @@
+package net.jetblack.feedbus.messages;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A message sent by a client when it connects to announce the protocol
+ * version and the optional features it understands.
+ *
+ * The distributor replies with a handshake holding the version and the
+ * features it has accepted. The client should send nothing else until the
+ * reply arrives, as the features apply to every message after the
+ * handshake in each direction. A client which does not send a handshake is
+ * treated as a legacy client, and only receives unframed messages in the
+ * original wire format.
+ */
+public class Handshake extends Message {
+
+	/**
+	 * The current protocol version.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * The client can receive multicast data as a frame.
+	 */
+	public static final int FEATURE_MULTICAST_FRAMES = 1;
+
+	/**
+	 * Every message after the handshake is sent as a length prefixed frame.
+	 */
+	public static final int FEATURE_FRAMING = 2;
+
+	/**
+	 * Multicast data may carry an alias in place of the feed and topic.
+	 */
+	public static final int FEATURE_ALIASES = 4;
+
+	/**
+	 * Many multicast messages may be published in a single batch.
+	 */
+	public static final int FEATURE_BATCH = 8;
+
+	private final int _version;
+	private final int _features;
+
+	/**
+	 * Construct a handshake.
+	 *
+	 * @param version The protocol version.
+	 * @param features The bit mask of supported features.
+	 */
+	public Handshake(int version, int features) {
+		super(MessageType.Handshake);
+		_version = version;
+		_features = features;
+	}
+
+	/**
+	 * Read the body of the handshake.
+	 *
+	 * @param stream The stream from which to read.
+	 * @return The handshake read from the stream.
+	 * @throws IOException Thrown if the message could not be read.
+	 */
+	public static Handshake readBody(DataInputStream stream) throws IOException {
+		int version = stream.readInt();
+		int features = stream.readInt();
+		return new Handshake(version, features);
+	}
+
+	@Override
+	public void write(DataOutputStream stream) throws IOException {
+		super.write(stream);
+		stream.writeInt(_version);
+		stream.writeInt(_features);
+	}
+
+	/**
+	 * The protocol version.
+	 *
+	 * @return The version.
+	 */
+	public int getVersion() {
+		return _version;
+	}
+
+	/**
+	 * The bit mask of supported features.
+	 *
+	 * @return The features.
+	 */
+	public int getFeatures() {
+		return _features;
+	}
+
+	/**
+	 * Find whether a feature is supported.
+	 *
+	 * @param feature The feature.
+	 * @return True if the feature is supported.
+	 */
+	public boolean supports(int feature) {
+		return (_features & feature) == feature;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = super.hashCode();
+		result = prime * result + _features;
+		result = prime * result + _version;
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!super.equals(obj))
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		Handshake other = (Handshake) obj;
+		if (_features != other._features)
+			return false;
+		if (_version != other._version)
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + ", Version=" + _version + ", Features=" + _features;
+	}
+}
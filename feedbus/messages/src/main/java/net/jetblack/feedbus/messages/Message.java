@@ -1,14 +1,26 @@
 package net.jetblack.feedbus.messages;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 
 /**
  * The base class for all messages.
+ *
+ * A message is written either unframed, as the type followed by the fields
+ * of the message, or as a frame, where the unframed message is preceded by
+ * its length. A frame can be read in a single call, and a frame holding an
+ * unknown message type can be skipped.
  */
 public abstract class Message {
 
+	/**
+	 * The number of bytes holding the length of a frame.
+	 */
+	public static final int FRAME_PREFIX_LENGTH = 4;
+
 	private final MessageType _type;
 
 	/**
@@ -28,13 +40,39 @@ public abstract class Message {
 	 * @throws IOException Thrown if the message could not be read.
 	 */
 	public static Message read(DataInputStream stream) throws IOException {
-		MessageType type = readHeader(stream);
-		
+		return read(stream, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Reads the message from a stream, rejecting a message which declares more data than it may hold.
+	 * 
+	 * The lengths are checked before any buffer is allocated, so a peer cannot
+	 * force a large allocation by sending a large length.
+	 * 
+	 * @param stream The stream from which to read.
+	 * @param maxLength The largest number of bytes of data the message may hold.
+	 * @return The message that was read.
+	 * @throws IOException Thrown if the message could not be read, or declares too much data.
+	 */
+	public static Message read(DataInputStream stream, int maxLength) throws IOException {
+		return readBody(readHeader(stream), stream, maxLength);
+	}
+
+	/**
+	 * Reads the fields of a message of a known type.
+	 * 
+	 * @param type The type of the message, which has already been read.
+	 * @param stream The stream from which to read.
+	 * @param maxLength The largest number of bytes of data the message may hold.
+	 * @return The message that was read.
+	 * @throws IOException Thrown if the message could not be read.
+	 */
+	static Message readBody(MessageType type, DataInputStream stream, int maxLength) throws IOException {
 		switch (type) {
 		case MulticastData:
-			return MulticastData.readBody(stream);
+			return MulticastData.readBody(stream, maxLength);
         case UnicastData:
-            return UnicastData.readBody(stream);
+            return UnicastData.readBody(stream, maxLength);
         case ForwardedSubscriptionRequest:
             return ForwardedSubscriptionRequest.readBody(stream);
         case NotificationRequest:
@@ -43,15 +81,99 @@ public abstract class Message {
             return SubscriptionRequest.readBody(stream);
         case MonitorRequest:
             return MonitorRequest.readBody(stream);
+        case MulticastFrame:
+            return MulticastFrame.readBody(stream, maxLength);
+        case Handshake:
+            return Handshake.readBody(stream);
+        case MulticastBatch:
+            return MulticastBatch.readBody(stream, maxLength);
+        case AliasRegistration:
+            return AliasRegistration.readBody(stream);
+        case AliasedData:
+            return AliasedData.readBody(stream, maxLength);
         default:
             throw new IOException("unknown message type");			
 		}
 	}
 
-	private static MessageType readHeader(DataInputStream stream) throws IOException {
-		Byte b = stream.readByte();
+	/**
+	 * Reads the length of the data held by a message, before the data is allocated.
+	 * 
+	 * @param stream The stream from which to read.
+	 * @param maxLength The largest length allowed.
+	 * @return The length.
+	 * @throws IOException Thrown if the length could not be read, or is not valid.
+	 */
+	static int readLength(DataInputStream stream, int maxLength) throws IOException {
+		int length = stream.readInt();
+		if (length < 0 || length > maxLength) {
+			throw new IOException("invalid data length " + length);
+		}
+		return length;
+	}
+
+	static MessageType readHeader(DataInputStream stream) throws IOException {
+		byte b = stream.readByte();
+		if (b < 0 || b >= MessageType.values().length) {
+			throw new IOException("unknown message type " + b);
+		}
 		return MessageType.values()[b];
 	}
+
+	/**
+	 * Reads a framed message from a stream.
+	 * 
+	 * @param stream The stream from which to read.
+	 * @return The message that was read, or null if the frame held an unknown message type.
+	 * @throws IOException Thrown if the message could not be read.
+	 */
+	public static Message readFrame(DataInputStream stream) throws IOException {
+		return readFrame(stream, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Reads a framed message from a stream, rejecting a frame longer than the
+	 * maximum before it is allocated.
+	 * 
+	 * @param stream The stream from which to read.
+	 * @param maxLength The largest frame length allowed, excluding the length prefix.
+	 * @return The message that was read, or null if the frame held an unknown message type.
+	 * @throws IOException Thrown if the message could not be read, or the frame is too long.
+	 */
+	public static Message readFrame(DataInputStream stream, int maxLength) throws IOException {
+		int length = stream.readInt();
+		if (length < 0 || length > maxLength) {
+			throw new IOException("invalid frame length " + length);
+		}
+
+		byte[] frame = new byte[length];
+		stream.readFully(frame);
+		return decode(frame, 0, length);
+	}
+
+	/**
+	 * Decodes the message held in the body of a frame.
+	 * 
+	 * @param bytes The buffer holding the frame.
+	 * @param offset The offset of the body of the frame, after the length.
+	 * @param length The length of the body of the frame.
+	 * @return The message, or null if the frame held an unknown message type.
+	 * @throws IOException Thrown if the frame did not hold a complete message.
+	 */
+	public static Message decode(byte[] bytes, int offset, int length) throws IOException {
+		if (length == 0 || bytes[offset] < 0 || bytes[offset] >= MessageType.values().length) {
+			return null;
+		}
+
+		ByteArrayInputStream input = new ByteArrayInputStream(bytes, offset, length);
+		DataInputStream stream = new DataInputStream(input);
+		// The lengths within the message are checked against the frame before the data is allocated.
+		Message message = readBody(readHeader(stream), stream, length - 1);
+		if (input.available() != 0) {
+			throw new IOException("the frame holding " + message.getType() + " has " + input.available() + " unread bytes");
+		}
+		return message;
+	}
 	
 	/**
 	 * Write the message to a stream.
@@ -62,6 +184,29 @@ public abstract class Message {
     public void write(DataOutputStream stream) throws IOException {
         stream.write((byte)_type.ordinal());
     }
+
+	/**
+	 * Write the message to a stream as a frame.
+	 * 
+	 * The frame is assembled before it is written, so it reaches the stream in a single write.
+	 * 
+	 * @param stream The stream to which the frame should be written.
+	 * @throws IOException Thrown if the message could not be written.
+	 */
+    public void writeFrame(DataOutputStream stream) throws IOException {
+    	ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    	DataOutputStream bufferStream = new DataOutputStream(buffer);
+    	bufferStream.writeInt(0);
+    	write(bufferStream);
+
+    	byte[] frame = buffer.toByteArray();
+    	int length = frame.length - FRAME_PREFIX_LENGTH;
+    	frame[0] = (byte)(length >>> 24);
+    	frame[1] = (byte)(length >>> 16);
+    	frame[2] = (byte)(length >>> 8);
+    	frame[3] = (byte)length;
+    	stream.write(frame);
+    }
     
     /**
      * The type of the message.
@@ -0,0 +1,244 @@
+package net.jetblack.feedbus.messages;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reads messages, decoding multicast and unicast data into pooled buffers.
+ *
+ * The data messages are read into a buffer taken from a pool, which holds
+ * the message in its unframed wire format, and the feed and topic are taken
+ * from a string cache. Routing a data message therefore allocates little
+ * beyond the message itself, and the buffer can be written to every
+ * subscriber without encoding the message again. Other messages are read as
+ * by Message.read.
+ *
+ * A decoder is not thread safe, and should be owned by the thread which reads
+ * the messages. The receiver of a pooled message must release it; see
+ * PooledMessage.
+ */
+public class MessageDecoder {
+
+	private static final int INITIAL_HEADER_SIZE = 256;
+
+	private final BufferPool _pool;
+	private final StringCache _strings;
+	private byte[] _header = new byte[INITIAL_HEADER_SIZE];
+
+	/**
+	 * Construct a decoder.
+	 *
+	 * @param pool The pool from which buffers are taken.
+	 * @param strings The cache of feed and topic names.
+	 */
+	public MessageDecoder(BufferPool pool, StringCache strings) {
+		_pool = pool;
+		_strings = strings;
+	}
+
+	/**
+	 * Reads a message from a stream.
+	 *
+	 * @param stream The stream from which to read.
+	 * @return The message that was read.
+	 * @throws IOException Thrown if the message could not be read.
+	 */
+	public Message read(DataInputStream stream) throws IOException {
+		return read(stream, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Reads a message from a stream, rejecting a message which declares more
+	 * data than it may hold before a buffer is acquired for it.
+	 *
+	 * @param stream The stream from which to read.
+	 * @param maxLength The largest number of bytes of data the message may hold.
+	 * @return The message that was read.
+	 * @throws IOException Thrown if the message could not be read, or declares too much data.
+	 */
+	public Message read(DataInputStream stream, int maxLength) throws IOException {
+		MessageType type = Message.readHeader(stream);
+		return isPooled(type) ? readPooled(type, stream, maxLength) : Message.readBody(type, stream, maxLength);
+	}
+
+	/**
+	 * Reads a framed message from a stream.
+	 *
+	 * @param stream The stream from which to read.
+	 * @return The message that was read, or null if the frame held an unknown message type.
+	 * @throws IOException Thrown if the message could not be read.
+	 */
+	public Message readFrame(DataInputStream stream) throws IOException {
+		return readFrame(stream, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Reads a framed message from a stream, rejecting a frame longer than the
+	 * maximum before a buffer is acquired for it.
+	 *
+	 * @param stream The stream from which to read.
+	 * @param maxLength The largest frame length allowed, excluding the length prefix.
+	 * @return The message that was read, or null if the frame held an unknown message type.
+	 * @throws IOException Thrown if the message could not be read, or the frame is too long.
+	 */
+	public Message readFrame(DataInputStream stream, int maxLength) throws IOException {
+		int length = stream.readInt();
+		if (length < 0 || length > maxLength) {
+			throw new IOException("invalid frame length " + length);
+		}
+
+		byte[] buffer = _pool.acquire(length);
+		try {
+			stream.readFully(buffer, 0, length);
+		} catch (IOException error) {
+			_pool.release(buffer);
+			throw error;
+		}
+
+		if (length != 0 && isPooled(buffer[0])) {
+			// The frame is read straight into the buffer the message keeps.
+			return wrap(buffer, length);
+		}
+
+		try {
+			return Message.decode(buffer, 0, length);
+		} finally {
+			_pool.release(buffer);
+		}
+	}
+
+	/**
+	 * Decodes the message held in the body of a frame.
+	 *
+	 * @param bytes The buffer holding the frame.
+	 * @param offset The offset of the body of the frame, after the length.
+	 * @param length The length of the body of the frame.
+	 * @return The message, or null if the frame held an unknown message type.
+	 * @throws IOException Thrown if the frame did not hold a complete message.
+	 */
+	public Message decode(byte[] bytes, int offset, int length) throws IOException {
+		if (length == 0 || !isPooled(bytes[offset])) {
+			return Message.decode(bytes, offset, length);
+		}
+
+		byte[] buffer = _pool.acquire(length);
+		System.arraycopy(bytes, offset, buffer, 0, length);
+		return wrap(buffer, length);
+	}
+
+	private static boolean isPooled(byte type) {
+		return type == MessageType.MulticastData.ordinal() || type == MessageType.UnicastData.ordinal();
+	}
+
+	private static boolean isPooled(MessageType type) {
+		return type == MessageType.MulticastData || type == MessageType.UnicastData;
+	}
+
+	/**
+	 * Read the fields of a data message into a pooled buffer. The fields before
+	 * the data are gathered first, so the buffer is only acquired once.
+	 */
+	private Message readPooled(MessageType type, DataInputStream stream, int maxLength) throws IOException {
+		_header[0] = (byte)type.ordinal();
+		int position = 1;
+		if (type == MessageType.UnicastData) {
+			position = readUTF(stream, position);
+		}
+		position = readUTF(stream, position);
+		position = readUTF(stream, position);
+
+		// The image flag and the length of the data.
+		ensureHeaderCapacity(position + 5);
+		stream.readFully(_header, position, 5);
+		int dataLength = getInt(_header, position + 1);
+		if (dataLength < 0 || dataLength > maxLength) {
+			throw new IOException("invalid data length " + dataLength);
+		}
+		position += 5;
+
+		byte[] buffer = _pool.acquire(position + dataLength);
+		System.arraycopy(_header, 0, buffer, 0, position);
+		try {
+			stream.readFully(buffer, position, dataLength);
+		} catch (IOException error) {
+			_pool.release(buffer);
+			throw error;
+		}
+
+		return wrap(buffer, position + dataLength);
+	}
+
+	private int readUTF(DataInputStream stream, int position) throws IOException {
+		int length = stream.readUnsignedShort();
+		ensureHeaderCapacity(position + 2 + length);
+		_header[position] = (byte)(length >>> 8);
+		_header[position + 1] = (byte)length;
+		stream.readFully(_header, position + 2, length);
+		return position + 2 + length;
+	}
+
+	private void ensureHeaderCapacity(int length) {
+		if (_header.length < length) {
+			_header = Arrays.copyOf(_header, Math.max(length, _header.length * 2));
+		}
+	}
+
+	/**
+	 * Create the message over a buffer holding a data message. The buffer is
+	 * released if the message is not valid.
+	 */
+	private Message wrap(byte[] buffer, int length) throws IOException {
+		try {
+			MessageType type = MessageType.values()[buffer[0]];
+			int position = 1;
+
+			String clientId = null;
+			if (type == MessageType.UnicastData) {
+				clientId = getString(type, buffer, position, length);
+				position += 2 + getStringLength(buffer, position);
+			}
+			String feed = getString(type, buffer, position, length);
+			position += 2 + getStringLength(buffer, position);
+			String topic = getString(type, buffer, position, length);
+			position += 2 + getStringLength(buffer, position);
+
+			if (position + 5 > length) {
+				throw new IOException("the " + type + " is truncated");
+			}
+			boolean isImage = buffer[position] != 0;
+			int dataLength = getInt(buffer, position + 1);
+			position += 5;
+			if (dataLength < 0 || position + dataLength != length) {
+				throw new IOException("the " + type + " has a data length of " + dataLength + " with " + (length - position) + " bytes remaining");
+			}
+
+			if (type == MessageType.UnicastData) {
+				return new PooledUnicastData(clientId, feed, topic, isImage, buffer, length, position, dataLength, _pool);
+			} else {
+				return new PooledMulticastData(feed, topic, isImage, buffer, length, position, dataLength, _pool);
+			}
+		} catch (IOException error) {
+			_pool.release(buffer);
+			throw error;
+		}
+	}
+
+	private String getString(MessageType type, byte[] buffer, int position, int length) throws IOException {
+		if (position + 2 > length || position + 2 + getStringLength(buffer, position) > length) {
+			throw new IOException("the " + type + " is truncated");
+		}
+		return _strings.get(buffer, position + 2, getStringLength(buffer, position));
+	}
+
+	private static int getStringLength(byte[] buffer, int position) {
+		return ((buffer[position] & 0xFF) << 8) | (buffer[position + 1] & 0xFF);
+	}
+
+	private static int getInt(byte[] buffer, int position) {
+		return ((buffer[position] & 0xFF) << 24)
+				| ((buffer[position + 1] & 0xFF) << 16)
+				| ((buffer[position + 2] & 0xFF) << 8)
+				| (buffer[position + 3] & 0xFF);
+	}
+}
@@ -9,5 +9,10 @@ public enum MessageType {
     ForwardedSubscriptionRequest,
     NotificationRequest,
     SubscriptionRequest,
-    MonitorRequest
+    MonitorRequest,
+    MulticastFrame,
+    Handshake,
+    MulticastBatch,
+    AliasRegistration,
+    AliasedData
 }
@@ -0,0 +1,172 @@
+package net.jetblack.feedbus.messages;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A message which publishes data on many feeds and topics at once.
+ *
+ * The distributor unpacks the batch and routes each entry as if it had been
+ * published alone, so a publisher which updates many topics together pays
+ * the per-message cost once per batch rather than once per topic. Each entry
+ * is written as a whole multicast message, so it may be a multicast frame or
+ * aliased data when those features have been negotiated.
+ */
+public class MulticastBatch extends Message {
+
+	/**
+	 * The maximum number of entries in a batch.
+	 */
+	public static final int MAX_SIZE = 65536;
+
+	/**
+	 * The number of bytes a batch takes before its entries.
+	 */
+	public static final int HEADER_LENGTH = 5;
+
+	// The length of an entry with an empty feed, topic and data, or an alias.
+	private static final int MIN_ENTRY_LENGTH = 10;
+
+	private final MulticastData[] _entries;
+
+	/**
+	 * Construct a multicast batch.
+	 *
+	 * @param entries The data to publish.
+	 */
+	public MulticastBatch(MulticastData[] entries) {
+		super(MessageType.MulticastBatch);
+		_entries = entries;
+	}
+
+	/**
+	 * Gets the most bytes an entry can take when it is written in a batch.
+	 *
+	 * The feed and topic are counted at three bytes a character, the most
+	 * they can take in modified UTF-8, so the strings need not be encoded.
+	 *
+	 * @param entry The entry.
+	 * @return The largest length of the entry.
+	 */
+	public static long getMaxEntryLength(MulticastData entry) {
+		if (entry instanceof MulticastFrame) {
+			return ((MulticastFrame)entry).getFrame().length;
+		}
+
+		byte[] data = entry.getData();
+		long length = 1 + 1 + 4 + (data == null ? 0 : data.length);
+		if (entry instanceof AliasedData) {
+			return length + 4;
+		}
+		return length + 2 + 3L * entry.getFeed().length() + 2 + 3L * entry.getTopic().length();
+	}
+
+    /**
+     * Read the body of a multicast batch.
+     *
+     * @param stream The stream from which to read.
+     * @return The multicast batch read from the stream.
+     * @throws IOException Thrown if the message could not be read.
+     */
+	public static MulticastBatch readBody(DataInputStream stream) throws IOException {
+		return readBody(stream, Integer.MAX_VALUE);
+	}
+
+    /**
+     * Read the body of a multicast batch of a bounded length.
+     *
+     * The size of the batch and the length of the data of each entry are
+     * checked against the length before they are allocated.
+     *
+     * @param stream The stream from which to read.
+     * @param length The largest number of bytes the rest of the batch may hold.
+     * @return The multicast batch read from the stream.
+     * @throws IOException Thrown if the message could not be read.
+     */
+	static MulticastBatch readBody(DataInputStream stream, int length) throws IOException {
+		int count = stream.readInt();
+		if (count < 0 || count > MAX_SIZE) {
+			throw new IOException("invalid batch size " + count);
+		}
+		if ((long)count * MIN_ENTRY_LENGTH > length - 4L) {
+			throw new IOException("a batch of " + count + " entries cannot fit in " + length + " bytes");
+		}
+
+		MulticastData[] entries = new MulticastData[count];
+		for (int i = 0; i < count; ++i) {
+			entries[i] = readEntry(stream, length);
+		}
+		return new MulticastBatch(entries);
+	}
+
+	private static MulticastData readEntry(DataInputStream stream, int maxLength) throws IOException {
+		MessageType type = readHeader(stream);
+		switch (type) {
+		case MulticastData:
+			return MulticastData.readBody(stream, maxLength);
+		case MulticastFrame:
+			return MulticastFrame.readBody(stream, maxLength);
+		case AliasedData:
+			return AliasedData.readBody(stream, maxLength);
+		default:
+			throw new IOException("a batch cannot hold a " + type);
+		}
+	}
+
+	@Override
+	public void write(DataOutputStream stream) throws IOException {
+		super.write(stream);
+		stream.writeInt(_entries.length);
+		for (MulticastData entry : _entries) {
+			entry.write(stream);
+		}
+	}
+
+	/**
+	 * The number of entries in the batch.
+	 *
+	 * @return The size of the batch.
+	 */
+	public int size() {
+		return _entries.length;
+	}
+
+	/**
+	 * Gets an entry of the batch.
+	 *
+	 * @param index The index of the entry.
+	 * @return The entry.
+	 */
+	public MulticastData getEntry(int index) {
+		return _entries[index];
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = super.hashCode();
+		result = prime * result + Arrays.hashCode(_entries);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!super.equals(obj))
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		MulticastBatch other = (MulticastBatch) obj;
+		if (!Arrays.equals(_entries, other._entries))
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + ", Size=" + _entries.length;
+	}
+}
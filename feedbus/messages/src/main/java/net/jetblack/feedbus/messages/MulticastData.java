@@ -24,12 +24,25 @@ public class MulticastData extends Message {
 	 * @param data The data transmitted.
 	 */
     public MulticastData(String feed, String topic, boolean isImage, byte[] data) {
-    	super(MessageType.MulticastData);
+    	this(MessageType.MulticastData, feed, topic, isImage, data);
+	}
+
+    /**
+     * Construct a multicast message with a specific wire format.
+     * 
+     * @param type The type of the message.
+     * @param feed The name of the feed.
+     * @param topic The name of the topic.
+     * @param isImage If true the data represents the full image, otherwise it is a delta.
+     * @param data The data transmitted.
+     */
+    protected MulticastData(MessageType type, String feed, String topic, boolean isImage, byte[] data) {
+    	super(type);
 	    _feed = feed;
 	    _topic = topic;
 	    _isImage = isImage;
 	    _data = data;
-	}
+    }
 
     /**
      * Read the body of a multicast message.
@@ -39,10 +52,22 @@ public class MulticastData extends Message {
      * @throws IOException Thrown if the message could not be read.
      */
 	public static MulticastData readBody(DataInputStream stream) throws IOException {
+		return readBody(stream, Integer.MAX_VALUE);
+	}
+
+    /**
+     * Read the body of a multicast message, checking the length of the data before it is allocated.
+     * 
+     * @param stream The stream from which to read.
+     * @param maxLength The largest number of bytes of data allowed.
+     * @return The multicast message read from the stream.
+     * @throws IOException Thrown if the message could not be read.
+     */
+	static MulticastData readBody(DataInputStream stream, int maxLength) throws IOException {
 	    String feed = stream.readUTF();
 	    String topic = stream.readUTF();
 	    boolean isImage = stream.readBoolean();
-	    int len = stream.readInt();
+	    int len = readLength(stream, maxLength);
 	    byte[] data = len == 0 ? null : new byte[len];
 	    if (len > 0) {
 	    	stream.readFully(data);
@@ -57,11 +82,13 @@ public class MulticastData extends Message {
 	    stream.writeUTF(_feed);
 	    stream.writeUTF(_topic);
 	    stream.writeBoolean(_isImage);
-	    if (_data == null) {
+	    // A derived message may hold its data elsewhere.
+	    byte[] data = getData();
+	    if (data == null) {
 		    stream.writeInt(0);
 	    } else {
-		    stream.writeInt(_data.length);
-		    stream.write(_data);
+		    stream.writeInt(data.length);
+		    stream.write(data);
 	    }
 	}
 	
@@ -0,0 +1,164 @@
+package net.jetblack.feedbus.messages;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A multicast message in the framed wire format.
+ *
+ * The frame is the type byte, followed by the length of the rest of the frame
+ * as an int, followed by a fixed header of the feed, topic and image flag, and
+ * finally the data which runs to the end of the frame. A reader can take the
+ * whole frame in one read, decode only the header, and forward the original
+ * bytes without touching the data.
+ */
+public class MulticastFrame extends MulticastData {
+
+	private static final int PREFIX_LENGTH = 5;
+
+	private final byte[] _frame;
+	private final int _dataOffset;
+
+	private MulticastFrame(String feed, String topic, boolean isImage, byte[] frame, int dataOffset) {
+		super(MessageType.MulticastFrame, feed, topic, isImage, null);
+		_frame = frame;
+		_dataOffset = dataOffset;
+	}
+
+	/**
+	 * Create a framed multicast message.
+	 *
+	 * @param feed The name of the feed.
+	 * @param topic The name of the topic.
+	 * @param isImage If true the data represents the full image, otherwise it is a delta.
+	 * @param data The data transmitted.
+	 * @return The framed message.
+	 * @throws IOException Thrown if the message could not be framed.
+	 */
+	public static MulticastFrame create(String feed, String topic, boolean isImage, byte[] data) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream stream = new DataOutputStream(buffer);
+		stream.write((byte)MessageType.MulticastFrame.ordinal());
+		stream.writeInt(0);
+		stream.writeUTF(feed);
+		stream.writeUTF(topic);
+		stream.writeBoolean(isImage);
+		int dataOffset = buffer.size();
+		if (data != null) {
+			stream.write(data);
+		}
+
+		byte[] frame = buffer.toByteArray();
+		writeLength(frame, frame.length - PREFIX_LENGTH);
+		return new MulticastFrame(feed, topic, isImage, frame, dataOffset);
+	}
+
+	/**
+	 * Read the body of a framed multicast message.
+	 *
+	 * The rest of the frame is read in a single call, and only the header is decoded.
+	 *
+	 * @param stream The stream from which to read.
+	 * @return The framed message read from the stream.
+	 * @throws IOException Thrown if the message could not be read.
+	 */
+	public static MulticastFrame readBody(DataInputStream stream) throws IOException {
+		return readBody(stream, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Read the body of a framed multicast message, checking the length of the
+	 * frame before it is allocated.
+	 *
+	 * @param stream The stream from which to read.
+	 * @param maxLength The largest frame length allowed.
+	 * @return The framed message read from the stream.
+	 * @throws IOException Thrown if the message could not be read.
+	 */
+	static MulticastFrame readBody(DataInputStream stream, int maxLength) throws IOException {
+		int length = stream.readInt();
+		if (length < 0 || length > maxLength) {
+			throw new IOException("invalid frame length " + length);
+		}
+
+		byte[] frame = new byte[PREFIX_LENGTH + length];
+		frame[0] = (byte)MessageType.MulticastFrame.ordinal();
+		writeLength(frame, length);
+		stream.readFully(frame, PREFIX_LENGTH, length);
+
+		ByteArrayInputStream header = new ByteArrayInputStream(frame, PREFIX_LENGTH, length);
+		DataInputStream headerStream = new DataInputStream(header);
+		String feed = headerStream.readUTF();
+		String topic = headerStream.readUTF();
+		boolean isImage = headerStream.readBoolean();
+		int dataOffset = frame.length - header.available();
+
+		return new MulticastFrame(feed, topic, isImage, frame, dataOffset);
+	}
+
+	private static void writeLength(byte[] frame, int length) {
+		frame[1] = (byte)(length >>> 24);
+		frame[2] = (byte)(length >>> 16);
+		frame[3] = (byte)(length >>> 8);
+		frame[4] = (byte)length;
+	}
+
+	@Override
+	public void write(DataOutputStream stream) throws IOException {
+		stream.write(_frame);
+	}
+
+	/**
+	 * Gets the bytes of the whole frame. The bytes must not be modified.
+	 *
+	 * @return The frame.
+	 */
+	public byte[] getFrame() {
+		return _frame;
+	}
+
+	/**
+	 * Gets a copy of the data carried by the frame.
+	 *
+	 * @return The data, or null if the frame carries no data.
+	 */
+	@Override
+	public byte[] getData() {
+		return _dataOffset == _frame.length ? null : Arrays.copyOfRange(_frame, _dataOffset, _frame.length);
+	}
+
+	/**
+	 * Convert the frame to a message in the unframed wire format.
+	 *
+	 * @return The unframed message.
+	 */
+	public MulticastData toMulticastData() {
+		return new MulticastData(getFeed(), getTopic(), isImage(), getData());
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(_frame);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		MulticastFrame other = (MulticastFrame) obj;
+		return Arrays.equals(_frame, other._frame);
+	}
+
+	@Override
+	public String toString() {
+		return "MessageType=" + getType() + ", Feed=\"" + getFeed() + "\", Topic=\"" + getTopic() + "\", IsImage=" + isImage() + ", Length=" + (_frame.length - _dataOffset);
+	}
+}
@@ -0,0 +1,68 @@
+package net.jetblack.feedbus.messages;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * An input stream over a buffer which may hold an incomplete message.
+ *
+ * When a read runs past the end of the buffer the stream records how many
+ * bytes the read needed, so a non-blocking reader can wait until that many
+ * bytes have arrived before it parses the message again, rather than parsing
+ * it from the start after every short read. The data of a large message is
+ * read in one call, so its whole length is known after the first attempt.
+ */
+public class PartialInputStream extends ByteArrayInputStream {
+
+	private final int _offset;
+	private int _requiredLength;
+
+	/**
+	 * Construct the stream.
+	 *
+	 * @param buf The buffer.
+	 * @param offset The offset of the first byte to read.
+	 * @param length The number of bytes which may be read.
+	 */
+	public PartialInputStream(byte[] buf, int offset, int length) {
+		super(buf, offset, length);
+		_offset = offset;
+	}
+
+	@Override
+	public synchronized int read() {
+		if (pos >= count) {
+			require(1);
+		}
+		return super.read();
+	}
+
+	@Override
+	public synchronized int read(byte[] b, int off, int len) {
+		if (len > count - pos) {
+			require(len);
+		}
+		return super.read(b, off, len);
+	}
+
+	private void require(int length) {
+		_requiredLength = (int)Math.max(_requiredLength, Math.min(Integer.MAX_VALUE, (long)pos - _offset + length));
+	}
+
+	/**
+	 * Gets the number of bytes from the start of the stream needed by a read which ran past the end.
+	 *
+	 * @return The required length, or 0 if every read was satisfied.
+	 */
+	public int getRequiredLength() {
+		return _requiredLength;
+	}
+
+	/**
+	 * Gets the number of bytes read from the start of the stream.
+	 *
+	 * @return The number of bytes read.
+	 */
+	public int getPosition() {
+		return pos - _offset;
+	}
+}
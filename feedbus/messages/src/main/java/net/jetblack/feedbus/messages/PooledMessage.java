@@ -0,0 +1,21 @@
+package net.jetblack.feedbus.messages;
+
+/**
+ * A message decoded into a pooled buffer.
+ *
+ * The buffer holds the message in its unframed wire format, and is returned
+ * to the pool when the last reference to the encoded message is released.
+ * The decoder holds the first reference, which the receiver of the message
+ * must release when it has finished with it. Every other holder, such as a
+ * write queue, must retain the encoded message before taking a reference.
+ * The fields of the message must not be read after the last release.
+ */
+public interface PooledMessage {
+
+	/**
+	 * Gets the encoded message which owns the pooled buffer.
+	 *
+	 * @return The encoded message.
+	 */
+	EncodedMessage getEncoded();
+}
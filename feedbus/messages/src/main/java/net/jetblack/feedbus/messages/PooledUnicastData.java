@@ -0,0 +1,69 @@
+package net.jetblack.feedbus.messages;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A unicast message decoded into a pooled buffer.
+ *
+ * The data is held in the buffer, so getData returns a copy. The message is
+ * written by copying the buffer, which already holds its wire format.
+ * Pooled messages are compared by identity.
+ */
+public class PooledUnicastData extends UnicastData implements PooledMessage {
+
+	private final EncodedMessage _encoded;
+	private final int _dataOffset;
+	private final int _dataLength;
+
+	/**
+	 * Construct a unicast message over a pooled buffer.
+	 *
+	 * @param clientId The id of the client.
+	 * @param feed The name of the feed.
+	 * @param topic The name of the topic.
+	 * @param isImage If true the data represents a complete image, otherwise it is a delta.
+	 * @param buffer The buffer holding the unframed message.
+	 * @param length The length of the message in the buffer.
+	 * @param dataOffset The offset of the data in the buffer.
+	 * @param dataLength The length of the data.
+	 * @param pool The pool to which the buffer is released.
+	 */
+	public PooledUnicastData(String clientId, String feed, String topic, boolean isImage, byte[] buffer, int length, int dataOffset, int dataLength, BufferPool pool) {
+		super(clientId, feed, topic, isImage, null);
+		_encoded = new EncodedMessage(this, buffer, length, pool);
+		_dataOffset = dataOffset;
+		_dataLength = dataLength;
+	}
+
+	@Override
+	public EncodedMessage getEncoded() {
+		return _encoded;
+	}
+
+	@Override
+	public byte[] getData() {
+		return _dataLength == 0 ? null : Arrays.copyOfRange(_encoded.getBytes(), _dataOffset, _dataOffset + _dataLength);
+	}
+
+	@Override
+	public void write(DataOutputStream stream) throws IOException {
+		_encoded.writeTo(stream);
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(this);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return this == obj;
+	}
+
+	@Override
+	public String toString() {
+		return "MessageType=" + getType() + ", ClientId=" + getClientId() + ", Feed=" + getFeed() + ", Topic=" + getTopic() + ", IsImage=" + isImage() + ", DataLength=" + _dataLength;
+	}
+}
@@ -0,0 +1,86 @@
+package net.jetblack.feedbus.messages;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A cache of the strings decoded from messages.
+ *
+ * Feed and topic names repeat from one message to the next, so the cache
+ * returns the string decoded previously for the same bytes rather than
+ * allocating a new one. The cache is direct mapped: a name replaces any
+ * other name with the same slot. Only ASCII names are cached.
+ *
+ * The cache is not thread safe, and should be owned by the thread which reads
+ * the messages.
+ */
+public class StringCache {
+
+	/**
+	 * The default number of slots in the cache.
+	 */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	private final String[] _strings;
+	private final int _mask;
+
+	/**
+	 * Construct a cache with the default capacity.
+	 */
+	public StringCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Construct a cache.
+	 *
+	 * @param capacity The number of slots, which is rounded up to a power of two.
+	 */
+	public StringCache(int capacity) {
+		int size = Integer.highestOneBit(Math.max(1, capacity - 1) << 1);
+		_strings = new String[size];
+		_mask = size - 1;
+	}
+
+	/**
+	 * Get the string written with DataOutput.writeUTF.
+	 *
+	 * @param bytes The buffer holding the string.
+	 * @param offset The offset of the encoded string, after the two byte length.
+	 * @param length The length of the encoded string.
+	 * @return The decoded string.
+	 * @throws IOException Thrown if the bytes are not a valid string.
+	 */
+	public String get(byte[] bytes, int offset, int length) throws IOException {
+		int hash = 0;
+		for (int i = offset; i < offset + length; ++i) {
+			if (bytes[i] < 0) {
+				// Characters outside ASCII use the modified UTF-8 of DataInput.
+				return new DataInputStream(new ByteArrayInputStream(bytes, offset - 2, length + 2)).readUTF();
+			}
+			hash = 31 * hash + bytes[i];
+		}
+
+		int slot = (hash ^ (hash >>> 16)) & _mask;
+		String string = _strings[slot];
+		if (string == null || !matches(string, bytes, offset, length)) {
+			string = new String(bytes, offset, length, StandardCharsets.US_ASCII);
+			_strings[slot] = string;
+		}
+		return string;
+	}
+
+	private static boolean matches(String string, byte[] bytes, int offset, int length) {
+		if (string.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; ++i) {
+			if (string.charAt(i) != bytes[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
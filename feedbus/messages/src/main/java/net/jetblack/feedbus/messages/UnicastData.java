@@ -42,11 +42,23 @@ public class UnicastData extends Message {
      * @throws IOException Thrown when the message cannot be read.
      */
 	public static UnicastData readBody(DataInputStream stream) throws IOException {
+		return readBody(stream, Integer.MAX_VALUE);
+	}
+
+    /**
+     * Read the body of a unicast message, checking the length of the data before it is allocated.
+     * 
+     * @param stream The stream to read from.
+     * @param maxLength The largest number of bytes of data allowed.
+     * @return A unicast message.
+     * @throws IOException Thrown when the message cannot be read.
+     */
+	static UnicastData readBody(DataInputStream stream, int maxLength) throws IOException {
 	    String clientId = stream.readUTF();
 	    String feed = stream.readUTF();
 	    String topic = stream.readUTF();
 	    boolean isImage = stream.readBoolean();
-	    int len = stream.readInt();
+	    int len = readLength(stream, maxLength);
 	    byte[] data = len == 0 ? null : new byte[len];
 	    if (len > 0) {
 	    	stream.readFully(data);
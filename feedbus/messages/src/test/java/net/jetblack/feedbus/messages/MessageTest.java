@@ -0,0 +1,220 @@
+package net.jetblack.feedbus.messages;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class MessageTest {
+
+	private static final byte[] DATA = new byte[] { 1, 2, 3, 4 };
+
+	private static byte[] write(Message message) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		message.write(new DataOutputStream(buffer));
+		return buffer.toByteArray();
+	}
+
+	private static byte[] writeFrame(Message message) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		message.writeFrame(new DataOutputStream(buffer));
+		return buffer.toByteArray();
+	}
+
+	private static Message read(byte[] bytes) throws IOException {
+		DataInputStream stream = new DataInputStream(new ByteArrayInputStream(bytes));
+		Message message = Message.read(stream);
+		assertEquals(0, stream.available());
+		return message;
+	}
+
+	private static Message readFrame(byte[] bytes) throws IOException {
+		DataInputStream stream = new DataInputStream(new ByteArrayInputStream(bytes));
+		Message message = Message.readFrame(stream);
+		assertEquals(0, stream.available());
+		return message;
+	}
+
+	private static void assertRoundTrip(Message message) throws IOException {
+		assertEquals(message, read(write(message)));
+
+		byte[] frame = writeFrame(message);
+		assertEquals(message, readFrame(frame));
+		assertEquals(message, Message.decode(frame, Message.FRAME_PREFIX_LENGTH, frame.length - Message.FRAME_PREFIX_LENGTH));
+	}
+
+	@Test
+	public void handshakeRoundTrips() throws IOException {
+		Handshake handshake = new Handshake(Handshake.VERSION, Handshake.FEATURE_FRAMING | Handshake.FEATURE_BATCH);
+
+		assertRoundTrip(handshake);
+
+		Handshake received = (Handshake)read(write(handshake));
+		assertEquals(Handshake.VERSION, received.getVersion());
+		assertTrue(received.supports(Handshake.FEATURE_FRAMING));
+		assertTrue(received.supports(Handshake.FEATURE_BATCH));
+		assertFalse(received.supports(Handshake.FEATURE_ALIASES));
+		assertFalse(received.supports(Handshake.FEATURE_FRAMING | Handshake.FEATURE_ALIASES));
+	}
+
+	@Test
+	public void requestsRoundTrip() throws IOException {
+		assertRoundTrip(new SubscriptionRequest("FEED", "TOPIC", true));
+		assertRoundTrip(new MonitorRequest("FEED", false));
+		assertRoundTrip(new NotificationRequest("FEED", true));
+		assertRoundTrip(new ForwardedSubscriptionRequest("CLIENT", "FEED", "TOPIC", true));
+		assertRoundTrip(new AliasRegistration(3, "FEED", "TOPIC"));
+	}
+
+	@Test
+	public void dataRoundTrips() throws IOException {
+		assertRoundTrip(new MulticastData("FEED", "TOPIC", true, DATA));
+		assertRoundTrip(new MulticastData("FEED", "TOPIC", false, null));
+		assertRoundTrip(new UnicastData("CLIENT", "FEED", "TOPIC", true, DATA));
+	}
+
+	@Test
+	public void multicastFrameRoundTrips() throws IOException {
+		MulticastFrame frame = MulticastFrame.create("FEED", "TOPIC", true, DATA);
+
+		assertRoundTrip(frame);
+
+		MulticastFrame received = (MulticastFrame)read(write(frame));
+		assertEquals("FEED", received.getFeed());
+		assertEquals("TOPIC", received.getTopic());
+		assertTrue(received.isImage());
+		assertArrayEquals(DATA, received.getData());
+		assertEquals(new MulticastData("FEED", "TOPIC", true, DATA), received.toMulticastData());
+	}
+
+	@Test
+	public void emptyMulticastFrameHasNoData() throws IOException {
+		MulticastFrame frame = MulticastFrame.create("FEED", "TOPIC", false, null);
+
+		assertNull(((MulticastFrame)read(write(frame))).getData());
+	}
+
+	@Test
+	public void aliasedDataRoundTripsWithoutTheFeedAndTopic() throws IOException {
+		AliasedData aliased = new AliasedData(3, "FEED", "TOPIC", true, DATA);
+
+		AliasedData received = (AliasedData)read(write(aliased));
+
+		assertEquals(new AliasedData(3, null, null, true, DATA), received);
+		assertEquals(new MulticastData("FEED", "TOPIC", true, DATA), received.resolve("FEED", "TOPIC"));
+	}
+
+	@Test
+	public void multicastBatchRoundTrips() throws IOException {
+		MulticastBatch batch = new MulticastBatch(new MulticastData[] {
+				new MulticastData("FEED", "A", true, DATA),
+				MulticastFrame.create("FEED", "B", false, DATA),
+				new AliasedData(3, null, null, false, null)
+		});
+
+		assertRoundTrip(batch);
+		assertRoundTrip(new MulticastBatch(new MulticastData[0]));
+	}
+
+	@Test
+	public void maxEntryLengthCoversTheWrittenEntry() throws IOException {
+		MulticastData[] entries = new MulticastData[] {
+				new MulticastData("FEED", "TOPIC", true, DATA),
+				new MulticastData("FEED", "\u00e9\u20ac", false, null),
+				MulticastFrame.create("FEED", "TOPIC", true, DATA),
+				new AliasedData(3, "FEED", "TOPIC", false, DATA)
+		};
+
+		long length = MulticastBatch.HEADER_LENGTH;
+		for (MulticastData entry : entries) {
+			assertTrue(write(entry).length <= MulticastBatch.getMaxEntryLength(entry));
+			length += MulticastBatch.getMaxEntryLength(entry);
+		}
+		assertTrue(write(new MulticastBatch(entries)).length <= length);
+		assertEquals(write(entries[2]).length, MulticastBatch.getMaxEntryLength(entries[2]));
+	}
+
+	@Test(expected = IOException.class)
+	public void batchLargerThanItsFrameIsRejected() throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream stream = new DataOutputStream(buffer);
+		stream.write((byte)MessageType.MulticastBatch.ordinal());
+		stream.writeInt(MulticastBatch.MAX_SIZE);
+		byte[] body = buffer.toByteArray();
+
+		Message.decode(body, 0, body.length);
+	}
+
+	@Test(expected = IOException.class)
+	public void batchLargerThanTheMaximumIsRejected() throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream stream = new DataOutputStream(buffer);
+		stream.write((byte)MessageType.MulticastBatch.ordinal());
+		stream.writeInt(MulticastBatch.MAX_SIZE + 1);
+
+		read(buffer.toByteArray());
+	}
+
+	@Test(expected = IOException.class)
+	public void batchCannotHoldOtherMessages() throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream stream = new DataOutputStream(buffer);
+		stream.write((byte)MessageType.MulticastBatch.ordinal());
+		stream.writeInt(1);
+		new SubscriptionRequest("FEED", "TOPIC", true).write(stream);
+
+		read(buffer.toByteArray());
+	}
+
+	@Test(expected = IOException.class)
+	public void dataLongerThanTheLimitIsRejectedBeforeItIsRead() throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream stream = new DataOutputStream(buffer);
+		stream.write((byte)MessageType.MulticastData.ordinal());
+		stream.writeUTF("FEED");
+		stream.writeUTF("TOPIC");
+		stream.writeBoolean(true);
+		stream.writeInt(Integer.MAX_VALUE);
+
+		Message.read(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())), 1024);
+	}
+
+	@Test(expected = IOException.class)
+	public void frameLongerThanTheLimitIsRejectedBeforeItIsRead() throws IOException {
+		byte[] frame = new byte[] { 0x7f, 0, 0, 0, (byte)MessageType.MulticastData.ordinal() };
+
+		Message.readFrame(new DataInputStream(new ByteArrayInputStream(frame)), 1024);
+	}
+
+	@Test(expected = IOException.class)
+	public void multicastFrameLongerThanTheLimitIsRejected() throws IOException {
+		byte[] frame = new byte[] { (byte)MessageType.MulticastFrame.ordinal(), 0x7f, 0, 0, 0 };
+
+		Message.read(new DataInputStream(new ByteArrayInputStream(frame)), 1024);
+	}
+
+	@Test
+	public void unknownFrameIsSkipped() throws IOException {
+		byte[] frame = new byte[] { 0, 0, 0, 2, (byte)MessageType.values().length, 0 };
+
+		assertNull(readFrame(frame));
+	}
+
+	@Test(expected = IOException.class)
+	public void frameWithUnreadBytesIsRejected() throws IOException {
+		byte[] frame = writeFrame(new MonitorRequest("FEED", true));
+		byte[] padded = new byte[frame.length + 1];
+		System.arraycopy(frame, 0, padded, 0, frame.length);
+
+		Message.decode(padded, Message.FRAME_PREFIX_LENGTH, padded.length - Message.FRAME_PREFIX_LENGTH);
+	}
+}
@@ -0,0 +1,61 @@
+package net.jetblack.feedbus.messages;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class PartialInputStreamTest {
+
+	private static byte[] write(Message message) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		message.write(new DataOutputStream(buffer));
+		return buffer.toByteArray();
+	}
+
+	@Test
+	public void completeMessageRequiresNothing() throws IOException {
+		byte[] bytes = write(new MulticastData("FEED", "TOPIC", true, new byte[100]));
+		PartialInputStream input = new PartialInputStream(bytes, 0, bytes.length);
+
+		Message.read(new DataInputStream(input));
+
+		assertEquals(0, input.getRequiredLength());
+		assertEquals(bytes.length, input.getPosition());
+	}
+
+	@Test
+	public void truncatedDataRequiresTheWholeMessage() throws IOException {
+		byte[] bytes = write(new MulticastData("FEED", "TOPIC", true, new byte[100]));
+		// Cut the message inside the data, after the length has been written.
+		PartialInputStream input = new PartialInputStream(bytes, 0, bytes.length - 50);
+
+		try {
+			Message.read(new DataInputStream(input));
+			fail("The message should be incomplete");
+		} catch (EOFException error) {
+			assertEquals(bytes.length, input.getRequiredLength());
+		}
+	}
+
+	@Test
+	public void requiredLengthIsMeasuredFromTheOffset() throws IOException {
+		byte[] message = write(new MulticastData("FEED", "TOPIC", false, new byte[10]));
+		byte[] bytes = new byte[7 + message.length];
+		System.arraycopy(message, 0, bytes, 7, message.length);
+		PartialInputStream input = new PartialInputStream(bytes, 7, message.length - 5);
+
+		try {
+			Message.read(new DataInputStream(input));
+			fail("The message should be incomplete");
+		} catch (EOFException error) {
+			assertEquals(message.length, input.getRequiredLength());
+		}
+	}
+}
@@ -0,0 +1,291 @@
+package net.jetblack.feedbus.util;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A hash map with primitive integer keys.
+ *
+ * The keys and values are held in parallel arrays using open addressing with
+ * linear probing, so lookups neither box the key nor allocate. Null values are
+ * not permitted. The map is not thread safe.
+ *
+ * @param <V> The type of the values.
+ */
+public class IntObjectMap<V> implements Iterable<IntObjectMap.Entry<V>> {
+
+	/**
+	 * An entry in the map.
+	 *
+	 * @param <V> The type of the value.
+	 */
+	public static class Entry<V> {
+
+		private final int _key;
+		private final V _value;
+
+		Entry(int key, V value) {
+			_key = key;
+			_value = value;
+		}
+
+		/**
+		 * Gets the key.
+		 * @return The key.
+		 */
+		public int getKey() {
+			return _key;
+		}
+
+		/**
+		 * Gets the value.
+		 * @return The value.
+		 */
+		public V getValue() {
+			return _value;
+		}
+
+		@Override
+		public String toString() {
+			return _key + "=" + _value;
+		}
+	}
+
+	private static final int DEFAULT_CAPACITY = 8;
+
+	private int[] _keys;
+	private Object[] _values;
+	private int _mask;
+	private int _size;
+	private int _modifications;
+
+	/**
+	 * Construct an empty map.
+	 */
+	public IntObjectMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Construct an empty map.
+	 *
+	 * @param expectedSize The number of entries the map should hold without resizing.
+	 */
+	public IntObjectMap(int expectedSize) {
+		int capacity = DEFAULT_CAPACITY;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	/**
+	 * Gets the number of entries in the map.
+	 * @return The number of entries.
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Gets whether the map is empty.
+	 * @return True if the map has no entries.
+	 */
+	public boolean isEmpty() {
+		return _size == 0;
+	}
+
+	/**
+	 * Get the value for a key.
+	 *
+	 * @param key The key.
+	 * @return The value, or null if the key is not in the map.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		for (int index = indexOf(key); _values[index] != null; index = (index + 1) & _mask) {
+			if (_keys[index] == key) {
+				return (V)_values[index];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets whether the map holds a key.
+	 *
+	 * @param key The key.
+	 * @return True if the key is in the map.
+	 */
+	public boolean containsKey(int key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Add or replace the value for a key.
+	 *
+	 * @param key The key.
+	 * @param value The value, which must not be null.
+	 * @return The previous value, or null if the key was not in the map.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("value");
+		}
+
+		int index = indexOf(key);
+		for (; _values[index] != null; index = (index + 1) & _mask) {
+			if (_keys[index] == key) {
+				V previous = (V)_values[index];
+				_values[index] = value;
+				return previous;
+			}
+		}
+
+		_keys[index] = key;
+		_values[index] = value;
+		++_modifications;
+		if (++_size * 2 > _values.length) {
+			resize(_values.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * Remove a key from the map.
+	 *
+	 * @param key The key.
+	 * @return The value which was removed, or null if the key was not in the map.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+		for (int index = indexOf(key); _values[index] != null; index = (index + 1) & _mask) {
+			if (_keys[index] == key) {
+				V previous = (V)_values[index];
+				removeAt(index);
+				return previous;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Remove all the entries.
+	 */
+	public void clear() {
+		Arrays.fill(_values, null);
+		_size = 0;
+		++_modifications;
+	}
+
+	/**
+	 * Gets the keys in the map.
+	 *
+	 * @return A new array holding the keys.
+	 */
+	public int[] keys() {
+		int[] keys = new int[_size];
+		int count = 0;
+		for (int index = 0; index < _values.length; ++index) {
+			if (_values[index] != null) {
+				keys[count++] = _keys[index];
+			}
+		}
+		return keys;
+	}
+
+	@Override
+	public Iterator<Entry<V>> iterator() {
+		return new Iterator<Entry<V>>() {
+			private final int _expectedModifications = _modifications;
+			private int _index = advance(0);
+
+			private int advance(int index) {
+				while (index < _values.length && _values[index] == null) {
+					++index;
+				}
+				return index;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return _index < _values.length;
+			}
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public Entry<V> next() {
+				if (_modifications != _expectedModifications) {
+					throw new ConcurrentModificationException();
+				}
+				if (_index >= _values.length) {
+					throw new NoSuchElementException();
+				}
+				Entry<V> entry = new Entry<V>(_keys[_index], (V)_values[_index]);
+				_index = advance(_index + 1);
+				return entry;
+			}
+		};
+	}
+
+	private int indexOf(int key) {
+		// Spread the bits so dense keys do not form long probe sequences.
+		int hash = key * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & _mask;
+	}
+
+	private void removeAt(int index) {
+		_values[index] = null;
+		--_size;
+		++_modifications;
+
+		// Shift back any following entries which would no longer be reachable.
+		int gap = index;
+		for (int next = (index + 1) & _mask; _values[next] != null; next = (next + 1) & _mask) {
+			int home = indexOf(_keys[next]);
+			if (((next - home) & _mask) >= ((next - gap) & _mask)) {
+				_keys[gap] = _keys[next];
+				_values[gap] = _values[next];
+				_values[next] = null;
+				gap = next;
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		_keys = new int[capacity];
+		_values = new Object[capacity];
+		_mask = capacity - 1;
+	}
+
+	private void resize(int capacity) {
+		int[] keys = _keys;
+		Object[] values = _values;
+		allocate(capacity);
+		for (int i = 0; i < values.length; ++i) {
+			if (values[i] != null) {
+				int index = indexOf(keys[i]);
+				while (_values[index] != null) {
+					index = (index + 1) & _mask;
+				}
+				_keys[index] = keys[i];
+				_values[index] = values[i];
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("{");
+		for (Entry<V> entry : this) {
+			if (builder.length() > 1) {
+				builder.append(", ");
+			}
+			builder.append(entry);
+		}
+		return builder.append('}').toString();
+	}
+}
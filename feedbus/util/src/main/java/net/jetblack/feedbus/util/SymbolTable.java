@@ -0,0 +1,91 @@
+package net.jetblack.feedbus.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A thread safe table which maps strings to dense integer identifiers.
+ *
+ * Identifiers are allocated from zero in the order the strings are first seen,
+ * so they may be used to index arrays or as keys for primitive maps. Symbols
+ * are never removed, so the table should only be used for names which recur,
+ * such as feeds and topics.
+ */
+public class SymbolTable {
+
+	/**
+	 * The identifier returned for a string which has no symbol.
+	 */
+	public static final int NONE = -1;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final ConcurrentMap<String, Integer> _ids = new ConcurrentHashMap<String, Integer>();
+	private final Object _lock = new Object();
+
+	private volatile String[] _symbols = new String[INITIAL_CAPACITY];
+	private int _count;
+
+	/**
+	 * Get the identifier for a string, allocating one if the string has not been seen before.
+	 *
+	 * @param symbol The string.
+	 * @return The identifier of the string, or NONE if the string is null.
+	 */
+	public int intern(String symbol) {
+		if (symbol == null) {
+			return NONE;
+		}
+
+		Integer id = _ids.get(symbol);
+		if (id != null) {
+			return id;
+		}
+
+		synchronized (_lock) {
+			id = _ids.get(symbol);
+			if (id != null) {
+				return id;
+			}
+
+			if (_count == _symbols.length) {
+				_symbols = Arrays.copyOf(_symbols, _count * 2);
+			}
+			// The symbol is stored before the identifier is published through the map.
+			_symbols[_count] = symbol;
+			_ids.put(symbol, _count);
+			return _count++;
+		}
+	}
+
+	/**
+	 * Get the identifier for a string without allocating one.
+	 *
+	 * @param symbol The string.
+	 * @return The identifier of the string, or NONE if the string has not been interned.
+	 */
+	public int lookup(String symbol) {
+		Integer id = symbol == null ? null : _ids.get(symbol);
+		return id == null ? NONE : id;
+	}
+
+	/**
+	 * Get the string for an identifier.
+	 *
+	 * @param id An identifier returned by intern.
+	 * @return The string.
+	 */
+	public String getSymbol(int id) {
+		return _symbols[id];
+	}
+
+	/**
+	 * Gets the number of symbols in the table.
+	 *
+	 * @return The number of symbols.
+	 */
+	public int size() {
+		return _ids.size();
+	}
+}
@@ -0,0 +1,138 @@
+package net.jetblack.feedbus.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.jetblack.feedbus.util.EventHandler;
+import net.jetblack.feedbus.util.EventRegister;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The base class of the concurrent event queues.
+ * 
+ * Many threads may enqueue events, which are delivered to the listeners on the
+ * single thread running the queue. The events are taken from the queue in
+ * batches: each event is passed to the event listeners, then the batch is
+ * passed to the batch listeners. The storage of the events is provided by the
+ * derived class.
+ * 
+ * @param <T> The type of the elements in the queue.
+ */
+public abstract class AbstractEventQueue<T> implements Runnable, Closeable {
+	
+	private static final Logger logger = Logger.getLogger(AbstractEventQueue.class.getName());
+
+    private final EventHandler<T> _listener = new ConcurrentEventHandler<T>();
+    private final EventHandler<List<T>> _batchListener = new ConcurrentEventHandler<List<T>>();
+    private final T _sentinal;
+    public final EventRegister<T> Listener = _listener; 
+    /**
+     * Listeners which receive every event taken from the queue in one call.
+     * The end of the list marks the end of the batch, and the list is only valid during the call.
+     */
+    public final EventRegister<List<T>> BatchListener = _batchListener;
+
+    /**
+     * Construct the event queue.
+     * @param sentinal A sentinal that indicates the queue should close.
+     */
+    protected AbstractEventQueue(T sentinal) {
+        _sentinal = sentinal;
+    }
+
+    /**
+     * Add an item to the queue.
+     * @param item The item to add.
+     * @throws InterruptedException
+     */
+    public abstract void enqueue(T item) throws InterruptedException;
+
+    /**
+     * Add an item to the queue if there is space, without waiting.
+     * @param item The item to add.
+     * @return True if the item was added, or false if the queue was full.
+     */
+    public abstract boolean offer(T item);
+
+    /**
+     * Add a list of items to the queue, preserving their order.
+     * @param items The items to add.
+     * @throws InterruptedException
+     */
+    public void enqueueAll(List<T> items) throws InterruptedException {
+    	for (int i = 0; i < items.size(); ++i) {
+    		enqueue(items.get(i));
+    	}
+    }
+
+    /**
+     * Wait for items to be available, then move all the available items to the batch.
+     * @param batch The list to which the items are added.
+     * @throws InterruptedException
+     */
+    protected abstract void takeBatch(List<T> batch) throws InterruptedException;
+
+    /**
+     * Start a thread to process the queue.
+     * @return The thread.
+     */
+    public Thread start() {
+    	Thread thread = new Thread(this);
+    	thread.start();
+    	return thread;
+    }
+    
+	@Override
+	public void run() {
+		List<T> batch = new ArrayList<T>();
+		boolean isStopping = false;
+
+        while (!isStopping && !Thread.currentThread().isInterrupted()) {
+            try {
+            	takeBatch(batch);
+
+            	int count = batch.size();
+            	for (int i = 0; i < count; ++i) {
+            		T item = batch.get(i);
+            		_listener.notify(item);
+
+	                if (item == _sentinal) {
+	                	logger.fine("Stopping event queue");
+	                	isStopping = true;
+	                	count = i + 1;
+	                	break;
+	                }
+            	}
+
+            	_batchListener.notify(count == batch.size() ? batch : batch.subList(0, count));
+
+            	batch.clear();
+            }
+            catch (InterruptedException error) {
+            	logger.info("The event queue has been interrupted");
+            	break;
+            }
+            catch (Exception error) {
+                logger.log(Level.SEVERE, "The event queue has faulted", error);
+                break;
+            }
+        }
+
+        logger.info("Exited the event loop");
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (_sentinal != null) {
+				enqueue(_sentinal);
+			}
+		} catch (InterruptedException e) {
+			// Nothing
+		}
+	}
+}
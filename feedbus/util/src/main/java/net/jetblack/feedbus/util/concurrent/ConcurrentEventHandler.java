@@ -1,40 +1,40 @@
 package net.jetblack.feedbus.util.concurrent;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import net.jetblack.feedbus.util.EventHandler;
 import net.jetblack.feedbus.util.EventListener;
 
 /**
  * A thread safe event handler.
+ *
+ * The listeners are held by {@link CopyOnWriteListeners}, so notification
+ * takes no lock and makes no allocation, and a listener may add or remove
+ * listeners while it is being notified. Such changes take effect from the
+ * next event.
+ *
  * @param <T> The type of the event.
  */
 public class ConcurrentEventHandler<T> implements EventHandler<T> {
 
-    private final List<EventListener<T>> _listeners = new ArrayList<EventListener<T>>();
-    
+	@SuppressWarnings("unchecked")
+	private final CopyOnWriteListeners<EventListener<T>> _listeners =
+			new CopyOnWriteListeners<EventListener<T>>((EventListener<T>[])new EventListener<?>[0]);
+
     @Override
     public void add(EventListener<T> listener) {
-    	synchronized (_listeners) {
-    		_listeners.add(listener);
-		}
+    	_listeners.add(listener);
     }
-    
+
     @Override
     public void remove(EventListener<T> listener) {
-    	synchronized (_listeners) {
-    		_listeners.add(listener);
-		}
+    	_listeners.remove(listener);
     }
-    
+
     @Override
     public void notify(T event) {
-    	synchronized (_listeners) {
-    		for (EventListener<T> listener : _listeners) {
-    			listener.onEvent(event);
-    		}
-		}
+    	EventListener<T>[] listeners = _listeners.get();
+    	for (int i = 0; i < listeners.length; ++i) {
+    		listeners[i].onEvent(event);
+    	}
     }
 
 }
@@ -0,0 +1,68 @@
+package net.jetblack.feedbus.util.concurrent;
+
+import java.util.Arrays;
+
+/**
+ * A thread safe set of listeners of any type.
+ *
+ * The listeners are held in a copy-on-write array, so notification takes no
+ * lock and makes no allocation, and a listener may add or remove listeners
+ * while it is being notified. Such changes take effect from the next event.
+ *
+ * @param <L> The type of the listener.
+ */
+public class CopyOnWriteListeners<L> {
+
+	private final Object _lock = new Object();
+	private volatile L[] _listeners;
+
+	/**
+	 * Construct the listeners.
+	 *
+	 * @param empty An empty array of the listener type.
+	 */
+	public CopyOnWriteListeners(L[] empty) {
+		_listeners = empty;
+	}
+
+	/**
+	 * Add a listener.
+	 *
+	 * @param listener The listener to add.
+	 */
+	public void add(L listener) {
+		synchronized (_lock) {
+			L[] listeners = Arrays.copyOf(_listeners, _listeners.length + 1);
+			listeners[listeners.length - 1] = listener;
+			_listeners = listeners;
+		}
+	}
+
+	/**
+	 * Remove a listener, which is found by identity.
+	 *
+	 * @param listener The listener to remove.
+	 */
+	public void remove(L listener) {
+		synchronized (_lock) {
+			L[] listeners = _listeners;
+			for (int i = 0; i < listeners.length; ++i) {
+				if (listeners[i] == listener) {
+					L[] remaining = Arrays.copyOf(listeners, listeners.length - 1);
+					System.arraycopy(listeners, i + 1, remaining, i, listeners.length - i - 1);
+					_listeners = remaining;
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the current listeners. The array must not be modified.
+	 *
+	 * @return The listeners.
+	 */
+	public L[] get() {
+		return _listeners;
+	}
+}
@@ -0,0 +1,200 @@
+package net.jetblack.feedbus.util.concurrent;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An event queue backed by a pre-allocated ring buffer, for many producers and a single consumer.
+ *
+ * Producers claim a sequence with a compare and set, store the item in the slot
+ * for the sequence and then publish the sequence. The consumer takes every
+ * contiguous published item in one batch before releasing the slots, so the
+ * producers never contend on a lock.
+ *
+ * @param <T> The type of the elements in the queue.
+ */
+public class RingBufferEventQueue<T> extends AbstractEventQueue<T> {
+
+	private static final int SPIN_TRIES = 100;
+	private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+	private static final long SIGNAL_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final int _capacity;
+	private final int _mask;
+	private final AtomicReferenceArray<T> _slots;
+	private final AtomicLongArray _published;
+	private final AtomicLong _claimSequence = new AtomicLong();
+	private final AtomicLong _consumerSequence = new AtomicLong();
+	private final WaitStrategy _waitStrategy;
+
+	private final ReentrantLock _lock = new ReentrantLock();
+	private final Condition _itemsAvailable = _lock.newCondition();
+	private volatile boolean _isConsumerWaiting;
+
+	/**
+	 * Construct the event queue.
+	 * @param queueCapacity The capacity of the queue, which is rounded up to a power of two.
+	 * @param sentinal A sentinal that indicates the queue should close.
+	 * @param waitStrategy How the threads wait for items or space.
+	 */
+	public RingBufferEventQueue(int queueCapacity, T sentinal, WaitStrategy waitStrategy) {
+		super(sentinal);
+
+		if (queueCapacity <= 0 || queueCapacity > (1 << 30)) {
+			throw new IllegalArgumentException("queueCapacity");
+		}
+
+		_capacity = queueCapacity == 1 ? 1 : Integer.highestOneBit(queueCapacity - 1) << 1;
+		_mask = _capacity - 1;
+		_slots = new AtomicReferenceArray<T>(_capacity);
+		_published = new AtomicLongArray(_capacity);
+		for (int i = 0; i < _capacity; ++i) {
+			_published.set(i, -1);
+		}
+		_waitStrategy = waitStrategy;
+	}
+
+	/**
+	 * Gets the capacity of the ring buffer.
+	 * @return The capacity.
+	 */
+	public int getCapacity() {
+		return _capacity;
+	}
+
+	@Override
+	public void enqueue(T item) throws InterruptedException {
+		long sequence = claim(1);
+		publish(sequence, item);
+		signalConsumer();
+	}
+
+	@Override
+	public boolean offer(T item) {
+		long sequence;
+		do {
+			sequence = _claimSequence.get();
+			if (sequence + 1 - _consumerSequence.get() > _capacity) {
+				return false;
+			}
+		} while (!_claimSequence.compareAndSet(sequence, sequence + 1));
+
+		publish(sequence, item);
+		signalConsumer();
+		return true;
+	}
+
+	/**
+	 * Add a list of items to the queue, claiming the slots for as many items as
+	 * will fit with a single compare and set.
+	 */
+	@Override
+	public void enqueueAll(List<T> items) throws InterruptedException {
+		int offset = 0;
+		while (offset < items.size()) {
+			int count = Math.min(items.size() - offset, _capacity);
+			long sequence = claim(count);
+			for (int i = 0; i < count; ++i) {
+				publish(sequence + i, items.get(offset + i));
+			}
+			offset += count;
+			signalConsumer();
+		}
+	}
+
+	private long claim(int count) throws InterruptedException {
+		int tries = 0;
+		while (true) {
+			long sequence = _claimSequence.get();
+			if (sequence + count - _consumerSequence.get() > _capacity) {
+				// The buffer is full; wait for the consumer.
+				tries = idle(tries);
+			} else if (_claimSequence.compareAndSet(sequence, sequence + count)) {
+				return sequence;
+			}
+		}
+	}
+
+	private void publish(long sequence, T item) {
+		int index = (int)sequence & _mask;
+		_slots.lazySet(index, item);
+		// The volatile write orders the publication before the check for a waiting consumer.
+		_published.set(index, sequence);
+	}
+
+	private void signalConsumer() {
+		if (_waitStrategy == WaitStrategy.Blocking && _isConsumerWaiting) {
+			_lock.lock();
+			try {
+				_itemsAvailable.signal();
+			} finally {
+				_lock.unlock();
+			}
+		}
+	}
+
+	@Override
+	protected void takeBatch(List<T> batch) throws InterruptedException {
+		long first = _consumerSequence.get();
+
+		int tries = 0;
+		while (!isPublished(first)) {
+			tries = _waitStrategy == WaitStrategy.Blocking ? awaitItems(first) : idle(tries);
+		}
+
+		long sequence = first;
+		do {
+			int index = (int)sequence & _mask;
+			batch.add(_slots.get(index));
+			_slots.lazySet(index, null);
+			++sequence;
+		} while (sequence - first < _capacity && isPublished(sequence));
+
+		// Release all the slots in the batch at once.
+		_consumerSequence.lazySet(sequence);
+	}
+
+	private boolean isPublished(long sequence) {
+		return _published.get((int)sequence & _mask) == sequence;
+	}
+
+	private int awaitItems(long sequence) throws InterruptedException {
+		_lock.lockInterruptibly();
+		try {
+			_isConsumerWaiting = true;
+			if (!isPublished(sequence)) {
+				_itemsAvailable.awaitNanos(SIGNAL_TIMEOUT_NANOS);
+			}
+		} finally {
+			_isConsumerWaiting = false;
+			_lock.unlock();
+		}
+		return 0;
+	}
+
+	private int idle(int tries) throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		switch (_waitStrategy) {
+		case BusySpin:
+			return tries;
+		case Yielding:
+			if (tries < SPIN_TRIES) {
+				return tries + 1;
+			}
+			Thread.yield();
+			return tries;
+		default:
+			LockSupport.parkNanos(PARK_NANOS);
+			return tries;
+		}
+	}
+}
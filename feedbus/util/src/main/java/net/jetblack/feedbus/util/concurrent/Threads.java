@@ -0,0 +1,82 @@
+package net.jetblack.feedbus.util.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates platform or virtual threads.
+ * 
+ * Virtual threads are only available from Java 21. The builder is found by
+ * reflection so the library still runs on Java 8; when virtual threads are
+ * not available a platform thread is created instead.
+ */
+public final class Threads {
+
+	private static final Logger logger = Logger.getLogger(Threads.class.getName());
+
+	private static final Method ofVirtualMethod;
+	private static final Method nameMethod;
+	private static final Method unstartedMethod;
+	
+	static {
+		Method ofVirtual = null, name = null, unstarted = null;
+		try {
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			name = builderClass.getMethod("name", String.class);
+			unstarted = builderClass.getMethod("unstarted", Runnable.class);
+		} catch (ReflectiveOperationException error) {
+			ofVirtual = null;
+		}
+		ofVirtualMethod = ofVirtual;
+		nameMethod = name;
+		unstartedMethod = unstarted;
+	}
+	
+	private Threads() {
+	}
+	
+	/**
+	 * Determines whether the runtime supports virtual threads.
+	 * @return true if virtual threads are supported.
+	 */
+	public static boolean isVirtualSupported() {
+		return ofVirtualMethod != null;
+	}
+	
+	/**
+	 * Create an unstarted thread.
+	 * @param runnable The body of the thread.
+	 * @param name The name of the thread.
+	 * @param isVirtual If true try to create a virtual thread, otherwise create a platform thread.
+	 * @return The thread.
+	 */
+	public static Thread create(Runnable runnable, String name, boolean isVirtual) {
+		if (isVirtual && ofVirtualMethod != null) {
+			try {
+				Object builder = ofVirtualMethod.invoke(null);
+				builder = nameMethod.invoke(builder, name);
+				return (Thread)unstartedMethod.invoke(builder, runnable);
+			} catch (ReflectiveOperationException error) {
+				// Java 19 and 20 only provide virtual threads as a preview feature.
+				logger.log(Level.FINE, "Failed to create a virtual thread", error);
+			}
+		}
+		
+		return new Thread(runnable, name);
+	}
+	
+	/**
+	 * Create and start a thread.
+	 * @param runnable The body of the thread.
+	 * @param name The name of the thread.
+	 * @param isVirtual If true try to create a virtual thread, otherwise create a platform thread.
+	 * @return The started thread.
+	 */
+	public static Thread start(Runnable runnable, String name, boolean isVirtual) {
+		Thread thread = create(runnable, name, isVirtual);
+		thread.start();
+		return thread;
+	}
+}
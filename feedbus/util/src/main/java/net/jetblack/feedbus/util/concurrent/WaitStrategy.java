@@ -0,0 +1,19 @@
+package net.jetblack.feedbus.util.concurrent;
+
+/**
+ * How a thread waits on a ring buffer event queue.
+ */
+public enum WaitStrategy {
+	/**
+	 * Park the thread until it is signalled. This uses the least CPU.
+	 */
+	Blocking,
+	/**
+	 * Spin briefly, then yield the processor between checks.
+	 */
+	Yielding,
+	/**
+	 * Spin continuously. This gives the lowest latency but occupies a core.
+	 */
+	BusySpin
+}
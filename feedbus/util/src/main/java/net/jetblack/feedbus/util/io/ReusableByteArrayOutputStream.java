@@ -0,0 +1,34 @@
+package net.jetblack.feedbus.util.io;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A byte array output stream whose contents can be read without a copy.
+ *
+ * The stream keeps its array when it is reset, so once it has grown to the
+ * size of the largest batch written to it no further allocation is made.
+ */
+public class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+
+	/**
+	 * Construct the stream.
+	 *
+	 * @param size The initial size of the array.
+	 */
+	public ReusableByteArrayOutputStream(int size) {
+		super(size);
+	}
+
+	/**
+	 * Wraps the bytes written since the last reset in a buffer.
+	 *
+	 * The buffer shares the array of the stream, so it is only valid until
+	 * the stream is next reset or written to.
+	 *
+	 * @return The buffer.
+	 */
+	public synchronized ByteBuffer toByteBuffer() {
+		return ByteBuffer.wrap(buf, 0, count);
+	}
+}
@@ -0,0 +1,119 @@
+package net.jetblack.feedbus.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntObjectMapTest {
+
+	@Test
+	public void putReplacesTheValue() {
+		IntObjectMap<String> map = new IntObjectMap<String>();
+
+		assertNull(map.put(1, "one"));
+		assertEquals("one", map.put(1, "uno"));
+
+		assertEquals(1, map.size());
+		assertEquals("uno", map.get(1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void nullValuesAreRejected() {
+		new IntObjectMap<String>().put(1, null);
+	}
+
+	@Test
+	public void removeReturnsTheValue() {
+		IntObjectMap<String> map = new IntObjectMap<String>();
+		map.put(1, "one");
+
+		assertEquals("one", map.remove(1));
+		assertNull(map.remove(1));
+		assertTrue(map.isEmpty());
+		assertFalse(map.containsKey(1));
+	}
+
+	@Test
+	public void removeKeepsTheRestOfTheClusterReachable() {
+		// A small map with many keys forms long probe sequences, which
+		// removal must close up.
+		IntObjectMap<Integer> map = new IntObjectMap<Integer>(4);
+		for (int key = 0; key < 64; ++key) {
+			map.put(key, key);
+		}
+
+		for (int key = 0; key < 64; key += 2) {
+			assertEquals(Integer.valueOf(key), map.remove(key));
+		}
+
+		assertEquals(32, map.size());
+		for (int key = 0; key < 64; ++key) {
+			if (key % 2 == 0) {
+				assertNull(map.get(key));
+			} else {
+				assertEquals(Integer.valueOf(key), map.get(key));
+			}
+		}
+	}
+
+	@Test
+	public void matchesAHashMapUnderRandomUpdates() {
+		IntObjectMap<Integer> map = new IntObjectMap<Integer>();
+		Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+		Random random = new Random(42);
+
+		for (int i = 0; i < 100000; ++i) {
+			int key = random.nextInt(256) - 128;
+			if (random.nextBoolean()) {
+				assertEquals(expected.put(key, i), map.put(key, i));
+			} else {
+				assertEquals(expected.remove(key), map.remove(key));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+
+		for (int key = -128; key < 128; ++key) {
+			assertEquals(expected.get(key), map.get(key));
+		}
+	}
+
+	@Test
+	public void iterationVisitsEveryEntry() {
+		IntObjectMap<Integer> map = new IntObjectMap<Integer>();
+		for (int key = 0; key < 100; ++key) {
+			map.put(key * 7, key);
+		}
+		map.remove(0);
+
+		Map<Integer, Integer> visited = new HashMap<Integer, Integer>();
+		for (IntObjectMap.Entry<Integer> entry : map) {
+			visited.put(entry.getKey(), entry.getValue());
+		}
+
+		assertEquals(99, visited.size());
+		assertEquals(99, map.keys().length);
+		for (int key = 1; key < 100; ++key) {
+			assertEquals(Integer.valueOf(key), visited.get(key * 7));
+		}
+	}
+
+	@Test(expected = ConcurrentModificationException.class)
+	public void iterationFailsAfterAModification() {
+		IntObjectMap<Integer> map = new IntObjectMap<Integer>();
+		map.put(1, 1);
+		map.put(2, 2);
+
+		Iterator<IntObjectMap.Entry<Integer>> iterator = map.iterator();
+		map.remove(1);
+		iterator.next();
+	}
+}
@@ -0,0 +1,169 @@
+package net.jetblack.feedbus.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.jetblack.feedbus.util.EventListener;
+
+import org.junit.Test;
+
+public class RingBufferEventQueueTest {
+
+	private static final Integer STOP = Integer.valueOf(-1);
+	private static final int PRODUCERS = 4;
+	private static final int ITEMS_PER_PRODUCER = 10000;
+
+	@Test
+	public void capacityIsRoundedUpToAPowerOfTwo() {
+		assertEquals(1, new RingBufferEventQueue<Integer>(1, STOP, WaitStrategy.Blocking).getCapacity());
+		assertEquals(8, new RingBufferEventQueue<Integer>(5, STOP, WaitStrategy.Blocking).getCapacity());
+		assertEquals(16, new RingBufferEventQueue<Integer>(16, STOP, WaitStrategy.Blocking).getCapacity());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroCapacityIsRejected() {
+		new RingBufferEventQueue<Integer>(0, STOP, WaitStrategy.Blocking);
+	}
+
+	@Test
+	public void offerFailsWhenTheQueueIsFull() throws Exception {
+		RingBufferEventQueue<Integer> queue = new RingBufferEventQueue<Integer>(2, STOP, WaitStrategy.Blocking);
+
+		assertTrue(queue.offer(1));
+		assertTrue(queue.offer(2));
+		assertFalse(queue.offer(3));
+	}
+
+	@Test
+	public void closeDeliversTheSentinalAndStops() throws Exception {
+		RingBufferEventQueue<Integer> queue = new RingBufferEventQueue<Integer>(4, STOP, WaitStrategy.Blocking);
+		final List<Integer> received = new ArrayList<Integer>();
+		queue.Listener.add(new EventListener<Integer>() {
+			@Override
+			public void onEvent(Integer event) {
+				received.add(event);
+			}
+		});
+
+		Thread thread = queue.start();
+		queue.enqueue(1);
+		queue.enqueue(2);
+		queue.close();
+		thread.join(10000);
+
+		assertFalse(thread.isAlive());
+		assertEquals(3, received.size());
+		assertEquals(Integer.valueOf(1), received.get(0));
+		assertEquals(Integer.valueOf(2), received.get(1));
+		assertSame(STOP, received.get(2));
+	}
+
+	@Test
+	public void enqueueAllLargerThanTheCapacityKeepsItsOrder() throws Exception {
+		RingBufferEventQueue<Integer> queue = new RingBufferEventQueue<Integer>(4, STOP, WaitStrategy.Blocking);
+		final List<Integer> received = new ArrayList<Integer>();
+		final int[] largestBatch = new int[1];
+		queue.Listener.add(new EventListener<Integer>() {
+			@Override
+			public void onEvent(Integer event) {
+				received.add(event);
+			}
+		});
+		queue.BatchListener.add(new EventListener<List<Integer>>() {
+			@Override
+			public void onEvent(List<Integer> batch) {
+				largestBatch[0] = Math.max(largestBatch[0], batch.size());
+			}
+		});
+
+		Thread thread = queue.start();
+		List<Integer> items = new ArrayList<Integer>();
+		for (int i = 0; i < 100; ++i) {
+			items.add(i);
+		}
+		queue.enqueueAll(items);
+		queue.close();
+		thread.join(10000);
+
+		assertFalse(thread.isAlive());
+		assertEquals(101, received.size());
+		for (int i = 0; i < 100; ++i) {
+			assertEquals(Integer.valueOf(i), received.get(i));
+		}
+		assertTrue(largestBatch[0] <= queue.getCapacity());
+	}
+
+	@Test
+	public void blockingDeliversEveryItemInProducerOrder() throws Exception {
+		assertProducerOrder(WaitStrategy.Blocking);
+	}
+
+	@Test
+	public void yieldingDeliversEveryItemInProducerOrder() throws Exception {
+		assertProducerOrder(WaitStrategy.Yielding);
+	}
+
+	@Test
+	public void busySpinDeliversEveryItemInProducerOrder() throws Exception {
+		assertProducerOrder(WaitStrategy.BusySpin);
+	}
+
+	private static void assertProducerOrder(WaitStrategy waitStrategy) throws Exception {
+		final RingBufferEventQueue<Integer> queue = new RingBufferEventQueue<Integer>(64, STOP, waitStrategy);
+		final int[] next = new int[PRODUCERS];
+		final int[] outOfOrder = new int[1];
+		final int[] count = new int[1];
+		queue.Listener.add(new EventListener<Integer>() {
+			@Override
+			public void onEvent(Integer event) {
+				if (event == STOP) {
+					return;
+				}
+				// Each item encodes its producer and its sequence from that producer.
+				int producer = event % PRODUCERS;
+				int sequence = event / PRODUCERS;
+				if (sequence != next[producer]) {
+					++outOfOrder[0];
+				}
+				next[producer] = sequence + 1;
+				++count[0];
+			}
+		});
+
+		Thread consumer = queue.start();
+
+		List<Thread> producers = new ArrayList<Thread>();
+		for (int p = 0; p < PRODUCERS; ++p) {
+			final int producer = p;
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < ITEMS_PER_PRODUCER; ++i) {
+							queue.enqueue(i * PRODUCERS + producer);
+						}
+					} catch (InterruptedException error) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			producers.add(thread);
+			thread.start();
+		}
+		for (Thread thread : producers) {
+			thread.join(30000);
+		}
+
+		queue.close();
+		consumer.join(30000);
+
+		assertFalse(consumer.isAlive());
+		assertEquals(0, outOfOrder[0]);
+		assertEquals(PRODUCERS * ITEMS_PER_PRODUCER, count[0]);
+	}
+}